@@ -0,0 +1,181 @@
+package com.rayeye.dbutils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.fri.timers.entity.Times;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the dbutils mapping and execution layer, run against the
+ * in-memory {@link StubJdbc} so that only dbutils' own cost is measured.
+ * Run with <code>-prof gc</code> to report allocations per operation:
+ *
+ * <pre>
+ * mvn -Pbench test-compile exec:exec -Djmh.args="DbutilsBenchmark -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DbutilsBenchmark {
+
+    static final String SHORT_SQL = "select * from times where id = :id";
+
+    static final String LONG_SQL = "insert into wide (id,s1,s2,s3,s4,s5,s6,s7,s8,i1,i2,i3,i4,i5,i6,l1,l2,l3,l4,l5) "
+            + "values(:id,:s1,:s2,:s3,:s4,:s5,:s6,:s7,:s8,:i1,:i2,:i3,:i4,:i5,:i6,:l1,:l2,:l3,:l4,:l5)";
+
+    @State(Scope.Thread)
+    public static class ExecutorState {
+        Connection conn;
+        Times times;
+        WideEntity wide;
+
+        @Setup
+        public void setUp() {
+            conn = new StubJdbc.Conn(new StubJdbc.Rows(new String[] {"id", "year", "month"},
+                    new Object[][] {{Long.valueOf(1), Integer.valueOf(2014), Integer.valueOf(10)}})).connection();
+            times = new Times();
+            times.setId(1);
+            times.setYear(2014);
+            times.setMonth(10);
+            wide = newWide(1);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MappingState {
+        @Param({"1", "100", "100000"})
+        int rows;
+
+        @Param({"narrow", "wide"})
+        String width;
+
+        Class<?> type;
+        StubJdbc.Rows data;
+        BeanProcessor beans;
+        BasicRowProcessor maps;
+
+        @Setup
+        public void setUp() {
+            beans = new BeanProcessor();
+            maps = new BasicRowProcessor();
+
+            if ("narrow".equals(width)) {
+                type = Times.class;
+                Object[][] values = new Object[rows][];
+                for (int i = 0; i < rows; i++) {
+                    values[i] = new Object[] {Long.valueOf(i), Integer.valueOf(2000 + i % 20), Integer.valueOf(i % 12)};
+                }
+                data = new StubJdbc.Rows(new String[] {"id", "year", "month"}, values);
+            } else {
+                type = WideEntity.class;
+                String[] labels = new String[20];
+                labels[0] = "id";
+                for (int c = 1; c <= 8; c++) {
+                    labels[c] = "s" + c;
+                }
+                for (int c = 1; c <= 6; c++) {
+                    labels[8 + c] = "i" + c;
+                }
+                for (int c = 1; c <= 5; c++) {
+                    labels[14 + c] = "l" + c;
+                }
+                Object[][] values = new Object[rows][];
+                for (int i = 0; i < rows; i++) {
+                    Object[] row = new Object[20];
+                    row[0] = Long.valueOf(i);
+                    for (int c = 1; c <= 8; c++) {
+                        row[c] = "value-" + c + "-" + i;
+                    }
+                    for (int c = 9; c <= 14; c++) {
+                        row[c] = Integer.valueOf(i + c);
+                    }
+                    for (int c = 15; c < 20; c++) {
+                        row[c] = Long.valueOf(i * 31L + c);
+                    }
+                    values[i] = row;
+                }
+                data = new StubJdbc.Rows(labels, values);
+            }
+        }
+    }
+
+    static WideEntity newWide(long id) {
+        WideEntity wide = new WideEntity();
+        wide.setId(id);
+        wide.setS1("a");
+        wide.setS2("b");
+        wide.setI1(1);
+        wide.setL1(2L);
+        return wide;
+    }
+
+    @Benchmark
+    public QueryExecutor parseShortSql(ExecutorState state) throws SQLException {
+        return new QueryExecutor(state.conn, SHORT_SQL, false);
+    }
+
+    @Benchmark
+    public InsertExecutor parseLongSql(ExecutorState state) throws SQLException {
+        return new InsertExecutor(state.conn, LONG_SQL, false);
+    }
+
+    @Benchmark
+    public ParsedSql lexLongSql() {
+        return ParsedSql.parseUncached(LONG_SQL);
+    }
+
+    @Benchmark
+    public String entityColumns() {
+        Map<String, String> columns = EntityUtils.getColumnNames(WideEntity.class);
+        return EntityUtils.getTableName(WideEntity.class)
+                + EntityUtils.joinColumnsWithComma(columns.keySet(), null)
+                + EntityUtils.joinColumnsWithComma(columns.keySet(), ":");
+    }
+
+    @Benchmark
+    public int insertNarrowEntity(ExecutorState state) throws SQLException {
+        return new InsertEntityExecutor<Times>(state.times, Times.class, state.conn).insert();
+    }
+
+    @Benchmark
+    public int insertWideEntity(ExecutorState state) throws SQLException {
+        return new InsertEntityExecutor<WideEntity>(state.wide, WideEntity.class, state.conn).insert();
+    }
+
+    @Benchmark
+    public int updateWideEntity(ExecutorState state) throws SQLException {
+        return new UpdateEntityExecutor<WideEntity>(state.wide, state.conn).bindId().update(WideEntity.class);
+    }
+
+    @Benchmark
+    public Times readNarrowEntity(ExecutorState state) throws SQLException {
+        return new QueryEntityExecutor<Times>(Times.class, state.conn).bind("id", Long.valueOf(1)).uniqueResult();
+    }
+
+    @Benchmark
+    public List<?> toBeanList(MappingState state) throws SQLException {
+        return state.beans.toBeanList(state.data.reset().resultSet(), state.type);
+    }
+
+    @Benchmark
+    public void toMap(MappingState state, Blackhole blackhole) throws SQLException {
+        ResultSet rs = state.data.reset().resultSet();
+        while (rs.next()) {
+            blackhole.consume(state.maps.toMap(rs));
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.rayeye.dbutils;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A 20 column entity used by the mapping benchmarks.
+ */
+@Entity
+@Table(name = "wide")
+public class WideEntity {
+
+    @Id
+    private long id;
+    private String s1;
+    private String s2;
+    private String s3;
+    private String s4;
+    private String s5;
+    private String s6;
+    private String s7;
+    private String s8;
+    private int i1;
+    private int i2;
+    private int i3;
+    private int i4;
+    private int i5;
+    private int i6;
+    private long l1;
+    private long l2;
+    private long l3;
+    private long l4;
+    private long l5;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getS1() {
+        return s1;
+    }
+
+    public void setS1(String s1) {
+        this.s1 = s1;
+    }
+
+    public String getS2() {
+        return s2;
+    }
+
+    public void setS2(String s2) {
+        this.s2 = s2;
+    }
+
+    public String getS3() {
+        return s3;
+    }
+
+    public void setS3(String s3) {
+        this.s3 = s3;
+    }
+
+    public String getS4() {
+        return s4;
+    }
+
+    public void setS4(String s4) {
+        this.s4 = s4;
+    }
+
+    public String getS5() {
+        return s5;
+    }
+
+    public void setS5(String s5) {
+        this.s5 = s5;
+    }
+
+    public String getS6() {
+        return s6;
+    }
+
+    public void setS6(String s6) {
+        this.s6 = s6;
+    }
+
+    public String getS7() {
+        return s7;
+    }
+
+    public void setS7(String s7) {
+        this.s7 = s7;
+    }
+
+    public String getS8() {
+        return s8;
+    }
+
+    public void setS8(String s8) {
+        this.s8 = s8;
+    }
+
+    public int getI1() {
+        return i1;
+    }
+
+    public void setI1(int i1) {
+        this.i1 = i1;
+    }
+
+    public int getI2() {
+        return i2;
+    }
+
+    public void setI2(int i2) {
+        this.i2 = i2;
+    }
+
+    public int getI3() {
+        return i3;
+    }
+
+    public void setI3(int i3) {
+        this.i3 = i3;
+    }
+
+    public int getI4() {
+        return i4;
+    }
+
+    public void setI4(int i4) {
+        this.i4 = i4;
+    }
+
+    public int getI5() {
+        return i5;
+    }
+
+    public void setI5(int i5) {
+        this.i5 = i5;
+    }
+
+    public int getI6() {
+        return i6;
+    }
+
+    public void setI6(int i6) {
+        this.i6 = i6;
+    }
+
+    public long getL1() {
+        return l1;
+    }
+
+    public void setL1(long l1) {
+        this.l1 = l1;
+    }
+
+    public long getL2() {
+        return l2;
+    }
+
+    public void setL2(long l2) {
+        this.l2 = l2;
+    }
+
+    public long getL3() {
+        return l3;
+    }
+
+    public void setL3(long l3) {
+        this.l3 = l3;
+    }
+
+    public long getL4() {
+        return l4;
+    }
+
+    public void setL4(long l4) {
+        this.l4 = l4;
+    }
+
+    public long getL5() {
+        return l5;
+    }
+
+    public void setL5(long l5) {
+        this.l5 = l5;
+    }
+}
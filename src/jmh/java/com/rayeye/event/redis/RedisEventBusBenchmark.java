@@ -0,0 +1,104 @@
+package com.rayeye.event.redis;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import redis.clients.jedis.Jedis;
+
+import com.rayeye.event.EventHandler;
+import com.rayeye.event.impl.TestEvent;
+import com.rayeye.event.store.StoreEvent;
+import com.rayeye.redis.RedisByteCommand;
+import com.rayeye.redis.RespServer;
+
+/**
+ * 通过内嵌的 {@link RespServer} 测量 RedisEventBus 和 RedisByteCommand 的吞吐和端到端延迟,
+ * 不需要真实的 redis, 结果包含本机 TCP 往返开销.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RedisEventBusBenchmark {
+
+	RespServer server;
+	RedisEventBus producer;
+	RedisEventBus consumer;
+	RedisByteCommand command;
+	Jedis jedis;
+	TestEvent event;
+	StoreEvent storeEvent;
+
+	final AtomicLong received = new AtomicLong();
+	long sent;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new RespServer();
+		producer = new RedisEventBus(server.getHost(), server.getPort());
+		consumer = new RedisEventBus(server.getHost(), server.getPort());
+		consumer.on(new EventHandler<TestEvent>() {
+			@Override
+			public void on(TestEvent event) {
+				received.incrementAndGet();
+			}
+		});
+		RedisEventBusTest.monitorInBackground(consumer);
+
+		jedis = new Jedis(server.getHost(), server.getPort());
+		command = new RedisByteCommand(jedis);
+		event = new TestEvent("benchmark");
+		storeEvent = new StoreEvent(event);
+	}
+
+	@TearDown
+	public void tearDown() {
+		producer.close();
+		consumer.close();
+		jedis.disconnect();
+		server.close();
+	}
+
+	/**
+	 * 清理只有 command 基准写入、没有被消费的数据.
+	 */
+	@Setup(Level.Iteration)
+	public void flush() {
+		jedis.del("bench");
+	}
+
+	@Benchmark
+	public long commandPush() {
+		return command.push("bench", storeEvent);
+	}
+
+	@Benchmark
+	public StoreEvent commandPushPop() {
+		command.push("bench", storeEvent);
+		return command.pop("bench", StoreEvent.class);
+	}
+
+	/**
+	 * 发布并等待消费端 handler 执行完成.
+	 */
+	@Benchmark
+	public long postAndHandle() {
+		producer.post(event);
+		long expected = ++sent;
+		while (received.get() < expected) {
+			Thread.yield();
+		}
+		return expected;
+	}
+
+}
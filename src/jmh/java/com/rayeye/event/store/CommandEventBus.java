@@ -0,0 +1,62 @@
+package com.rayeye.event.store;
+
+import com.rayeye.event.EventBus;
+import com.rayeye.redis.Command;
+
+/**
+ * 与 RedisEventBus 相同的读写方式, 但直接使用给定的 {@link Command}, 不依赖 redis 的发布订阅.
+ */
+public class CommandEventBus extends AbstractEventBus {
+
+	static final String EVENTS_KEY = "events";
+
+	private final Command command;
+
+	public CommandEventBus(Command command) {
+		this.command = command;
+	}
+
+	@Override
+	protected void put(StoreEvent event) {
+		command.push(EVENTS_KEY, event);
+	}
+
+	@Override
+	protected void run(EventBus eventBus) {
+		StoreEvent event = command.pop(EVENTS_KEY, StoreEvent.class);
+		if (event != null) {
+			dispatch(eventBus, event);
+		}
+	}
+
+	/**
+	 * 消费队列中所有事件.
+	 * @return 消费的事件数
+	 */
+	public int drain() {
+		int count = 0;
+		StoreEvent event;
+		while ((event = command.pop(EVENTS_KEY, StoreEvent.class)) != null) {
+			dispatch(read, event);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * 跳过存储, 直接分发一个已读取的事件.
+	 * @param event 事件
+	 */
+	public void dispatch(StoreEvent event) {
+		dispatch(read, event);
+	}
+
+	/**
+	 * 跳过存储和解析, 只测 handler 查找与调用.
+	 * @param event 已解析的事件
+	 */
+	public void readHandler(ReadEvent event) {
+		((EventBus) read).post(event);
+	}
+
+}
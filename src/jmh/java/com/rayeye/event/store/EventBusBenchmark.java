@@ -0,0 +1,161 @@
+package com.rayeye.event.store;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.alibaba.fastjson.JSON;
+import com.rayeye.event.Event;
+import com.rayeye.event.EventBus;
+import com.rayeye.event.EventHandler;
+import com.rayeye.event.impl.TestEvent;
+import com.rayeye.redis.Command;
+import com.rayeye.redis.MemoryCommand;
+
+/**
+ * event bus 热路径的基准测试, 存储使用内存中的 {@link MemoryCommand}.
+ *
+ * <pre>
+ * mvn -Pbench test-compile exec:exec -Djmh.args="EventBusBenchmark -prof gc"
+ * </pre>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventBusBenchmark {
+
+	/**
+	 * 只编码不保存, 测 post 到 put 的开销.
+	 */
+	static class EncodeOnlyEventBus extends AbstractEventBus {
+		volatile byte[] last;
+
+		@Override
+		protected void put(StoreEvent event) {
+			last = JSON.toJSONBytes(event);
+		}
+
+		@Override
+		protected void run(EventBus eventBus) {
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class PostState {
+		EncodeOnlyEventBus bus;
+		TestEvent event;
+
+		@Setup
+		public void setUp() {
+			bus = new EncodeOnlyEventBus();
+			event = new TestEvent("benchmark");
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class CodecState {
+		StoreEvent store;
+		byte[] bytes;
+
+		@Setup
+		public void setUp() {
+			EncodeOnlyEventBus bus = new EncodeOnlyEventBus();
+			store = bus.stamp(new StoreEvent(new TestEvent("benchmark")));
+			bytes = JSON.toJSONBytes(store);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class DispatchState {
+		@Param({ "1", "10", "100" })
+		int handlers;
+
+		CommandEventBus bus;
+		StoreEvent store;
+		ReadEvent read;
+
+		@Setup
+		public void setUp() throws ClassNotFoundException {
+			bus = new CommandEventBus(new MemoryCommand());
+			for (int i = 0; i < handlers; i++) {
+				bus.on(new CountingHandler());
+			}
+			store = bus.stamp(new StoreEvent(new TestEvent("benchmark")));
+			read = new ReadEvent(store.getType(), store.getEvent());
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class DrainState {
+		static final int EVENTS = 10000;
+
+		Command command;
+		CommandEventBus bus;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			command = new MemoryCommand();
+			bus = new CommandEventBus(command);
+			bus.on(new CountingHandler());
+		}
+
+		@Setup(Level.Invocation)
+		public void fill() {
+			for (int i = 0; i < EVENTS; i++) {
+				bus.post(new TestEvent("benchmark"));
+			}
+		}
+	}
+
+	static class CountingHandler implements EventHandler<TestEvent> {
+		long count;
+
+		@Override
+		public void on(TestEvent event) {
+			count++;
+		}
+	}
+
+	@Benchmark
+	public int post(PostState state) {
+		return state.bus.post(state.event);
+	}
+
+	@Benchmark
+	public byte[] encode(CodecState state) {
+		return JSON.toJSONBytes(state.store);
+	}
+
+	@Benchmark
+	public Event decode(CodecState state) throws ClassNotFoundException {
+		StoreEvent store = JSON.parseObject(state.bytes, StoreEvent.class);
+		return store.getEvent();
+	}
+
+	@Benchmark
+	public void readHandler(DispatchState state) {
+		state.bus.readHandler(state.read);
+	}
+
+	@Benchmark
+	public void dispatch(DispatchState state) {
+		state.bus.dispatch(state.store);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OperationsPerInvocation(DrainState.EVENTS)
+	public void drain(DrainState state, Blackhole blackhole) {
+		blackhole.consume(state.bus.drain());
+	}
+
+}
@@ -3,28 +3,40 @@
  */
 package com.rayeye.dbutils;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.persistence.Column;
-import javax.persistence.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import org.apache.commons.beanutils.PropertyUtils;
 
 /**
  * An abstract class that makes it easier to build EntityExecutors.
  */
 public abstract class AbstractEntityExecutor<T extends AbstractEntityExecutor<T>> {
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractEntityExecutor.class);
+
+    /**
+     * The number of statements sent in one JDBC batch by the executors of entity collections.
+     */
+    static final int BATCH_SIZE = 1000;
 
     protected final Class<?> entity;
+    protected final EntityMetadata metadata;
     protected final Connection conn;
     protected final String tableName;
     protected final Map<String, Object> params = new HashMap<String, Object>();
 
+    /**
+     * The statement cache of the connection, or null to prepare new statements.
+     */
+    protected StatementCache statementCache;
+
     /**
      * Constructs the EntityExecutor.
      */
@@ -32,19 +44,26 @@ public abstract class AbstractEntityExecutor<T extends AbstractEntityExecutor<T>
         this.entity = entity;
         this.conn = conn;
 
-        final Entity annotation = entity.getAnnotation(Entity.class);
-
-        if(annotation == null) {
-            throw new IllegalArgumentException(entity.getName() + " does not have the Entity annotation");
-        }
+        // throws if the class is not an entity
+        this.metadata = EntityMetadata.of(entity);
+        this.tableName = metadata.getTableName();
+    }
 
-        // get the table's name
-        tableName = EntityUtils.getTableName(entity);
+    /**
+     * Sets the cache the statements are taken from, for a connection that
+     * outlives the executor.
+     *
+     * @param statementCache the cache of the connection, or null.
+     * @return this.
+     */
+    T setStatementCache(final StatementCache statementCache) {
+        this.statementCache = statementCache;
+        return (T)this;
     }
 
     /**
      * Bind properties to values before execution.
-     * @param property the property to bind.
+     * @param property the property to bind, by field or column name.
      * @param value the value to bind.
      * @return this.
      */
@@ -53,38 +72,21 @@ public abstract class AbstractEntityExecutor<T extends AbstractEntityExecutor<T>
             throw new IllegalArgumentException("Property is null or blank string");
         }
 
-        boolean found = false;
-
-        for(Field field:entity.getDeclaredFields()) {
-            // check to see if the property is a field
-            if(field.getName().equals(property)) {
-                params.put(property, value);
-                found = true;
-                break;
-            } else {
-                // we also check the column name
-                final Column column = field.getAnnotation(Column.class);
-
-                if(column != null && column.name().equals(property)) {
-                    params.put(property, value);
-                    found = true;
-                    break;
-                }
-            }
-        }
+        final EntityMetadata.Property prop = metadata.getProperty(property);
 
-        if(!found) {
+        if(prop == null) {
             throw new IllegalArgumentException(property + " is not a property of the entity " + entity.getName());
         }
 
+        params.put(prop.getColumn(), value);
+
         return (T)this;
     }
     
     
     /**
-     * Bind properties to values before execution.
-     * @param property the property to bind.
-     * @param value the value to bind.
+     * Bind properties to their values on the entity instance before execution.
+     * @param property the property to bind, by field or column name.
      * @return this.
      */
     public T bind(final String property) {
@@ -92,35 +94,15 @@ public abstract class AbstractEntityExecutor<T extends AbstractEntityExecutor<T>
             throw new IllegalArgumentException("Property is null or blank string");
         }
 
-        boolean found = false;
-    	try {
-	        for(Field field : entity.getDeclaredFields()) {
-	            // check to see if the property is a field
-	            if(field.getName().equals(property)) {
-	            	
-	            	Object value = PropertyUtils.getSimpleProperty(getEntity() , property);
-	                params.put(property , value);
-	                found = true;
-	                break;
-	            } else {
-	                // we also check the column name
-	                final Column column = field.getAnnotation(Column.class);
-	
-	                if(column != null && column.name().equals(property)) {
-	                	
-	                	Object value = PropertyUtils.getSimpleProperty(getEntity() , field.getName());
-	                    params.put(property, value);
-	                    found = true;
-	                    break;
-	                }
-	            }
-	        }
-        
-    	} catch (Exception e) {
-    		 throw new IllegalArgumentException(property + " is not a property of the entity " + entity.getName());
-		} 
-
-        if(!found) {
+        final EntityMetadata.Property prop = metadata.getProperty(property);
+
+        if(prop == null) {
+            throw new IllegalArgumentException(property + " is not a property of the entity " + entity.getName());
+        }
+
+        try {
+            params.put(prop.getColumn(), prop.getAccessor().get(getEntity()));
+        } catch (Exception e) {
             throw new IllegalArgumentException(property + " is not a property of the entity " + entity.getName());
         }
 
@@ -138,11 +120,119 @@ public abstract class AbstractEntityExecutor<T extends AbstractEntityExecutor<T>
     }
     
     public T bindId(){
-    	String id = EntityUtils.getIdColumnName(entity);
-    	return this.bind(id);
+    	return this.bind(metadata.getIdName());
     }
     
     protected Object getEntity(){
     	return null;
     }
+
+    /**
+     * @return true if the id of the entity is generated by the database on insert.
+     */
+    protected boolean hasGeneratedId() {
+        final EntityMetadata.Property id = metadata.getIdProperty();
+        return id != null && id.isGenerated();
+    }
+
+    /**
+     * Writes a key generated by the database into the id of an entity,
+     * converting the number returned by the driver to the type of the id.
+     *
+     * @param entity the inserted entity.
+     * @param key the generated key, ignored if null.
+     * @throws SQLException if the id cannot be set.
+     */
+    protected void setGeneratedId(final Object entity, final Object key) throws SQLException {
+        if (key == null) {
+            return;
+        }
+
+        final EntityMetadata.Property id = metadata.getIdProperty();
+        id.getAccessor().set(entity, toIdType(key, id.getType()));
+    }
+
+    /**
+     * Converts a generated key, usually a Long or BigInteger/BigDecimal, to the type of an id.
+     */
+    static Object toIdType(final Object key, final Class<?> type) {
+        if (!(key instanceof Number) || type.isInstance(key)) {
+            return key;
+        }
+
+        final Number n = (Number) key;
+
+        if (type == Long.TYPE || type == Long.class) {
+            return Long.valueOf(n.longValue());
+        } else if (type == Integer.TYPE || type == Integer.class) {
+            return Integer.valueOf(n.intValue());
+        } else if (type == Short.TYPE || type == Short.class) {
+            return Short.valueOf(n.shortValue());
+        } else if (type == BigInteger.class) {
+            return new BigInteger(n.toString());
+        } else if (type == BigDecimal.class) {
+            return new BigDecimal(n.toString());
+        } else if (type == String.class) {
+            return n.toString();
+        }
+        return key;
+    }
+
+    /**
+     * Starts a transaction for a statement over several entities, if the
+     * connection is in auto-commit mode. The connection is closed if this fails.
+     *
+     * @return true if the connection was in auto-commit mode.
+     * @throws SQLException if the auto-commit mode cannot be read or changed.
+     */
+    protected boolean begin() throws SQLException {
+        final boolean autoCommit;
+
+        try {
+            autoCommit = conn.getAutoCommit();
+            if (autoCommit) {
+                conn.setAutoCommit(false);
+            }
+        } catch (SQLException e) {
+            DbUtils.closeQuietly(conn);
+            throw e;
+        }
+
+        return autoCommit;
+    }
+
+    /**
+     * Ends the transaction started by {@link #begin()}, committing it if the
+     * statements succeeded and rolling it back otherwise, then closes the
+     * connection. A failed rollback is only logged, so the exception of the
+     * failed statement is the one reported.
+     *
+     * @param autoCommit the result of {@link #begin()}.
+     * @param done true if every statement succeeded.
+     * @throws SQLException if the commit or close fails.
+     */
+    protected void end(final boolean autoCommit, final boolean done) throws SQLException {
+        if (!done) {
+            try {
+                if (autoCommit) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                LOG.warn("Rollback failed", e);
+            } finally {
+                DbUtils.closeQuietly(conn);
+            }
+            return;
+        }
+
+        try {
+            if (autoCommit) {
+                conn.commit();
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            DbUtils.close(conn);
+        }
+    }
 }
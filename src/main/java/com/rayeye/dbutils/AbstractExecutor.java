@@ -21,13 +21,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Abstract class for executing a query, insert, update, or batch.
@@ -37,48 +35,73 @@ import java.util.regex.Pattern;
 abstract class AbstractExecutor<T extends AbstractExecutor<T>> {
 
     private static final String COLON = ":";  // TODO: change this to any character
-    private static final Pattern PARAM_PATTERN = Pattern.compile("(:\\w+)");
 
     private final Connection conn;
     private final String sql;
+    private final String jdbcSql;
     private final PreparedStatement stmt;
+    private final StatementCache statementCache;
+    private final boolean returnGeneratedKeys;
 
-    private final Map<String, List<Integer>> paramPosMap;
+    private final Map<String, ? extends List<Integer>> paramPosMap;
     private final Map<String, Object> paramValueMap;
-    private int currentPosition = 0;
 
     public AbstractExecutor(final Connection conn, final String sql) throws SQLException {
+        this(conn, sql, null);
+    }
+
+    /**
+     * Constructs an executor that takes its statement from a cache and gives
+     * it back instead of closing it.
+     *
+     * @param conn the connection, the same one the cache belongs to.
+     * @param sql the SQL statement with named parameters.
+     * @param statementCache the statement cache, or null to prepare a new statement.
+     * @throws SQLException if the statement cannot be prepared.
+     */
+    AbstractExecutor(final Connection conn, final String sql, final StatementCache statementCache) throws SQLException {
+        this(conn, sql, statementCache, false);
+    }
+
+    /**
+     * Constructs an executor whose statement optionally returns the keys
+     * generated by the database.
+     *
+     * @param conn the connection, the same one the cache belongs to.
+     * @param sql the SQL statement with named parameters.
+     * @param statementCache the statement cache, or null to prepare a new statement.
+     * @param returnGeneratedKeys true to prepare with <code>Statement.RETURN_GENERATED_KEYS</code>.
+     * @throws SQLException if the statement cannot be prepared.
+     */
+    AbstractExecutor(final Connection conn, final String sql, final StatementCache statementCache,
+            final boolean returnGeneratedKeys) throws SQLException {
         this.conn = conn;
         this.sql = sql;
-        this.paramPosMap = new HashMap<String, List<Integer>>();
+        this.statementCache = statementCache;
+        this.returnGeneratedKeys = returnGeneratedKeys;
         this.paramValueMap = new HashMap<String, Object>();
 
-        final Matcher matcher = PARAM_PATTERN.matcher(sql);
-
-        // go through finding params
-        while (matcher.find()) {
-            insertParamPosition(matcher.group().replace(COLON, ""));
+        // the parsed form is cached, so the same SQL is only scanned once
+        final ParsedSql parsed = ParsedSql.parse(sql);
+        this.paramPosMap = parsed.getPositions();
+        this.jdbcSql = parsed.getJdbcSql();
+
+        if (statementCache != null) {
+            stmt = statementCache.prepare(jdbcSql, returnGeneratedKeys);
+        } else if (returnGeneratedKeys) {
+            stmt = conn.prepareStatement(jdbcSql, Statement.RETURN_GENERATED_KEYS);
+        } else {
+            stmt = conn.prepareStatement(jdbcSql);
         }
-
-        // replace all of the :names with ?, and create a prepared statement
-        stmt = conn.prepareStatement(sql.replaceAll(":\\w+", "\\?"));
     }
 
     /**
-     * Helper method to insert params and the current position into the map.
-     * @param param the SQL param.
+     * Strips the optional leading colon from a parameter name.
+     * @param name the parameter name, as ":name" or "name".
+     * @return the name without the colon.
      */
-    private void insertParamPosition(final String param) {
-        List<Integer> posList = paramPosMap.get(param);
-
-        // create a new list if we need to
-        if (posList == null) {
-            posList = new ArrayList<Integer>();
-            paramPosMap.put(param, posList);
-        }
-
-        // increment first, so we match SQL numbering
-        posList.add(Integer.valueOf(++currentPosition));
+    private static String paramName(final String name) {
+        return name.startsWith(COLON) ? name.substring(1) : name;
     }
 
     /**
@@ -120,7 +143,8 @@ abstract class AbstractExecutor<T extends AbstractExecutor<T>> {
         }
 
         final StringBuilder sb = new StringBuilder("There are unbound parameters: ");
-        final Set<String> unboundParams = paramPosMap.keySet();
+        // copy the key set, the position table is shared between executors
+        final Set<String> unboundParams = new LinkedHashSet<String>(paramPosMap.keySet());
 
         // compute the set difference
         unboundParams.removeAll(paramValueMap.keySet());
@@ -146,7 +170,7 @@ abstract class AbstractExecutor<T extends AbstractExecutor<T>> {
      * @throws SQLException thrown if the parameter is not found, already bound, or there is an issue binding it.
      */
     public T bind(String name, final Object value) throws SQLException {
-        name = name.replace(COLON, ""); // so we can take ":name" or "name"
+        name = paramName(name); // so we can take ":name" or "name"
 
         final List<Integer> pos = paramPosMap.get(name);
 
@@ -185,6 +209,24 @@ abstract class AbstractExecutor<T extends AbstractExecutor<T>> {
         return ret;
     }
 
+    /**
+     * Binds null to a positional parameter, specifying the parameter's type.
+     *
+     * @param pos the position of the parameter, starting at 1.
+     * @param sqlType the type of the parameter.
+     * @return this execution object to provide the fluent style.
+     * @throws SQLException throw if there is an issue binding null.
+     */
+    public T bindNull(final int pos, final int sqlType) throws SQLException {
+        stmt.setNull(pos, sqlType);
+
+        // suppressed because the casting will always work here
+        @SuppressWarnings("unchecked")
+        final T ret = (T) this;
+
+        return ret;
+    }
+
     /**
      * Binds null to a parameter.
      * Types.VARCHAR is used as the type's parameter.
@@ -207,7 +249,7 @@ abstract class AbstractExecutor<T extends AbstractExecutor<T>> {
      * @throws SQLException throw if the parameter is not found, already bound, or there is an issue binding null.
      */
     public T bindNull(String name, final int sqlType) throws SQLException {
-        name = name.replace(COLON, ""); // so we can take ":name" or "name"
+        name = paramName(name); // so we can take ":name" or "name"
 
         final List<Integer> pos = paramPosMap.get(name);
 
@@ -298,14 +340,20 @@ abstract class AbstractExecutor<T extends AbstractExecutor<T>> {
 
     /**
      * Close a <code>Statement</code>. This implementation avoids closing if
-     * null and does <strong>not</strong> suppress any exceptions. Subclasses
-     * can override to provide special handling like logging.
+     * null and does <strong>not</strong> suppress any exceptions. The
+     * executor's own statement is given back to the statement cache instead,
+     * if there is one. Subclasses can override to provide special handling
+     * like logging.
      *
      * @param stmt Statement to close
      * @throws SQLException if a database access error occurs
      */
     void close(Statement stmt) throws SQLException {
-        DbUtils.close(stmt);
+        if (statementCache != null && stmt == this.stmt) {
+            statementCache.release(jdbcSql, returnGeneratedKeys, this.stmt);
+        } else {
+            DbUtils.close(stmt);
+        }
     }
 
     /**
@@ -64,6 +64,15 @@ public class BasicRowProcessor implements RowProcessor {
         this.convert = convert;
     }
 
+    /**
+     * Returns the processor beans are converted with.
+     *
+     * @return the bean processor.
+     */
+    BeanProcessor getBeanProcessor() {
+        return convert;
+    }
+
     /**
      * Convert a <code>ResultSet</code> row into an <code>Object[]</code>.
      * This implementation copies column values into the array in the same
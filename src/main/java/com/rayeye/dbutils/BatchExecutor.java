@@ -39,7 +39,36 @@ public class BatchExecutor extends AbstractExecutor<BatchExecutor> {
      * @throws SQLException thrown if there is an error during execution.
      */
     BatchExecutor(final Connection conn, final String sql, final boolean closeConnection) throws SQLException {
-        super(conn, sql);
+        this(conn, sql, closeConnection, null);
+    }
+
+    /**
+     * Constructs a BatchExecutor given a connection, SQL statement and statement cache.
+     *
+     * @param conn The connection to use during execution.
+     * @param sql The SQL statement.
+     * @param closeConnection If the connection should be closed or not.
+     * @param statementCache The cache to take the statement from, or null.
+     * @throws SQLException thrown if there is an error during execution.
+     */
+    BatchExecutor(final Connection conn, final String sql, final boolean closeConnection,
+            final StatementCache statementCache) throws SQLException {
+        this(conn, sql, closeConnection, statementCache, false);
+    }
+
+    /**
+     * Constructs a BatchExecutor whose statement optionally returns generated keys.
+     *
+     * @param conn The connection to use during execution.
+     * @param sql The SQL statement.
+     * @param closeConnection If the connection should be closed or not.
+     * @param statementCache The cache to take the statement from, or null.
+     * @param returnGeneratedKeys If the statement should return generated keys.
+     * @throws SQLException thrown if there is an error during execution.
+     */
+    BatchExecutor(final Connection conn, final String sql, final boolean closeConnection,
+            final StatementCache statementCache, final boolean returnGeneratedKeys) throws SQLException {
+        super(conn, sql, statementCache, returnGeneratedKeys);
         this.closeConn = closeConnection;
     }
 
@@ -20,6 +20,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 
+/**
+ * Fluent class for executing a batch of inserts and reading the keys the
+ * database generated for them. The statement is prepared with
+ * <code>Statement.RETURN_GENERATED_KEYS</code>.
+ *
+ * @since 2.0
+ */
 public class BatchInsertExecutor extends BatchExecutor {
 
     /**
@@ -31,7 +38,21 @@ public class BatchInsertExecutor extends BatchExecutor {
      * @throws SQLException thrown if there is an error during execution.
      */
     BatchInsertExecutor(final Connection conn, final String sql, final boolean closeConnection) throws SQLException {
-        super(conn, sql, closeConnection);
+        this(conn, sql, closeConnection, null);
+    }
+
+    /**
+     * Constructs a BatchInsertExecutor given a connection, SQL statement and statement cache.
+     *
+     * @param conn The connection to use during execution.
+     * @param sql The SQL statement.
+     * @param closeConnection If the connection should be closed or not.
+     * @param statementCache The cache to take the statement from, or null.
+     * @throws SQLException thrown if there is an error during execution.
+     */
+    BatchInsertExecutor(final Connection conn, final String sql, final boolean closeConnection,
+            final StatementCache statementCache) throws SQLException {
+        super(conn, sql, closeConnection, statementCache, true);
     }
 
     /**
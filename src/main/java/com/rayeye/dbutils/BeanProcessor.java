@@ -19,8 +19,6 @@ import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -32,6 +30,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * <p>
  * <code>BeanProcessor</code> matches column names to bean property names
@@ -57,6 +58,11 @@ public class BeanProcessor {
      */
     protected static final int PROPERTY_NOT_FOUND = -1;
 
+    /**
+     * The maximum number of row mappers cached per processor.
+     */
+    static final int MAPPER_CACHE_SIZE = 256;
+
     /**
      * Set a bean's primitive properties to these defaults when SQL NULL
      * is returned.  These are the same as the defaults that ResultSet get*
@@ -69,6 +75,19 @@ public class BeanProcessor {
      */
     private final Map<String, String> columnToPropertyOverrides;
 
+    /**
+     * Row mappers by bean class and column labels.
+     */
+    private final Cache<List<Object>, RowMapper<?>> mappers = CacheBuilder.newBuilder()
+            .maximumSize(MAPPER_CACHE_SIZE)
+            .build();
+
+    /**
+     * True if a subclass overrides <code>processColumn</code>, which the
+     * compiled row mappers must then call for every column.
+     */
+    private final boolean customColumns;
+
     static {
         primitiveDefaults.put(Integer.TYPE, Integer.valueOf(0));
         primitiveDefaults.put(Short.TYPE, Short.valueOf((short) 0));
@@ -99,6 +118,19 @@ public class BeanProcessor {
             throw new IllegalArgumentException("columnToPropertyOverrides map cannot be null");
         }
         this.columnToPropertyOverrides = columnToPropertyOverrides;
+        this.customColumns = overrides(getClass(), "processColumn", ResultSet.class, Integer.TYPE, Class.class);
+    }
+
+    private static boolean overrides(Class<?> c, String name, Class<?>... parameterTypes) {
+        for (; c != BeanProcessor.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // keep looking in the superclass
+            }
+        }
+        return false;
     }
 
     /**
@@ -136,13 +168,7 @@ public class BeanProcessor {
      * @return the newly created bean
      */
     public <T> T toBean(ResultSet rs, Class<T> type) throws SQLException {
-
-        PropertyDescriptor[] props = this.propertyDescriptors(type);
-
-        ResultSetMetaData rsmd = rs.getMetaData();
-        int[] columnToProperty = this.mapColumnsToProperties(rsmd, props);
-
-        return this.createBean(rs, type, props, columnToProperty);
+        return this.rowMapper(rs.getMetaData(), type).map(rs);
     }
 
     /**
@@ -186,169 +212,95 @@ public class BeanProcessor {
             return results;
         }
 
-        PropertyDescriptor[] props = this.propertyDescriptors(type);
-        ResultSetMetaData rsmd = rs.getMetaData();
-        int[] columnToProperty = this.mapColumnsToProperties(rsmd, props);
+        RowMapper<T> mapper = this.rowMapper(rs.getMetaData(), type);
 
         do {
-            results.add(this.createBean(rs, type, props, columnToProperty));
+            results.add(mapper.map(rs));
         } while (rs.next());
 
         return results;
     }
 
     /**
-     * Creates a new object and initializes its fields from the ResultSet.
+     * Returns the row mapper for a bean class and the columns of a result
+     * set, compiling it on first use. The columns are matched to properties
+     * with <code>mapColumnsToProperties</code> and the <code>ResultSet</code>
+     * getter of each column is chosen from its property type, so the mapper
+     * does no matching or type dispatch per row.
      *
      * @param <T> The type of bean to create
-     * @param rs The result set.
-     * @param type The bean type (the return type of the object).
-     * @param props The property descriptors.
-     * @param columnToProperty The column indices in the result set.
-     * @return An initialized object.
-     * @throws SQLException if a database error occurs.
+     * @param rsmd The metadata of the result set.
+     * @param type The bean type.
+     * @return The row mapper.
+     * @throws SQLException if a database access error occurs
      */
-    private <T> T createBean(ResultSet rs, Class<T> type,
-            PropertyDescriptor[] props, int[] columnToProperty)
-            throws SQLException {
-
-        T bean = this.newInstance(type);
-
-        for (int i = 1; i < columnToProperty.length; i++) {
-
-            if (columnToProperty[i] == PROPERTY_NOT_FOUND) {
-                continue;
-            }
-
-            PropertyDescriptor prop = props[columnToProperty[i]];
-            Class<?> propType = prop.getPropertyType();
-
-            Object value = this.processColumn(rs, i, propType);
+    @SuppressWarnings("unchecked")
+    <T> RowMapper<T> rowMapper(ResultSetMetaData rsmd, Class<T> type) throws SQLException {
+        final int cols = rsmd.getColumnCount();
+        final Object[] key = new Object[cols + 1];
+        key[0] = type;
+        for (int col = 1; col <= cols; col++) {
+            key[col] = this.columnName(rsmd, col);
+        }
 
-            if (propType != null && value == null && propType.isPrimitive()) {
-                value = primitiveDefaults.get(propType);
-            }
+        final List<Object> shape = Arrays.asList(key);
+        RowMapper<T> mapper = (RowMapper<T>) mappers.getIfPresent(shape);
 
-            this.callSetter(bean, prop, value);
+        if (mapper == null) {
+            mapper = this.compile(rsmd, type);
+            mappers.put(shape, mapper);
         }
 
-        return bean;
+        return mapper;
     }
 
-    /**
-     * Calls the setter method on the target object for the given property.
-     * If no setter method exists for the property, this method does nothing.
-     *
-     * @param target The object to set the property on.
-     * @param prop The property to set.
-     * @param value The value to pass into the setter.
-     * @throws SQLException if an error occurs setting the property.
-     */
-    private void callSetter(Object target, PropertyDescriptor prop, Object value)
-            throws SQLException {
-
-        final Method setter = prop.getWriteMethod();
+    private <T> RowMapper<T> compile(ResultSetMetaData rsmd, Class<T> type) throws SQLException {
+        final PropertyDescriptor[] props = this.propertyDescriptors(type);
+        final int[] columnToProperty = this.mapColumnsToProperties(rsmd, props);
+        final Map<String, PropertyAccessor> accessors = PropertyAccessor.forClass(type);
 
-        if (setter == null) {
-            return;
-        }
-
-        final Class<?>[] params = setter.getParameterTypes();
+        final List<Integer> columns = new ArrayList<Integer>();
+        final List<RowMapper.ColumnReader> readers = new ArrayList<RowMapper.ColumnReader>();
+        final List<PropertyAccessor> setters = new ArrayList<PropertyAccessor>();
 
-        try {
-            // convert types for some popular ones
-            if (value instanceof java.util.Date) {
-                final String targetType = params[0].getName();
-                if ("java.sql.Date".equals(targetType)) {
-                    value = new java.sql.Date(((java.util.Date) value).getTime());
-                } else
-                if ("java.sql.Time".equals(targetType)) {
-                    value = new java.sql.Time(((java.util.Date) value).getTime());
-                } else
-                if ("java.sql.Timestamp".equals(targetType)) {
-                    value = new java.sql.Timestamp(((java.util.Date) value).getTime());
-                }
+        for (int col = 1; col < columnToProperty.length; col++) {
+            if (columnToProperty[col] == PROPERTY_NOT_FOUND) {
+                continue;
             }
 
-            // see if we can make it work with an enum
-            // Issue #2: https://github.com/wspeirs/sop4j-dbutils/pull/2
-            if(params[0].isEnum() && value != null) {
-                try {
-                    final Class cz = Class.forName(params[0].getName());
-                    setter.invoke(target, Enum.valueOf(cz, (String) value));
-                } catch(final ClassNotFoundException e) {
-                    throw new SQLException("Attempted to set an Enum, but class "
-                            + params[0].getName() + " was not found: " + e.getMessage());
-                }
-            }
+            final PropertyDescriptor prop = props[columnToProperty[col]];
+            final PropertyAccessor accessor = accessors.get(prop.getName());
 
-            // Don't call setter if the value object isn't the right type
-            if (this.isCompatibleType(value, params[0])) {
-                setter.invoke(target, new Object[]{value});
-            } else {
-              throw new SQLException(
-                  "Cannot set " + prop.getName() + ": incompatible types, cannot convert "
-                  + value.getClass().getName() + " to " + params[0].getName());
-                  // value cannot be null here because isCompatibleType allows null
+            // properties without a setter are skipped
+            if (prop.getPropertyType() == null || accessor == null || !accessor.isWritable()) {
+                continue;
             }
 
-        } catch (IllegalArgumentException e) {
-            throw new SQLException(
-                "Cannot set " + prop.getName() + ": " + e.getMessage());
-
-        } catch (IllegalAccessException e) {
-            throw new SQLException(
-                "Cannot set " + prop.getName() + ": " + e.getMessage());
+            columns.add(Integer.valueOf(col));
+            readers.add(customColumns
+                    ? RowMapper.ColumnReader.forProcessor(this, prop.getPropertyType())
+                    : RowMapper.ColumnReader.forType(prop.getPropertyType()));
+            setters.add(accessor);
+        }
 
-        } catch (InvocationTargetException e) {
-            throw new SQLException(
-                "Cannot set " + prop.getName() + ": " + e.getMessage());
+        final int[] indexes = new int[columns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = columns.get(i).intValue();
         }
+
+        return new RowMapper<T>(this, type, indexes,
+                readers.toArray(new RowMapper.ColumnReader[readers.size()]),
+                setters.toArray(new PropertyAccessor[setters.size()]));
     }
 
     /**
-     * ResultSet.getObject() returns an Integer object for an INT column.  The
-     * setter method for the property might take an Integer or a primitive int.
-     * This method returns true if the value can be successfully passed into
-     * the setter method.  Remember, Method.invoke() handles the unwrapping
-     * of Integer into an int.
+     * Returns the default value of a primitive type, used when SQL NULL is returned.
      *
-     * @param value The value to be passed into the setter method.
-     * @param type The setter's parameter type (non-null)
-     * @return boolean True if the value is compatible (null => true)
+     * @param type The primitive type.
+     * @return The default value.
      */
-    private boolean isCompatibleType(Object value, Class<?> type) {
-        // Do object check first, then primitives
-        if (value == null || type.isInstance(value)) {
-            return true;
-
-        } else if (type.equals(Integer.TYPE) && value instanceof Integer) {
-            return true;
-
-        } else if (type.equals(Long.TYPE) && value instanceof Long) {
-            return true;
-
-        } else if (type.equals(Double.TYPE) && value instanceof Double) {
-            return true;
-
-        } else if (type.equals(Float.TYPE) && value instanceof Float) {
-            return true;
-
-        } else if (type.equals(Short.TYPE) && value instanceof Short) {
-            return true;
-
-        } else if (type.equals(Byte.TYPE) && value instanceof Byte) {
-            return true;
-
-        } else if (type.equals(Character.TYPE) && value instanceof Character) {
-            return true;
-
-        } else if (type.equals(Boolean.TYPE) && value instanceof Boolean) {
-            return true;
-
-        }
-        return false;
-
+    static Object primitiveDefault(Class<?> type) {
+        return primitiveDefaults.get(type);
     }
 
     /**
@@ -394,6 +346,22 @@ public class BeanProcessor {
         return beanInfo.getPropertyDescriptors();
     }
 
+    /**
+     * Returns the label of a column, or its name when it has no label.
+     *
+     * @param rsmd The <code>ResultSetMetaData</code> containing column information.
+     * @param col The column index.
+     * @return The column label or name.
+     * @throws SQLException if a database access error occurs
+     */
+    private String columnName(ResultSetMetaData rsmd, int col) throws SQLException {
+        String columnName = rsmd.getColumnLabel(col);
+        if (null == columnName || 0 == columnName.length()) {
+            columnName = rsmd.getColumnName(col);
+        }
+        return columnName;
+    }
+
     /**
      * The positions in the returned array represent column numbers.  The
      * values stored at each position represent the index in the
@@ -417,10 +385,7 @@ public class BeanProcessor {
         Arrays.fill(columnToProperty, PROPERTY_NOT_FOUND);
 
         for (int col = 1; col <= cols; col++) {
-            String columnName = rsmd.getColumnLabel(col);
-            if (null == columnName || 0 == columnName.length()) {
-              columnName = rsmd.getColumnName(col);
-            }
+            String columnName = this.columnName(rsmd, col);
             String propertyName = columnToPropertyOverrides.get(columnName);
             if (propertyName == null) {
                 propertyName = columnName;
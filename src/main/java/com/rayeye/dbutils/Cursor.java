@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2014 SOP4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rayeye.dbutils;
+
+import java.io.Closeable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Iterates over the rows of an open query, mapping one row at a time, so
+ * only the current row is held in memory. Rows are read ahead with
+ * <code>ResultSet.next()</code>, which forward-only and streaming result
+ * sets support. The statement, and the connection if the query owns it,
+ * stay open until the cursor is closed; the cursor closes itself once the
+ * last row has been read.
+ * </p>
+ *
+ * <p>
+ * A cursor is single-use: it is its own iterator, so it can be used in a
+ * for-each loop once.
+ * </p>
+ *
+ * <pre>
+ * Cursor&lt;Task&gt; cursor = runner.query(Task.class).stream();
+ * try {
+ *     for (Task task : cursor) {
+ *         process(task);
+ *     }
+ * } finally {
+ *     cursor.close();
+ * }
+ * </pre>
+ *
+ * @param <T> the type of the rows.
+ * @see QueryExecutor#stream(Class)
+ * @see QueryExecutor#stream(RowProcessor)
+ */
+public class Cursor<T> implements Iterator<T>, Iterable<T>, Closeable {
+
+    /**
+     * Maps the current row of a result set.
+     *
+     * @param <T> the type of the rows.
+     */
+    interface Mapper<T> {
+
+        /**
+         * @param rs the result set, positioned on a row.
+         * @return the mapped row.
+         * @throws SQLException if a database access error occurs.
+         */
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private final QueryExecutor exec;
+    private final ResultSet rs;
+    private final Mapper<T> mapper;
+
+    /**
+     * True once the result set has been advanced to the row the next call
+     * to {@link #next()} returns.
+     */
+    private boolean fetched;
+    private boolean hasRow;
+    private boolean closed;
+    private boolean iterated;
+
+    /**
+     * @param exec the executor that ran the query, which releases its statement and connection.
+     * @param rs the open result set.
+     * @param mapper the mapper of the rows.
+     */
+    Cursor(final QueryExecutor exec, final ResultSet rs, final Mapper<T> mapper) {
+        this.exec = exec;
+        this.rs = rs;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Returns a mapper creating an <code>Object[]</code> per row.
+     *
+     * @param processor the row processor.
+     * @return the mapper.
+     */
+    static Mapper<Object[]> arrays(final RowProcessor processor) {
+        return new Mapper<Object[]>() {
+            @Override
+            public Object[] map(final ResultSet rs) throws SQLException {
+                return processor.toArray(rs);
+            }
+        };
+    }
+
+    /**
+     * Returns a mapper creating a <code>Map</code> per row.
+     *
+     * @param processor the row processor.
+     * @return the mapper.
+     */
+    static Mapper<Map<String, Object>> maps(final RowProcessor processor) {
+        return new Mapper<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> map(final ResultSet rs) throws SQLException {
+                return processor.toMap(rs);
+            }
+        };
+    }
+
+    /**
+     * Returns a mapper creating a bean per row.
+     *
+     * @param processor the row processor.
+     * @param type the bean type.
+     * @return the mapper.
+     */
+    static <T> Mapper<T> beans(final RowProcessor processor, final Class<T> type) {
+        return new Mapper<T>() {
+            @Override
+            public T map(final ResultSet rs) throws SQLException {
+                return processor.toBean(rs, type);
+            }
+        };
+    }
+
+    /**
+     * Returns this cursor, which can only be iterated once.
+     *
+     * @return this cursor.
+     * @throws IllegalStateException if the cursor was already iterated.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("A cursor can only be iterated once");
+        }
+        iterated = true;
+        return this;
+    }
+
+    /**
+     * Returns true if there is another row, reading ahead one row.
+     *
+     * @return <code>true</code> if there are more rows.
+     * @throws RuntimeException if an SQLException occurs.
+     */
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!fetched) {
+            try {
+                hasRow = rs.next();
+            } catch (SQLException e) {
+                rethrow(e);
+            }
+            fetched = true;
+
+            if (!hasRow) {
+                close();
+            }
+        }
+        return hasRow;
+    }
+
+    /**
+     * Returns the next row.
+     *
+     * @return the mapped row.
+     * @throws NoSuchElementException if there are no more rows.
+     * @throws RuntimeException if an SQLException occurs.
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+
+        try {
+            return mapper.map(rs);
+        } catch (SQLException e) {
+            rethrow(e);
+            return null;
+        }
+    }
+
+    /**
+     * Not supported.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * Returns true once the cursor has been closed, either explicitly or by
+     * reading past the last row.
+     *
+     * @return true if the cursor is closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the result set and the statement, and the connection if the
+     * query owns it. Closing a closed cursor has no effect.
+     *
+     * @throws RuntimeException if an SQLException occurs.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            exec.release(rs);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Closes the cursor and rethrows the SQLException as a RuntimeException.
+     *
+     * @param e SQLException to rethrow
+     */
+    private void rethrow(final SQLException e) {
+        try {
+            close();
+        } catch (RuntimeException suppressed) {
+            e.addSuppressed(suppressed);
+        }
+        throw new RuntimeException(e.getMessage(), e);
+    }
+
+}
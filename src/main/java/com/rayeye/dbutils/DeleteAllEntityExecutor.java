@@ -0,0 +1,110 @@
+/**
+ *
+ */
+package com.rayeye.dbutils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An EntityExecutor that is used to delete entities by a collection of ids.
+ * <p>
+ * The ids are collapsed into <code>delete from t where id in (?,?)</code>
+ * statements of up to {@link #IN_LIST_SIZE} ids; the statements of the full
+ * lists share one prepared statement and are sent in a JDBC batch. The rows
+ * are deleted in one transaction if the connection is in auto-commit mode,
+ * and the connection is closed afterwards.
+ */
+public class DeleteAllEntityExecutor<T> extends AbstractEntityExecutor<DeleteAllEntityExecutor<T>> {
+    private static final Logger LOG = LoggerFactory.getLogger(DeleteAllEntityExecutor.class);
+
+    /**
+     * The most ids in one statement, Oracle's limit of an in list.
+     */
+    static final int IN_LIST_SIZE = 1000;
+
+    private final Collection<?> ids;
+
+    /**
+     * Constructor.
+     *
+     * @param entity the class of the entities.
+     * @param ids the ids of the entities to delete.
+     * @param conn the connection to use, closed after the delete.
+     */
+    DeleteAllEntityExecutor(final Class<T> entity, final Collection<?> ids, final Connection conn) {
+        super(entity, conn);
+        this.ids = ids;
+    }
+
+    /**
+     * Deletes the entities of the ids.
+     * @return the number of rows deleted, counting every id of a statement if the driver does not report it.
+     * @throws SQLException thrown if any errors occur during deleting, no row is deleted then.
+     */
+    public int delete() throws SQLException {
+        final boolean autoCommit = begin();
+        boolean done = false;
+
+        try {
+            final int count = deleteRows();
+            done = true;
+            return count;
+        } finally {
+            end(autoCommit, done);
+        }
+    }
+
+    private int deleteRows() throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        final List<Object> list = new ArrayList<Object>(ids);
+        final int chunks = list.size() / IN_LIST_SIZE;
+        final int rest = list.size() % IN_LIST_SIZE;
+
+        int count = 0;
+
+        if (chunks > 0) {
+            count += deleteChunks(list, 0, chunks, IN_LIST_SIZE);
+        }
+        if (rest > 0) {
+            count += deleteChunks(list, chunks * IN_LIST_SIZE, 1, rest);
+        }
+
+        return count;
+    }
+
+    private int deleteChunks(final List<Object> list, final int from, final int chunks, final int perChunk)
+            throws SQLException {
+        final String sql = metadata.deleteByIdsSql(perChunk);
+
+        LOG.debug("DELETE {} x {} ids from {}", chunks, perChunk, tableName);
+
+        final BatchExecutor exec = new BatchExecutor(conn, sql, false, statementCache);
+        int index = from;
+
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            for (int pos = 1; pos <= perChunk; pos++) {
+                exec.bind(pos, list.get(index++));
+            }
+            exec.addBatch();
+        }
+
+        int count = 0;
+
+        for (int deleted : exec.execute()) {
+            // drivers may not report the count of a statement in a batch
+            count += deleted >= 0 ? deleted : perChunk;
+        }
+
+        return count;
+    }
+}
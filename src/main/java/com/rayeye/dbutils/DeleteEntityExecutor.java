@@ -6,7 +6,6 @@ package com.rayeye.dbutils;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -49,31 +48,20 @@ public class DeleteEntityExecutor<T> extends AbstractEntityExecutor<DeleteEntity
      * @throws SQLException thrown if any errors occur during reading.
      */
     public int delete() throws SQLException {
-        final StringBuilder sb = new StringBuilder("delete from ");
-
-        sb.append(tableName);
-
-        if(!params.isEmpty()) {
-            sb.append(" where ");
-
-            sb.append(EntityUtils.joinColumnsEquals(params.keySet(), " and "));
-        } else {
+        if(params.isEmpty()) {
             throw new IllegalArgumentException("No parameters were bound, so this would delete the whole table.");
         }
 
-        LOG.debug("DELETE: {}", sb.toString());
+        final SqlTemplate template = metadata.deleteSql(EntityUtils.whereColumns(params, excludeColumns));
+
+        LOG.debug("DELETE: {}", template.getSql());
 
         // setup the QueryExecutor
-        final UpdateExecutor exec = new UpdateExecutor(conn, sb.toString(), true);
+        final UpdateExecutor exec = new UpdateExecutor(conn, template.getSql(), true, statementCache);
 
         // go through and bind all the params
-        for(Map.Entry<String, Object> entity:params.entrySet()) {
-
-            if(excludeColumns.contains(entity.getKey())) {
-                continue;
-            }
-
-            exec.bind(entity.getKey(), entity.getValue());
+        for(String column:template.getWhereColumns()) {
+            exec.bind(column, params.get(column));
         }
 
         // execute using the BeanHandler
@@ -0,0 +1,594 @@
+/*
+ * Copyright (C) 2014 SOP4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rayeye.dbutils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The mapping of an {@link Entity} class, read from its annotations once and
+ * cached per class: the table name, the id property and the persistent
+ * properties in a stable order (the entity's own fields first, then those of
+ * each {@link MappedSuperclass}, in declaration order). Static and
+ * {@link Transient} fields are not persistent.
+ * <p>
+ * The SQL of entity statements is generated from the metadata and cached per
+ * statement shape: the kind of statement, the include/exclude field sets, the
+ * where columns and the ordering and limit of selects.
+ */
+public final class EntityMetadata {
+
+    /**
+     * The maximum number of statement shapes cached per entity.
+     */
+    static final int TEMPLATE_CACHE_SIZE = 256;
+
+    /**
+     * The parameter of the last id seen, in keyset pagination queries.
+     */
+    static final String AFTER_PARAM = "__after";
+
+    /**
+     * The parameter of the maximum number of rows, in limited queries.
+     */
+    static final String LIMIT_PARAM = "__limit";
+
+    /**
+     * Appended to a column in an order by list to sort it descending.
+     */
+    static final String DESC = " desc";
+
+    private static final ClassValue<EntityMetadata> CACHE = new ClassValue<EntityMetadata>() {
+        @Override
+        protected EntityMetadata computeValue(final Class<?> type) {
+            return new EntityMetadata(type);
+        }
+    };
+
+    /**
+     * A persistent property of an entity.
+     */
+    public static final class Property {
+        private final Field field;
+        private final String column;
+        private final boolean id;
+        private final boolean generated;
+        private final PropertyAccessor accessor;
+
+        Property(final Class<?> entityClass, final Field field, final String column, final boolean id,
+                final boolean generated) {
+            this.field = field;
+            this.column = column;
+            this.id = id;
+            this.generated = generated;
+            this.accessor = PropertyAccessor.forField(entityClass, field);
+        }
+
+        /**
+         * @return the name of the Java field.
+         */
+        public String getName() {
+            return field.getName();
+        }
+
+        /**
+         * @return the name of the column, from {@link Column} or else the field name.
+         */
+        public String getColumn() {
+            return column;
+        }
+
+        /**
+         * @return the type of the Java field.
+         */
+        public Class<?> getType() {
+            return field.getType();
+        }
+
+        /**
+         * @return the Java field.
+         */
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * @return true if the field is annotated with {@link Id}.
+         */
+        public boolean isId() {
+            return id;
+        }
+
+        /**
+         * @return true if the field is annotated with {@link GeneratedValue}.
+         */
+        public boolean isGenerated() {
+            return generated;
+        }
+
+        /**
+         * @return the accessor reading and writing the property on an entity instance.
+         */
+        public PropertyAccessor getAccessor() {
+            return accessor;
+        }
+    }
+
+    private final Class<?> entityClass;
+    private final String tableName;
+    private final Property idProperty;
+    private final ImmutableList<Property> properties;
+    private final ImmutableMap<String, Property> byName;
+    private final ImmutableMap<String, String> columnNames;
+    private final ImmutableMap<String, String> allColumnNames;
+    private final Cache<List<Object>, SqlTemplate> templates = CacheBuilder.newBuilder()
+            .maximumSize(TEMPLATE_CACHE_SIZE)
+            .build();
+
+    private enum Kind {
+        INSERT, UPDATE, SELECT, READ, DELETE
+    }
+
+    private EntityMetadata(final Class<?> entityClass) {
+        if (entityClass.getAnnotation(Entity.class) == null) {
+            throw new IllegalArgumentException(entityClass.getName() + " does not have the Entity annotation");
+        }
+
+        this.entityClass = entityClass;
+
+        final Table table = entityClass.getAnnotation(Table.class);
+
+        // get the table's name from the annotation
+        if (table != null && !table.name().isEmpty()) {
+            this.tableName = table.name();
+        } else {
+            this.tableName = entityClass.getSimpleName();
+        }
+
+        final ImmutableList.Builder<Property> list = ImmutableList.builder();
+        final Map<String, Property> columns = new HashMap<String, Property>();
+        Property idProp = null;
+
+        // we need to walk up the inheritance chain
+        Class<?> clazz = entityClass;
+        while (clazz != null) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()
+                        || field.getAnnotation(Transient.class) != null) {
+                    continue;
+                }
+
+                final Column column = field.getAnnotation(Column.class);
+
+                // get the column name or field name
+                final String columnName = column != null && !column.name().isEmpty() ? column.name() : field.getName();
+
+                final Property property = new Property(entityClass, field, columnName,
+                        field.getAnnotation(Id.class) != null, field.getAnnotation(GeneratedValue.class) != null);
+
+                if (columns.put(columnName, property) != null) {
+                    throw new IllegalArgumentException("Entity contains two columns with the same name: " + columnName);
+                }
+
+                if (property.isId() && idProp == null) {
+                    idProp = property;
+                }
+
+                list.add(property);
+            }
+
+            // walk up the inheritance class
+            clazz = clazz.getSuperclass();
+
+            if (clazz == null || !clazz.isAnnotationPresent(MappedSuperclass.class)) {
+                clazz = null;
+            }
+        }
+
+        this.properties = list.build();
+        this.idProperty = idProp;
+
+        if (properties.isEmpty()) {
+            throw new IllegalArgumentException("Entity does not contain any columns");
+        }
+
+        final ImmutableMap.Builder<String, String> insertable = ImmutableMap.builder();
+        final ImmutableMap.Builder<String, String> all = ImmutableMap.builder();
+        final Map<String, Property> names = new HashMap<String, Property>();
+
+        for (Property property : properties) {
+            all.put(property.getColumn(), property.getName());
+
+            if (!property.isGenerated()) {
+                insertable.put(property.getColumn(), property.getName());
+            }
+
+            // a property can be referred to by its column or field name, the field name wins
+            if (!names.containsKey(property.getColumn())) {
+                names.put(property.getColumn(), property);
+            }
+        }
+
+        for (Property property : properties) {
+            names.put(property.getName(), property);
+        }
+
+        this.columnNames = insertable.build();
+        this.allColumnNames = all.build();
+        this.byName = ImmutableMap.copyOf(names);
+    }
+
+    /**
+     * Returns the metadata of an entity class, reading it on first use.
+     *
+     * @param entityClass a class marked with the {@link Entity} annotation.
+     * @return the metadata of the class.
+     * @throws IllegalArgumentException if the class is not a valid entity.
+     */
+    public static EntityMetadata of(final Class<?> entityClass) {
+        return CACHE.get(entityClass);
+    }
+
+    /**
+     * @return the entity class.
+     */
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * @return the table name, from {@link Table} or else the simple class name.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return the property annotated with {@link Id}, or null if there is none.
+     */
+    public Property getIdProperty() {
+        return idProperty;
+    }
+
+    /**
+     * @return the field name of the id property, or null if there is none.
+     */
+    public String getIdName() {
+        return idProperty == null ? null : idProperty.getName();
+    }
+
+    /**
+     * @return every persistent property, in column order.
+     */
+    public ImmutableList<Property> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Looks up a property by field name or column name.
+     *
+     * @param name the field or column name.
+     * @return the property, or null if the entity has no such property.
+     */
+    public Property getProperty(final String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @return column name to field name of every property that is not {@link GeneratedValue}, in column order.
+     */
+    public ImmutableMap<String, String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * @return column name to field name of every property, in column order.
+     */
+    public ImmutableMap<String, String> getAllColumnNames() {
+        return allColumnNames;
+    }
+
+    /**
+     * Returns the SQL to insert an entity.
+     *
+     * @param include the fields to insert, or null for every field that is not generated.
+     * @param exclude the fields not to insert, ignored if include is given.
+     * @return the cached template, whose properties are the inserted ones.
+     */
+    SqlTemplate insertSql(final Set<String> include, final Set<String> exclude) {
+        return template(Kind.INSERT, include, exclude, null, null, false, false);
+    }
+
+    /**
+     * Returns the SQL to update entities. The where columns are not set.
+     *
+     * @param include the fields to set, or null for every field that is not generated.
+     * @param exclude the fields not to set, ignored if include is given.
+     * @param where the columns of the where clause.
+     * @return the cached template, whose properties are the set ones.
+     */
+    SqlTemplate updateSql(final Set<String> include, final Set<String> exclude, final Set<String> where) {
+        return template(Kind.UPDATE, include, exclude, where, null, false, false);
+    }
+
+    /**
+     * Returns the SQL to select the properties of entities.
+     *
+     * @param include the fields to select, or null for every field.
+     * @param exclude the fields not to select, ignored if include is given.
+     * @param where the columns of the where clause.
+     * @return the cached template, whose properties are the selected ones.
+     */
+    SqlTemplate selectSql(final Set<String> include, final Set<String> exclude, final Set<String> where) {
+        return selectSql(include, exclude, where, null, false, false);
+    }
+
+    /**
+     * Returns the SQL to select the properties of entities, ordered and
+     * limited. With <code>after</code>, rows are sought past the
+     * <code>:__after</code> id, below it if the id is ordered descending,
+     * which lets the database start from the id index instead of skipping
+     * rows like an offset would. The limit is bound as <code>:__limit</code>.
+     *
+     * @param include the fields to select, or null for every field.
+     * @param exclude the fields not to select, ignored if include is given.
+     * @param where the columns of the where clause.
+     * @param orderBy the columns to order by, each optionally followed by {@link #DESC}, or null.
+     * @param after true to only select rows past the <code>:__after</code> id.
+     * @param limit true to limit the number of rows to <code>:__limit</code>.
+     * @return the cached template, whose properties are the selected ones.
+     */
+    SqlTemplate selectSql(final Set<String> include, final Set<String> exclude, final Set<String> where,
+            final List<String> orderBy, final boolean after, final boolean limit) {
+        return template(Kind.SELECT, include, exclude, where, orderBy, after, limit);
+    }
+
+    /**
+     * Returns the SQL to select whole rows.
+     *
+     * @param where the columns of the where clause.
+     * @return the cached template.
+     */
+    SqlTemplate readSql(final Set<String> where) {
+        return template(Kind.READ, null, null, where, null, false, false);
+    }
+
+    /**
+     * Returns the SQL to delete rows.
+     *
+     * @param where the columns of the where clause.
+     * @return the cached template.
+     */
+    SqlTemplate deleteSql(final Set<String> where) {
+        return template(Kind.DELETE, null, null, where, null, false, false);
+    }
+
+    /**
+     * Returns the SQL to insert several rows in one statement, with positional
+     * parameters: <code>insert into t (a,b) values (?,?),(?,?)</code>. The
+     * parameters are the template's properties, row after row.
+     *
+     * @param template an insert template from {@link #insertSql(Set, Set)}.
+     * @param rows the number of rows, at least one.
+     * @return the SQL.
+     */
+    String insertRowsSql(final SqlTemplate template, final int rows) {
+        final List<Property> columns = template.getProperties();
+        final StringBuilder sb = new StringBuilder(32 + 16 * columns.size() + rows * (3 + 2 * columns.size()));
+
+        sb.append("insert into ").append(tableName).append(" (");
+        appendColumns(sb, columns, false);
+        sb.append(") values ");
+
+        for (int row = 0; row < rows; row++) {
+            sb.append(row > 0 ? ",(" : "(");
+            for (int i = 0; i < columns.size(); i++) {
+                sb.append(i > 0 ? ",?" : "?");
+            }
+            sb.append(")");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the SQL to delete the rows of several ids in one statement, with
+     * positional parameters: <code>delete from t where id in (?,?)</code>.
+     *
+     * @param ids the number of ids, at least one.
+     * @return the SQL.
+     * @throws IllegalArgumentException if the entity has no id.
+     */
+    String deleteByIdsSql(final int ids) {
+        if (idProperty == null) {
+            throw new IllegalArgumentException("Entity does not have an id column");
+        }
+
+        final StringBuilder sb = new StringBuilder(32 + tableName.length() + 2 * ids);
+
+        sb.append("delete from ").append(tableName).append(" where ").append(idProperty.getColumn()).append(" in (");
+        for (int i = 0; i < ids; i++) {
+            sb.append(i > 0 ? ",?" : "?");
+        }
+        sb.append(")");
+
+        return sb.toString();
+    }
+
+    private SqlTemplate template(final Kind kind, final Set<String> include, final Set<String> exclude,
+            final Set<String> where, final List<String> orderBy, final boolean after, final boolean limit) {
+        // exclude only applies when there is no include
+        final Set<String> excluded = include == null ? exclude : null;
+        final List<String> order = orderBy == null || orderBy.isEmpty() ? null : orderBy;
+        final List<Object> key = Arrays.<Object>asList(kind, include, excluded, where, order, after, limit);
+
+        SqlTemplate template = templates.getIfPresent(key);
+
+        if (template == null) {
+            template = buildTemplate(kind, include, excluded, where, order, after, limit);
+            // copy the caller's sets, they may change later
+            templates.put(Arrays.<Object>asList(kind, copy(include), copy(excluded), copy(where),
+                    order == null ? null : ImmutableList.copyOf(order), after, limit), template);
+        }
+
+        return template;
+    }
+
+    private static Set<String> copy(final Set<String> set) {
+        return set == null ? null : ImmutableSet.copyOf(set);
+    }
+
+    private SqlTemplate buildTemplate(final Kind kind, final Set<String> include, final Set<String> exclude,
+            final Set<String> where, final List<String> orderBy, final boolean after, final boolean limit) {
+        final ImmutableList.Builder<String> whereBuilder = ImmutableList.builder();
+        final ImmutableList.Builder<Property> columnBuilder = ImmutableList.builder();
+
+        for (Property property : properties) {
+            final boolean isWhere = where != null && where.contains(property.getColumn());
+
+            if (isWhere) {
+                whereBuilder.add(property.getColumn());
+            }
+
+            if ((kind == Kind.INSERT || kind == Kind.UPDATE) && property.isGenerated()) {
+                continue;
+            }
+            if (kind == Kind.UPDATE && isWhere) {
+                continue;
+            }
+            if (include != null ? !include.contains(property.getName())
+                    : exclude != null && exclude.contains(property.getName())) {
+                continue;
+            }
+
+            columnBuilder.add(property);
+        }
+
+        final ImmutableList<String> whereColumns = whereBuilder.build();
+        final ImmutableList<Property> columns = columnBuilder.build();
+
+        if (columns.isEmpty() && kind != Kind.READ && kind != Kind.DELETE) {
+            throw new IllegalArgumentException("Entity does not contain any columns");
+        }
+
+        final StringBuilder sb = new StringBuilder(64 + 16 * properties.size());
+
+        switch (kind) {
+        case INSERT:
+            sb.append("insert into ").append(tableName).append(" (");
+            appendColumns(sb, columns, false);
+            sb.append(") values(");
+            appendColumns(sb, columns, true);
+            sb.append(")");
+            break;
+        case UPDATE:
+            sb.append("update ").append(tableName).append(" set ");
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                appendEquals(sb, columns.get(i).getColumn());
+            }
+            break;
+        case SELECT:
+            sb.append("select ");
+            appendColumns(sb, columns, false);
+            sb.append(" from ").append(tableName);
+            break;
+        case READ:
+            sb.append("select * from ").append(tableName);
+            break;
+        case DELETE:
+            sb.append("delete from ").append(tableName);
+            break;
+        default:
+            throw new IllegalStateException(kind.toString());
+        }
+
+        if (!whereColumns.isEmpty()) {
+            sb.append(" where ");
+            for (int i = 0; i < whereColumns.size(); i++) {
+                if (i > 0) {
+                    sb.append(" and ");
+                }
+                appendEquals(sb, whereColumns.get(i));
+            }
+        }
+
+        if (after) {
+            if (idProperty == null) {
+                throw new IllegalArgumentException("Entity does not have an id column to seek on");
+            }
+            final String id = idProperty.getColumn();
+            final boolean descending = orderBy != null && orderBy.contains(id + DESC);
+
+            sb.append(whereColumns.isEmpty() ? " where " : " and ").append(id)
+                    .append(descending ? " < :" : " > :").append(AFTER_PARAM);
+        }
+
+        if (orderBy != null) {
+            sb.append(" order by ");
+            for (int i = 0; i < orderBy.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(orderBy.get(i));
+            }
+        }
+
+        if (limit) {
+            sb.append(" limit :").append(LIMIT_PARAM);
+        }
+
+        return new SqlTemplate(sb.toString(), columns, whereColumns);
+    }
+
+    private static void appendColumns(final StringBuilder sb, final List<Property> columns, final boolean params) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            if (params) {
+                sb.append(":");
+            }
+            sb.append(columns.get(i).getColumn());
+        }
+    }
+
+    private static void appendEquals(final StringBuilder sb, final String column) {
+        sb.append(column).append(" = :").append(column);
+    }
+
+}
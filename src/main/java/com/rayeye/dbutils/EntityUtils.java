@@ -1,19 +1,12 @@
 package com.rayeye.dbutils;
 
-import java.lang.reflect.Field;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
-import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.Id;
-import javax.persistence.MappedSuperclass;
-import javax.persistence.Table;
-import javax.persistence.Transient;
-
 
 public class EntityUtils {
 
@@ -27,102 +20,25 @@ public class EntityUtils {
      * @return the name of the table for the entity.
      */
     public static String getTableName(final Class<?> entity) {
-        final Entity annotation = entity.getAnnotation(Entity.class);
-
-        if(annotation == null) {
-            throw new IllegalArgumentException(entity.getName() + " does not have the Entity annotation");
-        }
-
-        final Table table = entity.getAnnotation(Table.class);
-
-        // get the table's name from the annotation
-        if(table != null && !table.name().isEmpty()) {
-            return table.name();
-        } else {
-            return entity.getSimpleName();
-        }
+        return EntityMetadata.of(entity).getTableName();
     }
 
-    
+    /**
+     * Given an entity, returns the field name of its {@link javax.persistence.Id} property.
+     * @param entityClass the entity to lookup.
+     * @return the field name of the id, or null if the entity has none.
+     */
     public static String getIdColumnName(Class<?> entityClass){
-         if(entityClass.getAnnotation(Entity.class) == null) {
-             throw new IllegalArgumentException(entityClass.getName() + " does not have the Entity annotation");
-         }
-
-         // we need to walk up the inheritance chain
-         while(entityClass != null) {
-             for(Field field : entityClass.getDeclaredFields()) {
-            	 Id id = field.getAnnotation(Id.class);
-//                 final GeneratedValue gen = field.getAnnotation(GeneratedValue.class);
-                 if( id != null) {
-                     return field.getName();
-                 }
-             }
-
-             // walk up the inheritance class
-             
-             entityClass = entityClass.getSuperclass(); 
-         
-             if(entityClass == null || !entityClass.isAnnotationPresent(MappedSuperclass.class)) {
-             	entityClass = null;
-             } 
-         }
-
-         return null;
+        return EntityMetadata.of(entityClass).getIdName();
     }
-    
+
     /**
      * Gets the names of the columns for a given entity, except those marked as @GeneratedValue.
-     * @param entity the entity to search.
-     * @return a map which contains column name, and field name.
+     * @param entityClass the entity to search.
+     * @return a map which contains column name, and field name, in column order.
      */
     static Map<String, String> getColumnNames(Class<?> entityClass) {
-        final Map<String, String> ret = new HashMap<String, String>();
-
-        if(entityClass.getAnnotation(Entity.class) == null) {
-            throw new IllegalArgumentException(entityClass.getName() + " does not have the Entity annotation");
-        }
-
-        // we need to walk up the inheritance chain
-        while(entityClass != null) {
-            for(Field field : entityClass.getDeclaredFields()) {
-                Column column = field.getAnnotation(Column.class);
-                GeneratedValue gen = field.getAnnotation(GeneratedValue.class);
-                Transient trans =  field.getAnnotation(Transient.class);
-
-                // skip anything not annotated or annotated as generated
-                if( gen != null || trans != null) {
-                    continue;
-                }
-
-                String columnName;
-                
-                if( column != null ) {
-               
-                	// get the column name or field name
-                    if(column.name().isEmpty()) {
-                        columnName = field.getName();
-                    } else {
-                        columnName = column.name();
-                    }
-                    
-                } else {
-                	
-                	columnName = field.getName();
-                }
-
-                if(ret.put(columnName, field.getName()) != null) {
-                    throw new IllegalArgumentException("Entity contains two columns with the same name: " + columnName);
-                }
-            }
-
-            // walk up the inheritance class
-            entityClass = entityClass.getSuperclass(); 
-            
-            if(entityClass == null || !entityClass.isAnnotationPresent(MappedSuperclass.class)) {
-            	entityClass = null;
-            } 
-        }
+        final Map<String, String> ret = EntityMetadata.of(entityClass).getColumnNames();
 
         if(ret.isEmpty()) {
             throw new IllegalArgumentException("Entity does not contain any columns");
@@ -130,59 +46,29 @@ public class EntityUtils {
 
         return ret;
     }
-    
-    static Map<String, String> getAllColumnNames(Class<?> entityClass) {
-        final Map<String, String> ret = new HashMap<String, String>();
-
-        if(entityClass.getAnnotation(Entity.class) == null) {
-            throw new IllegalArgumentException(entityClass.getName() + " does not have the Entity annotation");
-        }
-
-        // we need to walk up the inheritance chain
-        while(entityClass != null) {
-            for(Field field : entityClass.getDeclaredFields()) {
-                Column column = field.getAnnotation(Column.class);
-//                GeneratedValue gen = field.getAnnotation(GeneratedValue.class);
-                Transient trans =  field.getAnnotation(Transient.class);
-
-                // skip anything not annotated or annotated as generated
-                if( trans != null) {
-                    continue;
-                }
-
-                String columnName;
-                
-                if( column != null ) {
-               
-                	// get the column name or field name
-                    if(column.name().isEmpty()) {
-                        columnName = field.getName();
-                    } else {
-                        columnName = column.name();
-                    }
-                    
-                } else {
-                	
-                	columnName = field.getName();
-                }
-
-                if(ret.put(columnName, field.getName()) != null) {
-                    throw new IllegalArgumentException("Entity contains two columns with the same name: " + columnName);
-                }
-            }
 
-            // walk up the inheritance class
-            entityClass = entityClass.getSuperclass(); 
-            
-            if(entityClass == null || !entityClass.isAnnotationPresent(MappedSuperclass.class)) {
-            	entityClass = null;
-            } 
-        }
+    /**
+     * Gets the names of all the columns for a given {@link Entity}, including those marked as {@link GeneratedValue}.
+     * @param entityClass the entity to search.
+     * @return a map which contains column name, and field name, in column order.
+     */
+    static Map<String, String> getAllColumnNames(Class<?> entityClass) {
+        return EntityMetadata.of(entityClass).getAllColumnNames();
+    }
 
-        if(ret.isEmpty()) {
-            throw new IllegalArgumentException("Entity does not contain any columns");
+    /**
+     * Returns the bound parameter columns that are not excluded.
+     * @param params the bound parameters, keyed by column.
+     * @param excludeColumns the columns to leave out, may be null or empty.
+     * @return the where columns.
+     */
+    static Set<String> whereColumns(final Map<String, Object> params, final Set<String> excludeColumns) {
+        if(excludeColumns == null || excludeColumns.isEmpty()) {
+            return params.keySet();
         }
 
+        final Set<String> ret = new HashSet<String>(params.keySet());
+        ret.removeAll(excludeColumns);
         return ret;
     }
 
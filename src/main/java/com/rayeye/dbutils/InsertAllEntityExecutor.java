@@ -0,0 +1,305 @@
+/**
+ *
+ */
+package com.rayeye.dbutils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rayeye.dbutils.handlers.ColumnListHandler;
+
+/**
+ * An EntityExecutor that is used to insert a collection of entities.
+ * <p>
+ * {@link #insert()} sends the rows as multi-row inserts,
+ * <code>insert into t (a,b) values (?,?),(?,?)</code>, as many rows per
+ * statement as fit in the maximum packet size, the statements being
+ * batched. {@link #insertReturningKeys()} batches a single-row insert and
+ * returns the keys the database generated, one per entity.
+ * <p>
+ * If the id of the entity is generated, the keys are read back either way
+ * and written into the ids of the entities; a driver that returns fewer keys
+ * than rows for a multi-row insert leaves the ids of its rows unset. The
+ * rows are inserted in one transaction if the connection is in auto-commit
+ * mode, and the connection is closed afterwards.
+ */
+public class InsertAllEntityExecutor<T> extends
+		AbstractEntityExecutor<InsertAllEntityExecutor<T>> {
+	private static final Logger LOG = LoggerFactory
+			.getLogger(InsertAllEntityExecutor.class);
+
+	/**
+	 * The default maximum size of a statement, MySQL's default max_allowed_packet is larger.
+	 */
+	static final int DEFAULT_MAX_PACKET_SIZE = 1024 * 1024;
+
+	/**
+	 * The most parameters a statement may have, the limit of the MySQL and PostgreSQL protocols.
+	 */
+	static final int MAX_PARAMETERS = 65535;
+
+	private final Collection<? extends T> entities;
+	private Set<String> excludeColumns;
+	private Set<String> includeColumns;
+	private int maxPacketSize = DEFAULT_MAX_PACKET_SIZE;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param entityClass
+	 *            the class of the entities.
+	 * @param entities
+	 *            the entities to insert.
+	 * @param conn
+	 *            the connection to use, closed after the insert.
+	 */
+	InsertAllEntityExecutor(final Class<T> entityClass, final Collection<? extends T> entities, final Connection conn) {
+		super(entityClass, conn);
+		this.entities = entities;
+	}
+
+	public InsertAllEntityExecutor<T> setIncludeColumns(String... includeColumns) {
+		return this.setIncludeColumns(new HashSet<String>(Arrays.asList(includeColumns)));
+	}
+
+	public InsertAllEntityExecutor<T> setIncludeColumns(Set<String> includeColumns) {
+		this.includeColumns = includeColumns;
+		return this;
+	}
+
+	public InsertAllEntityExecutor<T> setExcludeColumns(Set<String> excludeColumns) {
+		this.excludeColumns = excludeColumns;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum size of a multi-row insert, which should not exceed the
+	 * server's limit (max_allowed_packet on MySQL). Rows are estimated at their
+	 * largest escaped size, a statement always holds at least one row.
+	 *
+	 * @param maxPacketSize
+	 *            the size in bytes.
+	 * @return this.
+	 */
+	public InsertAllEntityExecutor<T> maxPacketSize(final int maxPacketSize) {
+		if (maxPacketSize <= 0) {
+			throw new IllegalArgumentException("Max packet size must be positive: " + maxPacketSize);
+		}
+		this.maxPacketSize = maxPacketSize;
+		return this;
+	}
+
+	/**
+	 * Inserts the entities with multi-row inserts.
+	 *
+	 * @return the number of rows inserted.
+	 * @throws SQLException
+	 *             thrown if any errors occur during inserting, no row is inserted then.
+	 */
+	public int insert() throws SQLException {
+		final boolean autoCommit = begin();
+		boolean done = false;
+
+		try {
+			final int count = insertRows();
+			done = true;
+			return count;
+		} finally {
+			end(autoCommit, done);
+		}
+	}
+
+	/**
+	 * Inserts the entities with a batch, reading the generated keys.
+	 *
+	 * @return the generated keys, in the order of the entities.
+	 * @throws SQLException
+	 *             thrown if any errors occur during inserting, no row is inserted then.
+	 */
+	public List<Object> insertReturningKeys() throws SQLException {
+		final boolean autoCommit = begin();
+		boolean done = false;
+
+		try {
+			final List<Object> keys = insertRowsReturningKeys();
+			done = true;
+			return keys;
+		} finally {
+			end(autoCommit, done);
+		}
+	}
+
+	private int insertRows() throws SQLException {
+		if (entities.isEmpty()) {
+			return 0;
+		}
+
+		final SqlTemplate template = metadata.insertSql(includeColumns, excludeColumns);
+		final List<EntityMetadata.Property> properties = template.getProperties();
+		// the entities of the rows, to write the generated keys into
+		final List<T> generated = hasGeneratedId() ? new ArrayList<T>(entities) : null;
+
+		// read every value first, the chunk size depends on the largest row
+		final List<Object[]> rows = new ArrayList<Object[]>(entities.size());
+		int rowSize = 0;
+
+		for (T entity : entities) {
+			final Object[] row = new Object[properties.size()];
+			int size = 2 * properties.size() + 2;
+
+			for (int i = 0; i < row.length; i++) {
+				row[i] = properties.get(i).getAccessor().get(entity);
+				size += estimateSize(row[i]);
+			}
+
+			rows.add(row);
+			rowSize = Math.max(rowSize, size);
+		}
+
+		final int head = metadata.insertRowsSql(template, 1).length();
+		final int perChunk = Math.max(1, Math.min((maxPacketSize - head) / rowSize,
+				MAX_PARAMETERS / properties.size()));
+		final int chunks = rows.size() / perChunk;
+		final int rest = rows.size() % perChunk;
+
+		int count = 0;
+
+		if (chunks > 0) {
+			count += insertChunks(metadata.insertRowsSql(template, perChunk), rows, generated, 0, chunks, perChunk);
+		}
+		if (rest > 0) {
+			count += insertChunks(metadata.insertRowsSql(template, rest), rows, generated, chunks * perChunk, 1, rest);
+		}
+
+		return count;
+	}
+
+	private int insertChunks(final String sql, final List<Object[]> rows, final List<T> generated, final int from,
+			final int chunks, final int perChunk) throws SQLException {
+		LOG.debug("INSERT {} x {} rows: {}", chunks, perChunk, sql.length() > 256 ? sql.substring(0, 256) : sql);
+
+		final BatchExecutor exec = generated != null ? new BatchInsertExecutor(conn, sql, false, statementCache)
+				: new BatchExecutor(conn, sql, false, statementCache);
+		int row = from;
+
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			int pos = 1;
+
+			for (int i = 0; i < perChunk; i++) {
+				for (Object value : rows.get(row++)) {
+					bind(exec, pos++, value);
+				}
+			}
+
+			exec.addBatch();
+		}
+
+		if (generated != null) {
+			final List<Object> keys = ((BatchInsertExecutor) exec).execute(new ColumnListHandler<Object>(1));
+
+			if (keys.size() == chunks * perChunk) {
+				for (int i = 0; i < keys.size(); i++) {
+					setGeneratedId(generated.get(from + i), keys.get(i));
+				}
+			}
+
+			// the update counts are not returned with the keys
+			return chunks * perChunk;
+		}
+
+		int count = 0;
+
+		for (int updated : exec.execute()) {
+			// drivers may not report the count of a statement in a batch
+			count += updated >= 0 ? updated : perChunk;
+		}
+
+		return count;
+	}
+
+	private List<Object> insertRowsReturningKeys() throws SQLException {
+		final List<Object> keys = new ArrayList<Object>(entities.size());
+
+		if (entities.isEmpty()) {
+			return keys;
+		}
+
+		final SqlTemplate template = metadata.insertSql(includeColumns, excludeColumns);
+		final List<EntityMetadata.Property> properties = template.getProperties();
+		final String sql = metadata.insertRowsSql(template, 1);
+
+		LOG.debug("INSERT {} rows: {}", entities.size(), sql);
+
+		final boolean generated = hasGeneratedId();
+		final Iterator<? extends T> it = entities.iterator();
+		final List<T> batch = new ArrayList<T>(Math.min(entities.size(), BATCH_SIZE));
+
+		while (it.hasNext()) {
+			final BatchInsertExecutor exec = new BatchInsertExecutor(conn, sql, false, statementCache);
+			batch.clear();
+
+			for (int i = 0; i < BATCH_SIZE && it.hasNext(); i++) {
+				final T entity = it.next();
+				int pos = 1;
+
+				for (EntityMetadata.Property property : properties) {
+					bind(exec, pos++, property.getAccessor().get(entity));
+				}
+
+				exec.addBatch();
+				batch.add(entity);
+			}
+
+			final List<Object> batchKeys = exec.execute(new ColumnListHandler<Object>(1));
+
+			if (generated && batchKeys.size() == batch.size()) {
+				for (int i = 0; i < batch.size(); i++) {
+					setGeneratedId(batch.get(i), batchKeys.get(i));
+				}
+			}
+
+			keys.addAll(batchKeys);
+		}
+
+		return keys;
+	}
+
+	private static void bind(final BatchExecutor exec, final int pos, final Object value) throws SQLException {
+		if (value == null) {
+			exec.bindNull(pos, Types.VARCHAR);
+		} else {
+			exec.bind(pos, value);
+		}
+	}
+
+	/**
+	 * Estimates the size of a value inlined in a statement, escaped and in
+	 * the widest character set.
+	 */
+	static int estimateSize(final Object value) {
+		if (value == null) {
+			return 4;
+		} else if (value instanceof CharSequence) {
+			return ((CharSequence) value).length() * 4 + 2;
+		} else if (value instanceof byte[]) {
+			return ((byte[]) value).length * 2 + 3;
+		} else if (value instanceof Number || value instanceof Boolean) {
+			return 24;
+		} else if (value instanceof Date) {
+			return 32;
+		}
+		return value.toString().length() * 4 + 2;
+	}
+}
@@ -3,20 +3,17 @@
  */
 package com.rayeye.dbutils;
 
-import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.beanutils.PropertyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Sets;
+import com.rayeye.dbutils.handlers.ScalarHandler;
 
 /**
  * An EntityExecutor that is used to update entities.
@@ -74,81 +71,41 @@ public class InsertEntityExecutor<T> extends
 	}
 
 	/**
-	 * Updates an entity(ies) in the database.
+	 * Inserts the entity in the database. If its id is generated, the
+	 * statement returns the generated key, which is written into the id.
 	 * 
-	 * @return the number of rows updated.
+	 * @return the number of rows inserted.
 	 * @throws SQLException
-	 *             thrown if any errors occur during updating.
+	 *             thrown if any errors occur during inserting.
 	 */
 	public int insert() throws SQLException {
-		Map<String, String> columns = EntityUtils.getColumnNames(entity);
-		
-		if( includeColumns != null ) {
-			Map<String, String> newColumns = new HashMap<String, String>();
-			for (Map.Entry<String, String> entry : columns.entrySet()) {
-				if (includeColumns.contains(entry.getValue())) {
-					newColumns.put(entry.getKey(), entry.getValue());
-				}
-			}
-			return insert(newColumns);
-		} else if( excludeColumns != null ) {
-			Map<String, String> newColumns = new HashMap<String, String>();
-			for (Map.Entry<String, String> entry : columns.entrySet()) {
-				if (!excludeColumns.contains(entry.getValue())) {
-					newColumns.put(entry.getKey(), entry.getValue());
-				}
-			}
-			return insert(newColumns);
-		}
-		
-		return insert(columns);
-	}
-	
-	private int insert(Map<String, String> columns) throws SQLException{
-		
-		final String tableName = EntityUtils.getTableName(entity);
-		
-		final StringBuilder sb = new StringBuilder("insert into ");
-
-		// create the SQL command
-		sb.append(tableName);
-		sb.append(" (");
-		sb.append(EntityUtils.joinColumnsWithComma(columns.keySet(), null));
-		sb.append(") values(");
-		sb.append(EntityUtils.joinColumnsWithComma(columns.keySet(), ":"));
-		sb.append(")");
-
-		LOG.debug("INSERT: {}", sb.toString());
+		final SqlTemplate template = metadata.insertSql(includeColumns, excludeColumns);
+		final boolean generated = hasGeneratedId();
+
+		LOG.debug("INSERT: {}", template.getSql());
 
 		// create the executor
-		final InsertExecutor exec = new InsertExecutor(conn, sb.toString(), true);
+		final InsertExecutor exec = new InsertExecutor(conn, template.getSql(), true, statementCache, generated);
 
-		for (String column : columns.keySet()) {
-			// don't bind the exclude columns
-			if (excludeColumns != null && excludeColumns.contains(column)) {
-				continue;
-			}
+		for (EntityMetadata.Property property : template.getProperties()) {
+			// bind all of the values
+			final Object value = property.getAccessor().get(entityInstance);
 
-			try {
-				// bind all of the values
-				final Object value = PropertyUtils.getSimpleProperty(
-						entityInstance, columns.get(column));
-
-				if (value == null) {
-					exec.bindNull(column);
-				} else {
-					exec.bind(column, value);
-				}
-			} catch (final IllegalAccessException e) {
-				throw new SQLException(e);
-			} catch (final InvocationTargetException e) {
-				throw new SQLException(e);
-			} catch (final NoSuchMethodException e) {
-				throw new SQLException(e);
+			if (value == null) {
+				exec.bindNull(property.getColumn());
+			} else {
+				exec.bind(property.getColumn(), value);
 			}
 		}
 
-		return exec.execute();
+		if (!generated) {
+			return exec.execute();
+		}
+
+		setGeneratedId(entityInstance, exec.execute(new ScalarHandler<Object>()));
+
+		// a single row was inserted, or execute would have thrown
+		return 1;
 	}
 
 //	private int includeColumnsExecute() throws SQLException {
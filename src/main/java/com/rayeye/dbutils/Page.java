@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2014 SOP4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rayeye.dbutils;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of entities read with keyset pagination, and the token to read
+ * the next page with.
+ *
+ * <pre>
+ * Page&lt;Task&gt; page = runner.query(Task.class).page(100);
+ * while (page.hasNext()) {
+ *     page = runner.query(Task.class).after(page.getNext()).page(100);
+ * }
+ * </pre>
+ *
+ * @param <T> the entity type.
+ * @see QueryEntityExecutor#page(int)
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final Object next;
+
+    /**
+     * @param items the entities of the page.
+     * @param next the id of the last entity if there are more pages, else null.
+     */
+    Page(final List<T> items, final Object next) {
+        this.items = Collections.unmodifiableList(items);
+        this.next = next;
+    }
+
+    /**
+     * @return the entities of the page, in id order.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the continuation token: the id of the last entity of this page,
+     * to pass to {@link QueryEntityExecutor#after(Object)}.
+     *
+     * @return the token, or null if this is the last page.
+     */
+    public Object getNext() {
+        return next;
+    }
+
+    /**
+     * @return true if there is a page after this one.
+     */
+    public boolean hasNext() {
+        return next != null;
+    }
+
+}
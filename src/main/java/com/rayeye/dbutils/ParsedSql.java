@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2014 SOP4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rayeye.dbutils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A SQL statement with named parameters, parsed into the JDBC form with
+ * <code>?</code> placeholders and an immutable table of parameter positions.
+ * Instances are shared between executors through a bounded cache keyed by
+ * the original SQL, so a statement is only parsed the first time it is seen.
+ * <p>
+ * Parameters are found by a single-pass lexer rather than a regular
+ * expression: a colon inside a quoted literal (<code>'...'</code>), a quoted
+ * identifier (<code>"..."</code> or <code>`...`</code>) or a comment
+ * (<code>-- ...</code> or <code>/* ... *&#47;</code>) is left alone, and so is
+ * a PostgreSQL <code>::type</code> cast. Backslash escapes inside literals
+ * follow MySQL's default rules.
+ */
+final class ParsedSql {
+
+    /**
+     * The maximum number of distinct SQL strings kept in the parse cache.
+     */
+    static final int CACHE_SIZE = 2048;
+
+    private static final LoadingCache<String, ParsedSql> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .build(new CacheLoader<String, ParsedSql>() {
+                @Override
+                public ParsedSql load(String sql) {
+                    return parseUncached(sql);
+                }
+            });
+
+    private final String sql;
+    private final String jdbcSql;
+    private final ImmutableMap<String, ImmutableList<Integer>> positions;
+
+    private ParsedSql(final String sql, final String jdbcSql, final ImmutableMap<String, ImmutableList<Integer>> positions) {
+        this.sql = sql;
+        this.jdbcSql = jdbcSql;
+        this.positions = positions;
+    }
+
+    /**
+     * Returns the parsed form of the SQL statement, from the cache if it has
+     * been parsed before.
+     *
+     * @param sql the SQL statement with <code>:name</code> parameters.
+     * @return the parsed statement.
+     */
+    static ParsedSql parse(final String sql) {
+        return CACHE.getUnchecked(sql);
+    }
+
+    /**
+     * Parses the SQL statement without consulting the cache.
+     *
+     * @param sql the SQL statement with <code>:name</code> parameters.
+     * @return the parsed statement.
+     */
+    static ParsedSql parseUncached(final String sql) {
+        if (sql.indexOf(':') < 0) {
+            return new ParsedSql(sql, sql, ImmutableMap.<String, ImmutableList<Integer>>of());
+        }
+
+        final Map<String, List<Integer>> posMap = new LinkedHashMap<String, List<Integer>>();
+        final StringBuilder jdbcSql = new StringBuilder(sql.length());
+        final int length = sql.length();
+        int position = 0;
+        int copied = 0;
+        int i = 0;
+
+        while (i < length) {
+            final char c = sql.charAt(i);
+
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i, c);
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                i = skipLine(sql, i + 2);
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                i = skipBlockComment(sql, i + 2);
+            } else if (c == ':' && i + 1 < length && sql.charAt(i + 1) == ':') {
+                // a cast such as value::int
+                i += 2;
+            } else if (c == ':' && i + 1 < length && isParamChar(sql.charAt(i + 1))) {
+                int end = i + 2;
+                while (end < length && isParamChar(sql.charAt(end))) {
+                    end++;
+                }
+
+                final String param = sql.substring(i + 1, end);
+                List<Integer> posList = posMap.get(param);
+
+                if (posList == null) {
+                    posList = new ArrayList<Integer>(2);
+                    posMap.put(param, posList);
+                }
+
+                // increment first, so we match SQL numbering
+                posList.add(Integer.valueOf(++position));
+
+                jdbcSql.append(sql, copied, i).append('?');
+                copied = end;
+                i = end;
+            } else {
+                i++;
+            }
+        }
+
+        if (copied == 0) {
+            return new ParsedSql(sql, sql, ImmutableMap.<String, ImmutableList<Integer>>of());
+        }
+        jdbcSql.append(sql, copied, length);
+
+        final ImmutableMap.Builder<String, ImmutableList<Integer>> positions = ImmutableMap.builder();
+        for (Map.Entry<String, List<Integer>> entry : posMap.entrySet()) {
+            positions.put(entry.getKey(), ImmutableList.copyOf(entry.getValue()));
+        }
+
+        return new ParsedSql(sql, jdbcSql.toString(), positions.build());
+    }
+
+    /**
+     * Same characters as <code>\w</code>: letters, digits and underscore.
+     */
+    private static boolean isParamChar(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Skips a quoted literal or identifier. The quote is escaped by doubling
+     * it, and inside string literals also by a backslash.
+     *
+     * @return the index just past the closing quote, or the end of the SQL.
+     */
+    private static int skipQuoted(final String sql, int i, final char quote) {
+        final int length = sql.length();
+        i++;
+        while (i < length) {
+            final char c = sql.charAt(i);
+            if (c == '\\' && quote == '\'') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    private static int skipLine(final String sql, final int i) {
+        final int end = sql.indexOf('\n', i);
+        return end < 0 ? sql.length() : end + 1;
+    }
+
+    private static int skipBlockComment(final String sql, final int i) {
+        final int end = sql.indexOf("*/", i);
+        return end < 0 ? sql.length() : end + 2;
+    }
+
+    /**
+     * Drops all cached statements.
+     */
+    static void clearCache() {
+        CACHE.invalidateAll();
+    }
+
+    /**
+     * Gets the original SQL statement.
+     *
+     * @return the SQL statement with named parameters.
+     */
+    String getSql() {
+        return sql;
+    }
+
+    /**
+     * Gets the SQL statement to prepare, with every named parameter replaced by <code>?</code>.
+     *
+     * @return the JDBC SQL statement.
+     */
+    String getJdbcSql() {
+        return jdbcSql;
+    }
+
+    /**
+     * Gets the 1-based JDBC positions of every named parameter, without the leading colon.
+     *
+     * @return the immutable parameter position table.
+     */
+    ImmutableMap<String, ImmutableList<Integer>> getPositions() {
+        return positions;
+    }
+
+}
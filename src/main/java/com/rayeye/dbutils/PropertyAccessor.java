@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2014 SOP4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rayeye.dbutils;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Primitives;
+
+/**
+ * Reads and writes one bean property through <code>MethodHandle</code>s
+ * bound to its getter and setter, or to the field itself when there is no
+ * accessor method. The accessors of a class are created once and cached, so
+ * binding and mapping avoid introspection and <code>Method.invoke</code>.
+ */
+public final class PropertyAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<ImmutableMap<String, PropertyAccessor>> ACCESSORS =
+            new ClassValue<ImmutableMap<String, PropertyAccessor>>() {
+        @Override
+        protected ImmutableMap<String, PropertyAccessor> computeValue(final Class<?> type) {
+            final PropertyDescriptor[] props;
+            try {
+                props = Introspector.getBeanInfo(type).getPropertyDescriptors();
+            } catch (IntrospectionException e) {
+                throw new IllegalArgumentException("Bean introspection failed: " + e.getMessage(), e);
+            }
+
+            final ImmutableMap.Builder<String, PropertyAccessor> builder = ImmutableMap.builder();
+            for (PropertyDescriptor prop : props) {
+                // skips indexed-only properties
+                if (prop.getPropertyType() == null) {
+                    continue;
+                }
+                builder.put(prop.getName(), new PropertyAccessor(prop.getName(), prop.getPropertyType(),
+                        getter(prop.getReadMethod()), setter(prop.getWriteMethod())));
+            }
+            return builder.build();
+        }
+    };
+
+    private final String name;
+    private final Class<?> type;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+
+    private PropertyAccessor(final String name, final Class<?> type, final MethodHandle getter, final MethodHandle setter) {
+        this.name = name;
+        this.type = type;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * Returns the accessors of every JavaBean property of a class, by property name.
+     *
+     * @param beanClass the bean class.
+     * @return the cached accessors.
+     */
+    public static ImmutableMap<String, PropertyAccessor> forClass(final Class<?> beanClass) {
+        return ACCESSORS.get(beanClass);
+    }
+
+    /**
+     * Returns an accessor for a field, going through the JavaBean getter and
+     * setter of the same name where they exist and through the field otherwise.
+     *
+     * @param beanClass the bean class, which declares or inherits the field.
+     * @param field the field.
+     * @return a new accessor.
+     */
+    static PropertyAccessor forField(final Class<?> beanClass, final Field field) {
+        final PropertyAccessor bean = forClass(beanClass).get(field.getName());
+
+        MethodHandle getter = bean != null && bean.type == field.getType() ? bean.getter : null;
+        MethodHandle setter = bean != null && bean.type == field.getType() ? bean.setter : null;
+
+        try {
+            if (getter == null) {
+                getter = MethodHandles.lookup().unreflectGetter(accessible(field)).asType(GETTER_TYPE);
+            }
+            if (setter == null) {
+                setter = MethodHandles.lookup().unreflectSetter(accessible(field)).asType(SETTER_TYPE);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access field " + field.getName() + ": " + e.getMessage(), e);
+        }
+
+        return new PropertyAccessor(field.getName(), field.getType(), getter, setter);
+    }
+
+    private static MethodHandle getter(final Method method) {
+        if (method == null) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().unreflect(accessible(method)).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle setter(final Method method) {
+        if (method == null) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().unreflect(accessible(method)).asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static <A extends AccessibleObject> A accessible(final A member) {
+        try {
+            member.setAccessible(true);
+        } catch (SecurityException e) {
+            // fall back to the normal access checks
+        }
+        return member;
+    }
+
+    /**
+     * @return the property name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the property type.
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return true if the property can be read.
+     */
+    public boolean isReadable() {
+        return getter != null;
+    }
+
+    /**
+     * @return true if the property can be written.
+     */
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    /**
+     * Reads the property.
+     *
+     * @param bean the bean to read from.
+     * @return the value, boxed if the property is primitive.
+     * @throws SQLException if the property cannot be read.
+     */
+    public Object get(final Object bean) throws SQLException {
+        if (getter == null) {
+            throw new SQLException("Cannot get " + name + ": no getter");
+        }
+        try {
+            return (Object) getter.invokeExact(bean);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SQLException("Cannot get " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the property. A <code>String</code> written to an enum property
+     * is converted with <code>Enum.valueOf</code>.
+     *
+     * @param bean the bean to write to.
+     * @param value the value, which must be of the property type or its wrapper.
+     * @throws SQLException if the property cannot be written or the value has the wrong type.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void set(final Object bean, Object value) throws SQLException {
+        if (setter == null) {
+            throw new SQLException("Cannot set " + name + ": no setter");
+        }
+        if (value instanceof String && type.isEnum()) {
+            value = Enum.valueOf((Class) type, (String) value);
+        }
+        // checked up front, so that exceptions thrown by the setter itself are not mistaken for them
+        if (value == null) {
+            if (type.isPrimitive()) {
+                throw new SQLException("Cannot set " + name + ": null for primitive " + type.getName());
+            }
+        } else if (!Primitives.wrap(type).isInstance(value)) {
+            throw new SQLException("Cannot set " + name + ": incompatible types, cannot convert "
+                    + value.getClass().getName() + " to " + type.getName());
+        }
+        try {
+            setter.invokeExact(bean, value);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SQLException("Cannot set " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+}
@@ -5,8 +5,8 @@ package com.rayeye.dbutils;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +28,11 @@ public class QueryEntityExecutor<T> extends
 			.getLogger(QueryEntityExecutor.class);
 	private Set<String> excludeColumns = null;
 	private Set<String> includeColumns = null;
+	private final List<String> orderBy = new ArrayList<String>();
+	private int limit = 0;
+	private boolean keyset = false;
+	private boolean seek = false;
+	private Object after = null;
 
 	/**
 	 * Constructor.
@@ -73,6 +78,95 @@ public class QueryEntityExecutor<T> extends
 		return this;
 	}
 
+	/**
+	 * 升序排列, 可以多次调用按多个字段排序.
+	 * 
+	 * @param property
+	 *            字段名或列名
+	 * @return this
+	 */
+	public QueryEntityExecutor<T> orderBy(String property) {
+		this.orderBy.add(column(property));
+		return this;
+	}
+
+	/**
+	 * 降序排列.
+	 * 
+	 * @param property
+	 *            字段名或列名
+	 * @return this
+	 */
+	public QueryEntityExecutor<T> orderByDesc(String property) {
+		this.orderBy.add(column(property) + EntityMetadata.DESC);
+		return this;
+	}
+
+	/**
+	 * 最多返回的记录数.
+	 * 
+	 * @param rows
+	 *            大于 0
+	 * @return this
+	 */
+	public QueryEntityExecutor<T> limit(int rows) {
+		if (rows <= 0) {
+			throw new IllegalArgumentException("limit must be positive: " + rows);
+		}
+		this.limit = rows;
+		return this;
+	}
+
+	/**
+	 * keyset 分页: 只查询 id 在 lastId 之后的记录 (where id > ? order by id),
+	 * 数据库直接从 id 索引定位, 深分页和第一页代价相同. 没有指定排序时按 id 升序,
+	 * 按 id 降序 ({@link #orderByDesc(String)}) 时查询 id 小于 lastId 的记录.
+	 * 
+	 * @param lastId
+	 *            上一页最后一条记录的 id, 即 {@link Page#getNext()}; null 表示第一页
+	 * @return this
+	 */
+	public QueryEntityExecutor<T> after(Object lastId) {
+		this.keyset = true;
+		this.seek = lastId != null;
+		this.after = lastId;
+		return this;
+	}
+
+	/**
+	 * 按 id 做 keyset 分页, 返回一页记录和读取下一页的 token.
+	 * 
+	 * @param size
+	 *            每页记录数, 大于 0 并且小于 Integer.MAX_VALUE
+	 * @return 当前页
+	 * @throws SQLException
+	 */
+	public Page<T> page(int size) throws SQLException {
+		if (size <= 0 || size == Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("size must be between 1 and " + (Integer.MAX_VALUE - 1) + ": " + size);
+		}
+		final EntityMetadata.Property id = metadata.getIdProperty();
+		if (id == null) {
+			throw new IllegalStateException(entity.getName() + " does not have an id to page on");
+		}
+		if (includeColumns != null && !includeColumns.contains(id.getName())) {
+			this.includeColumns = new HashSet<String>(includeColumns);
+			this.includeColumns.add(id.getName());
+		}
+
+		// read one more row to know whether there is a next page
+		this.keyset = true;
+		this.limit(size + 1);
+		final List<T> items = list();
+
+		if (items.size() <= size) {
+			return new Page<T>(items, null);
+		}
+
+		items.remove(size);
+		return new Page<T>(items, id.getAccessor().get(items.get(size - 1)));
+	}
+
 	public QueryEntityExecutor<T> bindMap(Map<String, Object> params)
 			throws SQLException {
 		if (params != null) {
@@ -94,57 +188,87 @@ public class QueryEntityExecutor<T> extends
 		return exec.execute(new BeanHandler<T>((Class<T>) entity));
 	}
 
-	private QueryExecutor buildQueryExecutor() throws SQLException {
-
-		Map<String, String> columns = getColumns();
-
-		StringBuilder sb = new StringBuilder("select ");
+	/**
+	 * Streams the matching entities instead of reading them into a list.
+	 * The statement and connection are closed when the cursor is closed or
+	 * has read past the last row.
+	 * 
+	 * @return an open cursor over the entities.
+	 * @throws SQLException
+	 *             if the query fails.
+	 */
+	public Cursor<T> stream() throws SQLException {
+		QueryExecutor exec = buildQueryExecutor();
+		return exec.stream((Class<T>) entity);
+	}
 
-		sb.append(EntityUtils.joinColumnsWithComma(columns.keySet(), null));
+	/**
+	 * Streams the matching entities to a callback, one at a time.
+	 * 
+	 * @param callback
+	 *            the callback receiving each entity.
+	 * @return the number of entities.
+	 * @throws SQLException
+	 *             if the query or the callback fails.
+	 */
+	public int forEach(RowCallback<? super T> callback) throws SQLException {
+		QueryExecutor exec = buildQueryExecutor();
+		return exec.forEach((Class<T>) entity, callback);
+	}
 
-		sb.append(" from ").append(tableName);
+	private QueryExecutor buildQueryExecutor() throws SQLException {
 
-		if (!params.isEmpty()) {
-			sb.append(" where ");
-			sb.append(EntityUtils.joinColumnsEquals(params.keySet(), " and "));
-		}
+		final SqlTemplate template = metadata.selectSql(includeColumns, excludeColumns, params.keySet(),
+				keysetOrder(), seek, limit > 0);
 
-		LOG.debug("SELECT: {}", sb.toString());
+		LOG.debug("SELECT: {}", template.getSql());
 
 		// setup the QueryExecutor
-		final QueryExecutor exec = new QueryExecutor(conn, sb.toString(), true);
+		final QueryExecutor exec = new QueryExecutor(conn, template.getSql(), true, statementCache);
 
 		// go through and bind all the params
-		for (Map.Entry<String, Object> entity : params.entrySet()) {
+		for (String column : template.getWhereColumns()) {
 
-			exec.bind(entity.getKey(), entity.getValue());
+			exec.bind(column, params.get(column));
+		}
+
+		if (seek) {
+			exec.bind(EntityMetadata.AFTER_PARAM, after);
+		}
+		if (limit > 0) {
+			exec.bind(EntityMetadata.LIMIT_PARAM, limit);
 		}
 
 		return exec;
 
 	}
 
-	private Map<String, String> getColumns() {
+	/**
+	 * keyset 分页只能按 id 排序, 没有指定排序时默认按 id 升序.
+	 */
+	private List<String> keysetOrder() {
+		if (!keyset) {
+			return orderBy;
+		}
+		if (metadata.getIdProperty() == null) {
+			throw new IllegalStateException(entity.getName() + " does not have an id to page on");
+		}
 
-		Map<String, String> columns = EntityUtils.getAllColumnNames(entity);
-		if (includeColumns != null) {
-			final Map<String, String> newColumns = new HashMap<String, String>();
-			for (Map.Entry<String, String> entry : columns.entrySet()) {
-				if (includeColumns.contains(entry.getValue())) {
-					newColumns.put(entry.getKey(), entry.getValue());
-				}
-			}
-			return newColumns;
-		} else if (excludeColumns != null) {
-			Map<String, String> newColumns = new HashMap<String, String>();
-			for (Map.Entry<String, String> entry : columns.entrySet()) {
-				if (!excludeColumns.contains(entry.getValue())) {
-					newColumns.put(entry.getKey(), entry.getValue());
-				}
-			}
-			return newColumns;
+		final String id = metadata.getIdProperty().getColumn();
+		if (orderBy.isEmpty()) {
+			return Arrays.asList(id);
+		}
+		if (orderBy.size() != 1 || !(orderBy.get(0).equals(id) || orderBy.get(0).equals(id + EntityMetadata.DESC))) {
+			throw new IllegalStateException("Keyset pagination can only order by the id " + id);
 		}
+		return orderBy;
+	}
 
-		return columns;
+	private String column(String property) {
+		final EntityMetadata.Property prop = metadata.getProperty(property);
+		if (prop == null) {
+			throw new IllegalArgumentException(property + " is not a property of the entity " + entity.getName());
+		}
+		return prop.getColumn();
 	}
 }
@@ -16,8 +16,10 @@
 package com.rayeye.dbutils;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -27,7 +29,18 @@ import java.util.Map;
  */
 public class QueryExecutor extends AbstractExecutor<QueryExecutor> {
 
+    /**
+     * The fetch size used to stream rows from drivers other than MySQL.
+     */
+    static final int STREAMING_FETCH_SIZE = 1000;
+
+    /**
+     * Maps the rows of streamed queries when no processor is given.
+     */
+    private static final BasicRowProcessor ROW_PROCESSOR = new BasicRowProcessor();
+
     private final boolean closeConn;
+    private boolean fetchSizeSet;
 
     /**
      * Constructs a QueryExecutor given a connection and SQL statement.
@@ -38,7 +51,21 @@ public class QueryExecutor extends AbstractExecutor<QueryExecutor> {
      * @throws SQLException thrown if there is an error during execution.
      */
     QueryExecutor(final Connection conn, final String sql, final boolean closeConnection) throws SQLException {
-        super(conn, sql);
+        this(conn, sql, closeConnection, null);
+    }
+
+    /**
+     * Constructs a QueryExecutor given a connection, SQL statement and statement cache.
+     *
+     * @param conn The connection to use during execution.
+     * @param sql The SQL statement.
+     * @param closeConnection If the connection should be closed or not.
+     * @param statementCache The cache to take the statement from, or null.
+     * @throws SQLException thrown if there is an error during execution.
+     */
+    QueryExecutor(final Connection conn, final String sql, final boolean closeConnection,
+            final StatementCache statementCache) throws SQLException {
+        super(conn, sql, statementCache);
         this.closeConn = closeConnection;
     }
 
@@ -73,19 +100,218 @@ public class QueryExecutor extends AbstractExecutor<QueryExecutor> {
             // rethrow our exception printing more information
             this.rethrow(e);
         } finally {
+            release(resultSet);
+        }
+
+        // we get here only if something is thrown
+        return null;
+    }
+
+    /**
+     * Sets the number of rows the driver fetches from the database at a time.
+     *
+     * @param rows the fetch size, or 0 for the driver's default.
+     * @return this execution object to provide the fluent style.
+     * @throws SQLException if the driver rejects the fetch size.
+     */
+    public QueryExecutor fetchSize(final int rows) throws SQLException {
+        getStatement().setFetchSize(rows);
+        fetchSizeSet = true;
+        return this;
+    }
+
+    /**
+     * Asks the driver to stream rows instead of reading the whole result
+     * before returning it. MySQL Connector/J streams one row at a time with a
+     * fetch size of <code>Integer.MIN_VALUE</code>; other drivers get a
+     * bounded fetch size. PostgreSQL only honors it when auto-commit is off.
+     *
+     * @return this execution object to provide the fluent style.
+     * @throws SQLException if the driver rejects the fetch size.
+     */
+    public QueryExecutor streaming() throws SQLException {
+        return fetchSize(streamingFetchSize(getConnection()));
+    }
+
+    /**
+     * Returns the fetch size that makes the connection's driver stream rows.
+     *
+     * @param conn the connection.
+     * @return the fetch size.
+     * @throws SQLException if a database access error occurs.
+     */
+    static int streamingFetchSize(final Connection conn) throws SQLException {
+        final DatabaseMetaData meta = conn.getMetaData();
+        final String product = meta == null ? null : meta.getDatabaseProductName();
+
+        if (product != null && product.toLowerCase(Locale.ENGLISH).contains("mysql")) {
+            return Integer.MIN_VALUE;
+        }
+        return STREAMING_FETCH_SIZE;
+    }
+
+    /**
+     * Runs the query and returns a cursor over its rows mapped to beans. The
+     * rows are streamed (see {@link #streaming()}) unless a fetch size was
+     * set. The statement, and the connection if this executor owns it, stay
+     * open until the cursor is closed or reads past the last row.
+     *
+     * @param type the bean type of the rows.
+     * @return the open cursor.
+     * @throws SQLException If there are database or parameter errors.
+     */
+    public <T> Cursor<T> stream(final Class<T> type) throws SQLException {
+        return this.open(null, type, ROW_PROCESSOR);
+    }
+
+    /**
+     * Runs the query and returns a cursor over its rows mapped to beans by a
+     * row processor. See {@link #stream(Class)}.
+     *
+     * @param type the bean type of the rows.
+     * @param processor the row processor.
+     * @return the open cursor.
+     * @throws SQLException If there are database or parameter errors.
+     */
+    public <T> Cursor<T> stream(final Class<T> type, final RowProcessor processor) throws SQLException {
+        return this.open(null, type, processor);
+    }
+
+    /**
+     * Runs the query and returns a cursor over its rows as arrays. See
+     * {@link #stream(Class)}.
+     *
+     * @param processor the row processor.
+     * @return the open cursor.
+     * @throws SQLException If there are database or parameter errors.
+     */
+    public Cursor<Object[]> stream(final RowProcessor processor) throws SQLException {
+        return this.open(Cursor.arrays(processor), null, processor);
+    }
+
+    /**
+     * Runs the query and returns a cursor over its rows as maps of column
+     * name to value. See {@link #stream(Class)}.
+     *
+     * @param processor the row processor.
+     * @return the open cursor.
+     * @throws SQLException If there are database or parameter errors.
+     */
+    public Cursor<Map<String, Object>> streamMaps(final RowProcessor processor) throws SQLException {
+        return this.open(Cursor.maps(processor), null, processor);
+    }
+
+    /**
+     * Runs the query and opens a cursor over it.
+     *
+     * @param mapper the mapper of the rows, or null to map them to beans.
+     * @param type the bean type of the rows.
+     * @param processor the row processor.
+     * @return the open cursor.
+     * @throws SQLException If there are database or parameter errors.
+     */
+    private <T> Cursor<T> open(final Cursor.Mapper<T> mapper, final Class<T> type,
+            final RowProcessor processor) throws SQLException {
+        if (processor == null) {
+            if (closeConn) {
+                close(getConnection());
+            }
+            throw new SQLException("Null RowProcessor");
+        }
+
+        ResultSet resultSet = null;
+
+        try {
+            resultSet = this.executeStreaming();
+            return new Cursor<T>(this, resultSet,
+                    mapper != null ? mapper : beanMapper(resultSet, type, processor));
+        } catch (SQLException e) {
             try {
-                close(resultSet);
+                release(resultSet);
             } finally {
-                close(getStatement());
-                if (closeConn) {
-                    close(getConnection());
-                }
+                this.rethrow(e);
             }
         }
 
         // we get here only if something is thrown
         return null;
     }
+
+    /**
+     * Returns the mapper of the rows of a result set to beans. A plain
+     * {@link BasicRowProcessor} is bypassed for the compiled row mapper of
+     * its bean processor, which saves looking the mapper up on every row.
+     */
+    private static <T> Cursor.Mapper<T> beanMapper(final ResultSet resultSet, final Class<T> type,
+            final RowProcessor processor) throws SQLException {
+        if (processor.getClass() == BasicRowProcessor.class) {
+            return ((BasicRowProcessor) processor).getBeanProcessor().rowMapper(resultSet.getMetaData(), type);
+        }
+        return Cursor.beans(processor, type);
+    }
+
+    /**
+     * Runs the query and passes its rows, mapped to beans, to a callback one
+     * at a time. The rows are streamed (see {@link #streaming()}) unless a
+     * fetch size was set, so memory use does not grow with the number of rows.
+     *
+     * @param type the bean type of the rows.
+     * @param callback the callback receiving each row.
+     * @return the number of rows.
+     * @throws SQLException If there are database or parameter errors, or the callback throws.
+     */
+    public <T> int forEach(final Class<T> type, final RowCallback<? super T> callback) throws SQLException {
+        ResultSet resultSet = null;
+        int rows = 0;
+
+        try {
+            resultSet = this.executeStreaming();
+            final Cursor.Mapper<T> mapper = beanMapper(resultSet, type, ROW_PROCESSOR);
+
+            while (resultSet.next()) {
+                callback.on(mapper.map(resultSet));
+                rows++;
+            }
+            return rows;
+        } catch (SQLException e) {
+            // rethrow our exception printing more information
+            this.rethrow(e);
+        } finally {
+            release(resultSet);
+        }
+
+        // we get here only if something is thrown
+        return rows;
+    }
+
+    private ResultSet executeStreaming() throws SQLException {
+        // throw an exception if there are unmapped parameters
+        this.throwIfUnmappedParams();
+
+        if (!fetchSizeSet) {
+            this.streaming();
+        }
+
+        return this.wrap(getStatement().executeQuery());
+    }
+
+    /**
+     * Closes the result set and the statement, and the connection if this
+     * executor owns it.
+     *
+     * @param resultSet the result set, or null.
+     * @throws SQLException if a database access error occurs.
+     */
+    void release(final ResultSet resultSet) throws SQLException {
+        try {
+            close(resultSet);
+        } finally {
+            close(getStatement());
+            if (closeConn) {
+                close(getConnection());
+            }
+        }
+    }
     
     public QueryExecutor bindArray(Object... params) throws SQLException{
     	
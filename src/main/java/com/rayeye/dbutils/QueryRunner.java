@@ -15,18 +15,21 @@
  */
 package com.rayeye.dbutils;
 
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.persistence.Entity;
 import javax.sql.DataSource;
 
-import org.apache.commons.beanutils.PropertyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +47,99 @@ public class QueryRunner {
      */
     private final DataSource ds;
 
+    /**
+     * The number of statements cached per connection, 0 disables the cache.
+     */
+    private volatile int statementCacheSize = 0;
+
+    /**
+     * The transaction bound to the current thread by {@link #inTransaction(TransactionCallback)}.
+     */
+    private final ThreadLocal<Transaction> transaction = new ThreadLocal<Transaction>();
+
+    /**
+     * A connection bound to a thread for the length of a transaction. The
+     * executors are given a proxy of it whose <code>close()</code> does
+     * nothing, so they leave it open, and a statement cache of its own.
+     */
+    private static final class Transaction implements InvocationHandler {
+        final Connection conn;
+        final Connection proxy;
+        final StatementCache cache;
+        final List<Runnable> afterCommit = new ArrayList<Runnable>();
+
+        Transaction(final Connection conn, final int statementCacheSize) {
+            this.conn = conn;
+            this.proxy = ProxyFactory.instance().createConnection(this);
+            this.cache = statementCacheSize > 0 ? new StatementCache(conn, statementCacheSize) : null;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+
+            if ("close".equals(name)) {
+                return null;
+            } else if ("equals".equals(name)) {
+                return Boolean.valueOf(proxy == args[0]);
+            } else if ("hashCode".equals(name)) {
+                return Integer.valueOf(System.identityHashCode(proxy));
+            }
+
+            try {
+                return method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Rolls back unless committed, restores the auto-commit mode and
+         * closes the connection. A failed rollback is only logged, so the
+         * exception of the failed work is the one reported.
+         */
+        void end(final boolean autoCommit, final boolean committed) throws SQLException {
+            if (cache != null) {
+                cache.close();
+            }
+
+            try {
+                if (!committed) {
+                    conn.rollback();
+                }
+                if (autoCommit) {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                if (committed) {
+                    DbUtils.closeQuietly(conn);
+                    throw e;
+                }
+                LOG.warn("Rollback failed", e);
+            }
+
+            if (committed) {
+                DbUtils.close(conn);
+            } else {
+                DbUtils.closeQuietly(conn);
+            }
+        }
+
+        /**
+         * Runs the callbacks registered with {@link QueryRunner#afterCommit(Runnable)}.
+         * The work is already committed, so a failing callback is only logged.
+         */
+        void committed() {
+            for (Runnable callback : afterCommit) {
+                try {
+                    callback.run();
+                } catch (RuntimeException e) {
+                    LOG.warn("After-commit callback failed", e);
+                }
+            }
+        }
+    }
+
     /**
      * Constructor for QueryRunner.
      */
@@ -80,6 +176,8 @@ public class QueryRunner {
      * retrieve connections from its DataSource. Subclasses can override this
      * method to provide special <code>Connection</code> configuration if
      * needed. This implementation simply calls <code>ds.getConnection()</code>.
+     * Inside {@link #inTransaction(TransactionCallback)} the connection of
+     * the transaction is used instead, and this method is not called.
      *
      * @return An initialized <code>Connection</code>.
      * @throws SQLException if a database access error occurs
@@ -93,6 +191,160 @@ public class QueryRunner {
         return this.getDataSource().getConnection();
     }
 
+    /**
+     * Returns the connection of the current thread's transaction, or else a
+     * new connection from {@link #prepareConnection()}.
+     */
+    private Connection connection() throws SQLException {
+        final Transaction tx = transaction.get();
+        return tx != null ? tx.proxy : this.prepareConnection();
+    }
+
+    /**
+     * Runs the callback in a transaction on one connection. The connection is
+     * bound to the current thread, so every executor this runner creates
+     * without a <code>Connection</code> argument on the thread, repository
+     * calls included, reuses it instead of checking out a connection of its
+     * own, and the work is committed once at the end. If the callback throws,
+     * the transaction is rolled back and the exception rethrown. A call made
+     * inside a transaction joins it: the outermost call commits.
+     * <p>
+     * With statement caching enabled, statements are cached for the length
+     * of the transaction.
+     *
+     * <pre>
+     * runner.inTransaction(new TransactionCallback&lt;Void&gt;() {
+     *     public Void doInTransaction(Connection conn) throws SQLException {
+     *         orders.insert(order);
+     *         stock.updateAll(items);
+     *         return null;
+     *     }
+     * });
+     * </pre>
+     *
+     * @param <T> the type of the result.
+     * @param callback the work of the transaction.
+     * @return the result of the callback.
+     * @throws SQLException if the callback, the commit or the connection fails.
+     */
+    public <T> T inTransaction(final TransactionCallback<T> callback) throws SQLException {
+        final Transaction current = transaction.get();
+
+        if (current != null) {
+            return callback.doInTransaction(current.proxy);
+        }
+
+        final Connection conn = prepareConnection();
+        final boolean autoCommit;
+
+        try {
+            autoCommit = conn.getAutoCommit();
+            if (autoCommit) {
+                conn.setAutoCommit(false);
+            }
+        } catch (SQLException e) {
+            DbUtils.closeQuietly(conn);
+            throw e;
+        }
+
+        final Transaction tx = new Transaction(conn, statementCacheSize);
+        boolean committed = false;
+
+        transaction.set(tx);
+
+        try {
+            final T result = callback.doInTransaction(tx.proxy);
+            conn.commit();
+            committed = true;
+            return result;
+        } finally {
+            transaction.remove();
+            try {
+                tx.end(autoCommit, committed);
+            } finally {
+                if (committed) {
+                    tx.committed();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the callback once the current thread's transaction has committed,
+     * or right away outside a transaction. The callbacks of a transaction run
+     * in the order they were registered, after its connection is released,
+     * and are dropped if it rolls back. Use it for side effects that must not
+     * be seen before the data, such as invalidating a cache.
+     *
+     * @param callback the callback.
+     */
+    public void afterCommit(final Runnable callback) {
+        final Transaction tx = transaction.get();
+
+        if (tx != null) {
+            tx.afterCommit.add(callback);
+        } else {
+            callback.run();
+        }
+    }
+
+    /**
+     * Returns true if the current thread runs in a transaction of this runner.
+     *
+     * @return true inside {@link #inTransaction(TransactionCallback)}.
+     */
+    public boolean isInTransaction() {
+        return transaction.get() != null;
+    }
+
+    /**
+     * Sets how many <code>PreparedStatement</code>s are kept open per
+     * transaction, least recently used first out. Statements are cached on
+     * the connection of {@link #inTransaction(TransactionCallback)} for the
+     * length of the transaction, and closed with it. Outside a transaction
+     * every call prepares and closes its own statement. To reuse statements
+     * across calls that borrow from the <code>DataSource</code>, enable the
+     * pool's own statement cache instead, e.g. Druid's
+     * <code>poolPreparedStatements</code>, which keeps them per physical
+     * connection and behind the pool's filters. The default is 0, which
+     * disables caching.
+     *
+     * @param statementCacheSize the number of statements cached per connection.
+     */
+    public void setStatementCacheSize(final int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Returns the number of statements cached per connection.
+     *
+     * @return the statement cache size, 0 if disabled.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Returns the statement cache of the current thread's transaction if the
+     * connection is the transaction's, or else null.
+     *
+     * @param conn the connection.
+     * @return the statement cache or null.
+     */
+    StatementCache statementCache(final Connection conn) {
+        final Transaction tx = transaction.get();
+
+        return tx != null && tx.proxy == conn ? tx.cache : null;
+    }
+
+    /**
+     * Gives an entity executor the statement cache of its connection, which
+     * it only has inside a transaction.
+     */
+    private <E extends AbstractEntityExecutor<E>> E cached(final E exec) {
+        return exec.setStatementCache(statementCache(exec.conn));
+    }
+
     /**
      * Close a <code>Connection</code>. This implementation avoids closing if
      * null and does <strong>not</strong> suppress any exceptions. Subclasses
@@ -118,7 +370,7 @@ public class QueryRunner {
      * @throws SQLException If there are database or parameter errors.
      */
     public BatchExecutor batch(String sql) throws SQLException {
-        return this.batch(this.prepareConnection(), true, sql);
+        return this.batch(this.connection(), true, sql);
     }
 
     /**
@@ -132,7 +384,7 @@ public class QueryRunner {
      * @throws SQLException If there are database or parameter errors.
      */
     public BatchExecutor batch(Connection conn, String sql) throws SQLException {
-        return this.batch(conn, true, sql);
+        return this.batch(conn, false, sql);
     }
 
     /**
@@ -157,7 +409,63 @@ public class QueryRunner {
             throw new SQLException("Null SQL statement");
         }
 
-        return new BatchExecutor(conn, sql, closeConn);
+        return new BatchExecutor(conn, sql, closeConn, statementCache(conn));
+    }
+
+    /**
+     * Creates a {@link BatchInsertExecutor} for the given SQL, which returns
+     * the keys generated for the batch.
+     * <code>Connection</code> is retrieved from the <code>DataSource</code>
+     * set in the constructor.  This <code>Connection</code> must be in
+     * auto-commit mode or the insert will not be saved. The <code>Connection</code> is
+     * closed after the call.
+     *
+     * @param sql The SQL statement to execute.
+     *
+     * @return A {@link BatchInsertExecutor} for this SQL statement.
+     * @throws SQLException If there are database or parameter errors.
+     */
+    public BatchInsertExecutor batchInsert(String sql) throws SQLException {
+        return this.batchInsert(this.connection(), true, sql);
+    }
+
+    /**
+     * Creates a {@link BatchInsertExecutor} for the given SQL statement and connection.
+     * The connection is <b>NOT</b> closed after execution.
+     *
+     * @param conn The connection to use for the batch call.
+     * @param sql The SQL statement to execute.
+     *
+     * @return A {@link BatchInsertExecutor} for this SQL statement.
+     * @throws SQLException If there are database or parameter errors.
+     */
+    public BatchInsertExecutor batchInsert(Connection conn, String sql) throws SQLException {
+        return this.batchInsert(conn, false, sql);
+    }
+
+    /**
+     * Creates a {@link BatchInsertExecutor} for the given SQL statement and connection.
+     *
+     * @param conn The connection to use for the batch call.
+     * @param closeConn True if the connection should be closed, false otherwise.
+     * @param sql The SQL statement to execute.
+     *
+     * @return A {@link BatchInsertExecutor} for this SQL statement.
+     * @throws SQLException If there are database or parameter errors.
+     */
+    public BatchInsertExecutor batchInsert(Connection conn, boolean closeConn, String sql) throws SQLException {
+        if (conn == null) {
+            throw new SQLException("Null connection");
+        }
+
+        if (sql == null) {
+            if (closeConn) {
+                close(conn);
+            }
+            throw new SQLException("Null SQL statement");
+        }
+
+        return new BatchInsertExecutor(conn, sql, closeConn, statementCache(conn));
     }
 
     /**
@@ -173,7 +481,7 @@ public class QueryRunner {
      * @throws SQLException If there are database or parameter errors.
      */
     public QueryExecutor query(String sql) throws SQLException {
-        return this.query(this.prepareConnection(), true, sql);
+        return this.query(this.connection(), true, sql);
     }
 
     /**
@@ -212,11 +520,11 @@ public class QueryRunner {
             throw new SQLException("Null SQL statement");
         }
 
-        return new QueryExecutor(conn, sql, closeConn);
+        return new QueryExecutor(conn, sql, closeConn, statementCache(conn));
     }
     
     public <T> QueryEntityExecutor<T> query(Class<T> entityClass) throws SQLException {
-        return new QueryEntityExecutor<T>( entityClass , this.prepareConnection());
+        return cached(new QueryEntityExecutor<T>( entityClass , this.connection()));
     }
 
     /**
@@ -232,7 +540,7 @@ public class QueryRunner {
      * @throws SQLException if a database access error occurs
      */
     public UpdateExecutor update(String sql) throws SQLException {
-        return this.update(this.prepareConnection(), true, sql);
+        return this.update(this.connection(), true, sql);
     }
 
     /**
@@ -271,7 +579,7 @@ public class QueryRunner {
             throw new SQLException("Null SQL statement");
         }
 
-        return new UpdateExecutor(conn, sql, closeConn);
+        return new UpdateExecutor(conn, sql, closeConn, statementCache(conn));
     }
 
     /**
@@ -287,7 +595,7 @@ public class QueryRunner {
      * @throws SQLException If there are database or parameter errors.
      */
     public InsertExecutor insert(String sql) throws SQLException {
-        return insert(this.prepareConnection(), true, sql);
+        return insert(this.connection(), true, sql);
     }
 
     /**
@@ -315,6 +623,25 @@ public class QueryRunner {
      * @throws SQLException If there are database or parameter errors.
      */
     public InsertExecutor insert(Connection conn, boolean closeConn, String sql) throws SQLException {
+        return insert(conn, closeConn, false, sql);
+    }
+
+    /**
+     * Creates an {@link InsertExecutor} for the given SQL and connection, whose
+     * statement returns the keys generated by the database when
+     * <code>returnGeneratedKeys</code> is true. Read them with
+     * {@link InsertExecutor#execute(ResultSetHandler)}.
+     *
+     * @param conn The connection to use for the insert call.
+     * @param closeConn True if the connection should be closed, false otherwise.
+     * @param returnGeneratedKeys True to prepare with <code>Statement.RETURN_GENERATED_KEYS</code>.
+     * @param sql The SQL statement to execute.
+     *
+     * @return An {@link InsertExecutor} for this SQL statement.
+     * @throws SQLException If there are database or parameter errors.
+     */
+    public InsertExecutor insert(Connection conn, boolean closeConn, boolean returnGeneratedKeys, String sql)
+            throws SQLException {
         if (conn == null) {
             throw new SQLException("Null connection");
         }
@@ -326,7 +653,7 @@ public class QueryRunner {
             throw new SQLException("Null SQL statement");
         }
 
-        return new InsertExecutor(conn, sql, closeConn);
+        return new InsertExecutor(conn, sql, closeConn, statementCache(conn), returnGeneratedKeys);
     }
 
     //
@@ -343,11 +670,22 @@ public class QueryRunner {
 //    }
     
     public <T> InsertEntityExecutor<T> insert(final Class<T> entityClass, final T entity ) throws SQLException {
-    	return new InsertEntityExecutor<T>(entity , entityClass , this.prepareConnection());
+    	return cached(new InsertEntityExecutor<T>(entity , entityClass , this.connection()));
     }
     
     public <T> InsertEntityExecutor<T> insert(final Class<T> entityClass, final T entity , final Collection<String> excludeColumns ) throws SQLException {
-    	return new InsertEntityExecutor<T>(entity , entityClass , this.prepareConnection() , new HashSet<String>(excludeColumns));
+    	return cached(new InsertEntityExecutor<T>(entity , entityClass , this.connection() , new HashSet<String>(excludeColumns)));
+    }
+
+    /**
+     * Creates an {@link InsertAllEntityExecutor} to insert a collection of entities.
+     * @param entityClass the class of the entities.
+     * @param entities the entities to insert.
+     * @return an {@link InsertAllEntityExecutor} for the entities.
+     * @throws SQLException if a connection cannot be obtained.
+     */
+    public <T> InsertAllEntityExecutor<T> insertAll(final Class<T> entityClass, final Collection<? extends T> entities) throws SQLException {
+    	return cached(new InsertAllEntityExecutor<T>(entityClass , entities , this.connection()));
     }
 
 //    /*
@@ -408,7 +746,7 @@ public class QueryRunner {
      * @throws SQLException If there are database or parameter errors.
      */
     public <T> ReadEntityExecutor<T> read(final Class<T> entity) throws SQLException {
-        return new ReadEntityExecutor<T>(entity, this.prepareConnection());
+        return cached(new ReadEntityExecutor<T>(entity, this.connection()));
     }
 
     /**
@@ -419,7 +757,7 @@ public class QueryRunner {
      * @throws SQLException If there are database or parameter errors.
      */
     public <T> ReadEntityExecutor<T> read(final Class<T> entity, final Collection<String> excludeColumns) throws SQLException {
-        return new ReadEntityExecutor<T>(entity, this.prepareConnection(), new HashSet<String>(excludeColumns));
+        return cached(new ReadEntityExecutor<T>(entity, this.connection(), new HashSet<String>(excludeColumns)));
     }
 
     /**
@@ -429,7 +767,7 @@ public class QueryRunner {
      * @throws SQLException If there are database or parameter errors.
      */
     public <T> UpdateEntityExecutor<T> update(final T entity) throws SQLException {
-        return new UpdateEntityExecutor<T>(entity, this.prepareConnection());
+        return cached(new UpdateEntityExecutor<T>(entity, this.connection()));
     }
 
     /**
@@ -440,7 +778,18 @@ public class QueryRunner {
      * @throws SQLException If there are database or parameter errors.
      */
     public <T> UpdateEntityExecutor<T> update(final T entity, final Collection<String> excludeColumns) throws SQLException {
-        return new UpdateEntityExecutor<T>(entity, this.prepareConnection(), new HashSet<String>(excludeColumns));
+        return cached(new UpdateEntityExecutor<T>(entity, this.connection(), new HashSet<String>(excludeColumns)));
+    }
+
+    /**
+     * Creates an {@link UpdateAllEntityExecutor} to update a collection of entities by id.
+     * @param entityClass the class of the entities.
+     * @param entities the entities to update.
+     * @return an {@link UpdateAllEntityExecutor} for the entities.
+     * @throws SQLException if a connection cannot be obtained.
+     */
+    public <T> UpdateAllEntityExecutor<T> updateAll(final Class<T> entityClass, final Collection<? extends T> entities) throws SQLException {
+        return cached(new UpdateAllEntityExecutor<T>(entityClass, entities, this.connection()));
     }
 
     /**
@@ -450,7 +799,7 @@ public class QueryRunner {
      * @throws SQLException If there are database or parameter errors.
      */
     public <T> DeleteEntityExecutor<T> delete(final Class<T> entity) throws SQLException {
-        return new DeleteEntityExecutor<T>(entity, this.prepareConnection());
+        return cached(new DeleteEntityExecutor<T>(entity, this.connection()));
     }
 
     /**
@@ -461,6 +810,17 @@ public class QueryRunner {
      * @throws SQLException If there are database or parameter errors.
      */
     public <T> DeleteEntityExecutor<T> delete(final Class<T> entity, final Collection<String> excludeColumns) throws SQLException {
-        return new DeleteEntityExecutor<T>(entity, this.prepareConnection(), new HashSet<String>(excludeColumns));
+        return cached(new DeleteEntityExecutor<T>(entity, this.connection(), new HashSet<String>(excludeColumns)));
+    }
+
+    /**
+     * Creates a {@link DeleteAllEntityExecutor} to delete entities by a collection of ids.
+     * @param entity the class of the entities.
+     * @param ids the ids of the entities to delete.
+     * @return a {@link DeleteAllEntityExecutor} for the ids.
+     * @throws SQLException if a connection cannot be obtained.
+     */
+    public <T> DeleteAllEntityExecutor<T> deleteAll(final Class<T> entity, final Collection<?> ids) throws SQLException {
+        return cached(new DeleteAllEntityExecutor<T>(entity, ids, this.connection()));
     }
 }
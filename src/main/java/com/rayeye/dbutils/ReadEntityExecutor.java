@@ -6,7 +6,6 @@ package com.rayeye.dbutils;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -50,28 +49,16 @@ public class ReadEntityExecutor<T> extends AbstractEntityExecutor<ReadEntityExec
      * @throws SQLException thrown if any errors occur during reading.
      */
     public T read() throws SQLException {
-        final StringBuilder sb = new StringBuilder("select * from ");
+        final SqlTemplate template = metadata.readSql(EntityUtils.whereColumns(params, excludeColumns));
 
-        sb.append(tableName);
-
-        if(!params.isEmpty()) {
-            sb.append(" where ");
-
-            sb.append(EntityUtils.joinColumnsEquals(params.keySet(), " and "));
-        }
-
-        LOG.debug("SELECT: {}", sb.toString());
+        LOG.debug("SELECT: {}", template.getSql());
 
         // setup the QueryExecutor
-        final QueryExecutor exec = new QueryExecutor(conn, sb.toString(), true);
+        final QueryExecutor exec = new QueryExecutor(conn, template.getSql(), true, statementCache);
 
         // go through and bind all the params
-        for(Map.Entry<String, Object> entity:params.entrySet()) {
-            if(excludeColumns.contains(entity.getKey())) {
-                continue;
-            }
-
-            exec.bind(entity.getKey(), entity.getValue());
+        for(String column:template.getWhereColumns()) {
+            exec.bind(column, params.get(column));
         }
 
         // execute using the BeanHandler
@@ -18,6 +18,7 @@ package com.rayeye.dbutils;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * <p>
@@ -27,8 +28,9 @@ import java.util.Iterator;
  * </p>
  *
  * <p>
- * This implementation requires the <code>ResultSet.isLast()</code> method
- * to be implemented.
+ * Rows are read ahead with <code>ResultSet.next()</code>, so forward-only
+ * and streaming result sets are supported. The iterator does not close the
+ * <code>ResultSet</code>; see {@link Cursor} for an iterator that does.
  * </p>
  */
 public class ResultSetIterator implements Iterator<Object[]> {
@@ -43,6 +45,13 @@ public class ResultSetIterator implements Iterator<Object[]> {
      */
     private final RowProcessor convert;
 
+    /**
+     * True once the result set has been advanced to the row the next call
+     * to {@link #next()} returns.
+     */
+    private boolean fetched;
+    private boolean hasRow;
+
     /**
      * Constructor for ResultSetIterator.
      *
@@ -73,12 +82,16 @@ public class ResultSetIterator implements Iterator<Object[]> {
      */
     @Override
     public boolean hasNext() {
-        try {
-            return !rs.isLast();
-        } catch (SQLException e) {
-            rethrow(e);
-            return false;
+        if (!fetched) {
+            try {
+                hasRow = rs.next();
+            } catch (SQLException e) {
+                rethrow(e);
+                return false;
+            }
+            fetched = true;
         }
+        return hasRow;
     }
 
     /**
@@ -87,12 +100,17 @@ public class ResultSetIterator implements Iterator<Object[]> {
      * @return An <code>Object[]</code> with the same number of elements as
      * columns in the <code>ResultSet</code>.
      * @see java.util.Iterator#next()
+     * @throws NoSuchElementException if there are no more rows.
      * @throws RuntimeException if an SQLException occurs.
      */
     @Override
     public Object[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+
         try {
-            rs.next();
             return this.convert.toArray(rs);
         } catch (SQLException e) {
             rethrow(e);
@@ -104,10 +122,14 @@ public class ResultSetIterator implements Iterator<Object[]> {
      * Deletes the current row from the <code>ResultSet</code>.
      *
      * @see java.util.Iterator#remove()
+     * @throws IllegalStateException if <code>hasNext()</code> has already moved past the row.
      * @throws RuntimeException if an SQLException occurs.
      */
     @Override
     public void remove() {
+        if (fetched) {
+            throw new IllegalStateException("The current row was read past by hasNext()");
+        }
         try {
             this.rs.deleteRow();
         } catch (SQLException e) {
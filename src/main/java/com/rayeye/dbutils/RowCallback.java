@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2014 SOP4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rayeye.dbutils;
+
+import java.sql.SQLException;
+
+/**
+ * Receives the rows of a streamed query one at a time.
+ *
+ * @param <T> the type of the rows.
+ * @see QueryExecutor#forEach(Class, RowCallback)
+ */
+public interface RowCallback<T> {
+
+    /**
+     * Handles one row. The row is not referenced by the query afterwards.
+     *
+     * @param row the mapped row.
+     * @throws SQLException to stop the query; it is rethrown by the caller.
+     */
+    void on(T row) throws SQLException;
+
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2014 SOP4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rayeye.dbutils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Timestamp;
+
+/**
+ * Maps rows of one result set shape to beans of one class. The column to
+ * property matching and the choice of <code>ResultSet</code> getter for each
+ * property are made once, when the mapper is compiled by
+ * {@link BeanProcessor}, so mapping a row only reads the mapped columns and
+ * calls their setters.
+ *
+ * @param <T> the bean type.
+ */
+final class RowMapper<T> implements Cursor.Mapper<T> {
+
+    private final BeanProcessor processor;
+    private final Class<T> type;
+    private final int[] columns;
+    private final ColumnReader[] readers;
+    private final PropertyAccessor[] accessors;
+
+    /**
+     * @param processor the processor creating the beans.
+     * @param type the bean type.
+     * @param columns the JDBC index of each mapped column.
+     * @param readers the reader of each mapped column, parallel to columns.
+     * @param accessors the property written from each mapped column, parallel to columns.
+     */
+    RowMapper(final BeanProcessor processor, final Class<T> type, final int[] columns,
+            final ColumnReader[] readers, final PropertyAccessor[] accessors) {
+        this.processor = processor;
+        this.type = type;
+        this.columns = columns;
+        this.readers = readers;
+        this.accessors = accessors;
+    }
+
+    /**
+     * Creates a bean from the current row.
+     *
+     * @param rs the result set, positioned on a row.
+     * @return the bean.
+     * @throws SQLException if a database access error occurs or a value cannot be set.
+     */
+    @Override
+    public T map(final ResultSet rs) throws SQLException {
+        final T bean = processor.newInstance(type);
+
+        for (int i = 0; i < columns.length; i++) {
+            accessors[i].set(bean, readers[i].read(rs, columns[i]));
+        }
+
+        return bean;
+    }
+
+    /**
+     * Reads a column as the value of a property of a given type.
+     */
+    abstract static class ColumnReader {
+
+        /**
+         * Reads a column of the current row.
+         *
+         * @param rs the result set.
+         * @param index the JDBC column index.
+         * @return the value, or null for SQL NULL unless the property is primitive.
+         * @throws SQLException if a database access error occurs.
+         */
+        abstract Object read(ResultSet rs, int index) throws SQLException;
+
+        /**
+         * Returns the reader for a property type, with the same conversions as
+         * {@link BeanProcessor#processColumn(ResultSet, int, Class)}.
+         *
+         * @param propType the property type.
+         * @return the reader.
+         */
+        static ColumnReader forType(final Class<?> propType) {
+            if (propType == String.class) {
+                return STRING;
+            } else if (propType == Integer.TYPE) {
+                return INT;
+            } else if (propType == Integer.class) {
+                return INTEGER;
+            } else if (propType == Boolean.TYPE) {
+                return BOOLEAN;
+            } else if (propType == Boolean.class) {
+                return BOOLEAN_OBJECT;
+            } else if (propType == Long.TYPE) {
+                return LONG;
+            } else if (propType == Long.class) {
+                return LONG_OBJECT;
+            } else if (propType == Double.TYPE) {
+                return DOUBLE;
+            } else if (propType == Double.class) {
+                return DOUBLE_OBJECT;
+            } else if (propType == Float.TYPE) {
+                return FLOAT;
+            } else if (propType == Float.class) {
+                return FLOAT_OBJECT;
+            } else if (propType == Short.TYPE) {
+                return SHORT;
+            } else if (propType == Short.class) {
+                return SHORT_OBJECT;
+            } else if (propType == Byte.TYPE) {
+                return BYTE;
+            } else if (propType == Byte.class) {
+                return BYTE_OBJECT;
+            } else if (propType == Timestamp.class) {
+                return TIMESTAMP;
+            } else if (propType == SQLXML.class) {
+                return SQL_XML;
+            } else if (propType == java.sql.Date.class) {
+                return SQL_DATE;
+            } else if (propType == java.sql.Time.class) {
+                return SQL_TIME;
+            } else if (propType.isPrimitive()) {
+                return new PrimitiveDefault(OBJECT, BeanProcessor.primitiveDefault(propType));
+            }
+            return OBJECT;
+        }
+
+        /**
+         * Returns a reader delegating to an overridden
+         * {@link BeanProcessor#processColumn(ResultSet, int, Class)}.
+         *
+         * @param processor the processor.
+         * @param propType the property type.
+         * @return the reader.
+         */
+        static ColumnReader forProcessor(final BeanProcessor processor, final Class<?> propType) {
+            final ColumnReader reader = new ColumnReader() {
+                @Override
+                Object read(final ResultSet rs, final int index) throws SQLException {
+                    final Object value = processor.processColumn(rs, index, propType);
+
+                    // convert types for some popular ones
+                    if (value instanceof java.util.Date && !propType.isInstance(value)) {
+                        final long time = ((java.util.Date) value).getTime();
+                        if (propType == java.sql.Date.class) {
+                            return new java.sql.Date(time);
+                        } else if (propType == java.sql.Time.class) {
+                            return new java.sql.Time(time);
+                        } else if (propType == Timestamp.class) {
+                            return new Timestamp(time);
+                        }
+                    }
+                    return value;
+                }
+            };
+            return propType.isPrimitive() ? new PrimitiveDefault(reader, BeanProcessor.primitiveDefault(propType)) : reader;
+        }
+    }
+
+    /**
+     * Replaces null with the default value of a primitive property.
+     */
+    private static final class PrimitiveDefault extends ColumnReader {
+        private final ColumnReader reader;
+        private final Object defaultValue;
+
+        PrimitiveDefault(final ColumnReader reader, final Object defaultValue) {
+            this.reader = reader;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            final Object value = reader.read(rs, index);
+            return value == null ? defaultValue : value;
+        }
+    }
+
+    private static final ColumnReader OBJECT = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            return rs.getObject(index);
+        }
+    };
+
+    private static final ColumnReader STRING = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            return rs.getString(index);
+        }
+    };
+
+    private static final ColumnReader INT = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            return Integer.valueOf(rs.getInt(index));
+        }
+    };
+
+    private static final ColumnReader INTEGER = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            final int value = rs.getInt(index);
+            return rs.wasNull() ? null : Integer.valueOf(value);
+        }
+    };
+
+    private static final ColumnReader BOOLEAN = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            return Boolean.valueOf(rs.getBoolean(index));
+        }
+    };
+
+    private static final ColumnReader BOOLEAN_OBJECT = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            final boolean value = rs.getBoolean(index);
+            return rs.wasNull() ? null : Boolean.valueOf(value);
+        }
+    };
+
+    private static final ColumnReader LONG = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            return Long.valueOf(rs.getLong(index));
+        }
+    };
+
+    private static final ColumnReader LONG_OBJECT = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            final long value = rs.getLong(index);
+            return rs.wasNull() ? null : Long.valueOf(value);
+        }
+    };
+
+    private static final ColumnReader DOUBLE = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            return Double.valueOf(rs.getDouble(index));
+        }
+    };
+
+    private static final ColumnReader DOUBLE_OBJECT = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            final double value = rs.getDouble(index);
+            return rs.wasNull() ? null : Double.valueOf(value);
+        }
+    };
+
+    private static final ColumnReader FLOAT = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            return Float.valueOf(rs.getFloat(index));
+        }
+    };
+
+    private static final ColumnReader FLOAT_OBJECT = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            final float value = rs.getFloat(index);
+            return rs.wasNull() ? null : Float.valueOf(value);
+        }
+    };
+
+    private static final ColumnReader SHORT = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            return Short.valueOf(rs.getShort(index));
+        }
+    };
+
+    private static final ColumnReader SHORT_OBJECT = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            final short value = rs.getShort(index);
+            return rs.wasNull() ? null : Short.valueOf(value);
+        }
+    };
+
+    private static final ColumnReader BYTE = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            return Byte.valueOf(rs.getByte(index));
+        }
+    };
+
+    private static final ColumnReader BYTE_OBJECT = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            final byte value = rs.getByte(index);
+            return rs.wasNull() ? null : Byte.valueOf(value);
+        }
+    };
+
+    private static final ColumnReader TIMESTAMP = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            return rs.getTimestamp(index);
+        }
+    };
+
+    private static final ColumnReader SQL_XML = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            return rs.getSQLXML(index);
+        }
+    };
+
+    private static final ColumnReader SQL_DATE = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            final Object value = rs.getObject(index);
+            if (value instanceof java.util.Date && !(value instanceof java.sql.Date)) {
+                return new java.sql.Date(((java.util.Date) value).getTime());
+            }
+            return value;
+        }
+    };
+
+    private static final ColumnReader SQL_TIME = new ColumnReader() {
+        @Override
+        Object read(final ResultSet rs, final int index) throws SQLException {
+            final Object value = rs.getObject(index);
+            if (value instanceof java.util.Date && !(value instanceof java.sql.Time)) {
+                return new java.sql.Time(((java.util.Date) value).getTime());
+            }
+            return value;
+        }
+    };
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2014 SOP4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rayeye.dbutils;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The SQL generated for one entity statement shape, cached by
+ * {@link EntityMetadata}. Columns appear in the entity's column order, so the
+ * same shape always produces the same SQL text.
+ */
+final class SqlTemplate {
+
+    private final String sql;
+    private final ImmutableList<EntityMetadata.Property> properties;
+    private final ImmutableList<String> whereColumns;
+
+    SqlTemplate(final String sql, final ImmutableList<EntityMetadata.Property> properties,
+            final ImmutableList<String> whereColumns) {
+        this.sql = sql;
+        this.properties = properties;
+        this.whereColumns = whereColumns;
+    }
+
+    /**
+     * @return the SQL with a <code>:column</code> parameter per bound value.
+     */
+    String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return the properties selected, inserted or set, in SQL order.
+     */
+    ImmutableList<EntityMetadata.Property> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return the columns of the where clause, in SQL order.
+     */
+    ImmutableList<String> getWhereColumns() {
+        return whereColumns;
+    }
+
+}
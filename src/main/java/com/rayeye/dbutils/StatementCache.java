@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2014 SOP4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rayeye.dbutils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An LRU cache of <code>PreparedStatement</code>s for a single connection,
+ * keyed by the JDBC SQL and whether the statement returns generated keys,
+ * as the two are prepared differently. Executors check a statement out when they are
+ * constructed and release it instead of closing it. A statement that is
+ * already checked out is never handed out twice; a second executor for the
+ * same SQL gets a fresh statement that is closed on release.
+ *
+ * @see QueryRunner#setStatementCacheSize(int)
+ */
+final class StatementCache {
+
+    private final Connection conn;
+    private final LinkedHashMap<Key, Entry> entries;
+    private boolean closed;
+
+    private static final class Key {
+        final String sql;
+        final boolean generatedKeys;
+
+        Key(final String sql, final boolean generatedKeys) {
+            this.sql = sql;
+            this.generatedKeys = generatedKeys;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return generatedKeys == other.generatedKeys && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return generatedKeys ? ~sql.hashCode() : sql.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return generatedKeys ? sql + " [generated keys]" : sql;
+        }
+    }
+
+    private static final class Entry {
+        final PreparedStatement stmt;
+        boolean inUse;
+
+        Entry(final PreparedStatement stmt) {
+            this.stmt = stmt;
+        }
+    }
+
+    /**
+     * Constructs a cache for the given connection.
+     *
+     * @param conn the connection statements are prepared on.
+     * @param capacity the maximum number of statements kept open.
+     */
+    StatementCache(final Connection conn, final int capacity) {
+        this.conn = conn;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                // a statement still in use is closed when it is released
+                if (!eldest.getValue().inUse) {
+                    DbUtils.closeQuietly(eldest.getValue().stmt);
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Checks out a statement for the SQL, preparing it if there is no idle
+     * cached statement. Parameters and the fetch size of a reused statement
+     * are reset.
+     *
+     * @param sql the JDBC SQL.
+     * @return a statement that must be given back through {@link #release(String, PreparedStatement)}.
+     * @throws SQLException if the statement cannot be prepared.
+     */
+    PreparedStatement prepare(final String sql) throws SQLException {
+        return prepare(sql, false);
+    }
+
+    /**
+     * Checks out a statement for the SQL, optionally returning generated keys.
+     *
+     * @param sql the JDBC SQL.
+     * @param generatedKeys true to prepare with <code>Statement.RETURN_GENERATED_KEYS</code>.
+     * @return a statement that must be given back through {@link #release(String, boolean, PreparedStatement)}.
+     * @throws SQLException if the statement cannot be prepared.
+     * @see #prepare(String)
+     */
+    synchronized PreparedStatement prepare(final String sql, final boolean generatedKeys) throws SQLException {
+        if (closed) {
+            return newStatement(sql, generatedKeys);
+        }
+
+        final Key key = new Key(sql, generatedKeys);
+        Entry entry = entries.get(key);
+
+        if (entry != null && entry.inUse) {
+            return newStatement(sql, generatedKeys);
+        }
+
+        if (entry != null && !entry.stmt.isClosed()) {
+            entry.stmt.clearParameters();
+            entry.stmt.clearBatch();
+            // a streamed query may have left a fetch size behind
+            if (entry.stmt.getFetchSize() != 0) {
+                entry.stmt.setFetchSize(0);
+            }
+            entry.inUse = true;
+            return entry.stmt;
+        }
+
+        entry = new Entry(newStatement(sql, generatedKeys));
+        entry.inUse = true;
+        entries.put(key, entry);
+        return entry.stmt;
+    }
+
+    private PreparedStatement newStatement(final String sql, final boolean generatedKeys) throws SQLException {
+        return generatedKeys ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : conn.prepareStatement(sql);
+    }
+
+    /**
+     * Gives a statement back to the cache, or closes it if it is not cached.
+     *
+     * @param sql the JDBC SQL the statement was prepared with.
+     * @param stmt the statement returned by {@link #prepare(String)}.
+     * @throws SQLException if closing the statement fails.
+     */
+    void release(final String sql, final PreparedStatement stmt) throws SQLException {
+        release(sql, false, stmt);
+    }
+
+    /**
+     * Gives a statement back to the cache, or closes it if it is not cached.
+     *
+     * @param sql the JDBC SQL the statement was prepared with.
+     * @param generatedKeys true if the statement returns generated keys.
+     * @param stmt the statement returned by {@link #prepare(String, boolean)}.
+     * @throws SQLException if closing the statement fails.
+     */
+    synchronized void release(final String sql, final boolean generatedKeys, final PreparedStatement stmt)
+            throws SQLException {
+        final Entry entry = entries.get(new Key(sql, generatedKeys));
+
+        if (entry != null && entry.stmt == stmt) {
+            entry.inUse = false;
+        } else {
+            DbUtils.close(stmt);
+        }
+    }
+
+    /**
+     * Returns the number of cached statements.
+     *
+     * @return the number of cached statements.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Closes every idle cached statement. Statements still in use are closed
+     * when they are released. The connection itself is left open.
+     */
+    synchronized void close() {
+        closed = true;
+        final List<Entry> idle = new ArrayList<Entry>(entries.values());
+        entries.clear();
+
+        for (Entry entry : idle) {
+            if (!entry.inUse) {
+                DbUtils.closeQuietly(entry.stmt);
+            }
+        }
+    }
+
+}
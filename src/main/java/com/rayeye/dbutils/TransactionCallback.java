@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2014 SOP4J
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rayeye.dbutils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The work of a transaction.
+ *
+ * @param <T> the type of the result.
+ * @see QueryRunner#inTransaction(TransactionCallback)
+ */
+public interface TransactionCallback<T> {
+
+    /**
+     * Runs the work of the transaction. Every call made through the
+     * <code>QueryRunner</code> on this thread uses the transaction's
+     * connection until this method returns.
+     *
+     * @param conn the connection of the transaction, which must not be closed or committed.
+     * @return the result, returned by <code>inTransaction</code>.
+     * @throws SQLException to roll the transaction back; it is rethrown by the caller.
+     */
+    T doInTransaction(Connection conn) throws SQLException;
+
+}
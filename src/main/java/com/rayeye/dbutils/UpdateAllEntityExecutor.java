@@ -0,0 +1,131 @@
+/**
+ *
+ */
+package com.rayeye.dbutils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An EntityExecutor that is used to update a collection of entities by id.
+ * <p>
+ * The update statement is prepared once and each entity is added to a JDBC
+ * batch, {@link #BATCH_SIZE} entities per round trip. The entities are
+ * updated in one transaction if the connection is in auto-commit mode, and
+ * the connection is closed afterwards.
+ */
+public class UpdateAllEntityExecutor<T> extends
+		AbstractEntityExecutor<UpdateAllEntityExecutor<T>> {
+	private static final Logger LOG = LoggerFactory
+			.getLogger(UpdateAllEntityExecutor.class);
+
+	private final Collection<? extends T> entities;
+	private Set<String> excludeColumns;
+	private Set<String> includeColumns;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param entityClass
+	 *            the class of the entities.
+	 * @param entities
+	 *            the entities to update.
+	 * @param conn
+	 *            the connection to use, closed after the update.
+	 */
+	UpdateAllEntityExecutor(final Class<T> entityClass, final Collection<? extends T> entities, final Connection conn) {
+		super(entityClass, conn);
+		this.entities = entities;
+	}
+
+	public UpdateAllEntityExecutor<T> setIncludeColumns(String... includeColumns) {
+		return this.setIncludeColumns(new HashSet<String>(Arrays.asList(includeColumns)));
+	}
+
+	public UpdateAllEntityExecutor<T> setIncludeColumns(Set<String> includeColumns) {
+		this.includeColumns = includeColumns;
+		return this;
+	}
+
+	public UpdateAllEntityExecutor<T> setExcludeColumns(Set<String> excludeColumns) {
+		this.excludeColumns = excludeColumns;
+		return this;
+	}
+
+	/**
+	 * Updates the entities, each by its id.
+	 *
+	 * @return the number of rows updated.
+	 * @throws SQLException
+	 *             thrown if any errors occur during updating, no row is updated then.
+	 */
+	public int update() throws SQLException {
+		final boolean autoCommit = begin();
+		boolean done = false;
+
+		try {
+			final int count = updateRows();
+			done = true;
+			return count;
+		} finally {
+			end(autoCommit, done);
+		}
+	}
+
+	private int updateRows() throws SQLException {
+		if (entities.isEmpty()) {
+			return 0;
+		}
+
+		final EntityMetadata.Property id = metadata.getIdProperty();
+
+		if (id == null) {
+			throw new IllegalArgumentException("Entity does not have an id column: " + entity.getName());
+		}
+
+		final SqlTemplate template = metadata.updateSql(includeColumns, excludeColumns,
+				Collections.singleton(id.getColumn()));
+
+		LOG.debug("UPDATE {} rows: {}", entities.size(), template.getSql());
+
+		final Iterator<? extends T> it = entities.iterator();
+		int count = 0;
+
+		while (it.hasNext()) {
+			final BatchExecutor exec = new BatchExecutor(conn, template.getSql(), false, statementCache);
+
+			for (int i = 0; i < BATCH_SIZE && it.hasNext(); i++) {
+				final T entityInstance = it.next();
+
+				for (EntityMetadata.Property property : template.getProperties()) {
+					final Object value = property.getAccessor().get(entityInstance);
+
+					if (value == null) {
+						exec.bindNull(property.getColumn());
+					} else {
+						exec.bind(property.getColumn(), value);
+					}
+				}
+
+				exec.bind(id.getColumn(), id.getAccessor().get(entityInstance));
+				exec.addBatch();
+			}
+
+			for (int updated : exec.execute()) {
+				// drivers may not report the count of a statement in a batch
+				count += updated >= 0 ? updated : 1;
+			}
+		}
+
+		return count;
+	}
+}
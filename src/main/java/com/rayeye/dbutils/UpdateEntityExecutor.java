@@ -3,16 +3,12 @@
  */
 package com.rayeye.dbutils;
 
-import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.beanutils.PropertyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,89 +73,41 @@ public class UpdateEntityExecutor<T> extends
 	 *             thrown if any errors occur during updating.
 	 */
 	public int update(final Class<? extends T> entityClass) throws SQLException {
-		Map<String, String> columns = EntityUtils.getColumnNames(entityClass);
-		if (includeColumns != null) {
-			final Map<String, String> newColumns = new HashMap<String, String>();
-			for (Map.Entry<String, String> entry : columns.entrySet()) {
-				if (includeColumns.contains(entry.getValue())) {
-					newColumns.put(entry.getKey(), entry.getValue());
-				}
-			}
-			return update(newColumns);
-			
-		} else if( excludeColumns != null ) {
-			Map<String, String> newColumns = new HashMap<String, String>();
-			for (Map.Entry<String, String> entry : columns.entrySet()) {
-				if (!excludeColumns.contains(entry.getValue())) {
-					newColumns.put(entry.getKey(), entry.getValue());
-				}
-			}
-			return update(newColumns);
-		}
-		return update(columns);
-	}
-
-	@Override
-	protected Object getEntity() {
-		return entityInstance;
-	}
-
-	private int update(Map<String, String> columns) throws SQLException {
-
-		final StringBuilder sb = new StringBuilder("update ");
-
-		// create the SQL command
-		sb.append(tableName);
-		sb.append(" set ");
-		sb.append(EntityUtils.joinColumnsEquals(columns.keySet(), ", "));
+		final SqlTemplate template = EntityMetadata.of(entityClass)
+				.updateSql(includeColumns, excludeColumns, params.keySet());
 
-		if (!params.isEmpty()) {
-			sb.append(" where ");
-
-			sb.append(EntityUtils.joinColumnsEquals(params.keySet(), " and "));
-		}
-
-		LOG.debug("UPDATE: {}", sb.toString());
+		LOG.debug("UPDATE: {}", template.getSql());
 
 		// setup the QueryExecutor
-		final UpdateExecutor exec = new UpdateExecutor(conn, sb.toString(),
-				true);
+		final UpdateExecutor exec = new UpdateExecutor(conn, template.getSql(),
+				true, statementCache);
 
 		// bind all the column values
-		for (String column : columns.keySet()) {
-			// skip anything in the exclude set
-			if (excludeColumns!= null && excludeColumns.contains(column)) {
-				continue;
-			}
-
-			try {
-				// bind all of the values
-				final Object value = PropertyUtils.getSimpleProperty(
-						entityInstance, columns.get(column));
-
-				if (value == null) {
-					exec.bindNull(column);
-				} else {
-					exec.bind(column, value);
-				}
-			} catch (final IllegalAccessException e) {
-				throw new SQLException(e);
-			} catch (final InvocationTargetException e) {
-				throw new SQLException(e);
-			} catch (final NoSuchMethodException e) {
-				throw new SQLException(e);
+		for (EntityMetadata.Property property : template.getProperties()) {
+			// bind all of the values
+			final Object value = property.getAccessor().get(entityInstance);
+
+			if (value == null) {
+				exec.bindNull(property.getColumn());
+			} else {
+				exec.bind(property.getColumn(), value);
 			}
 		}
 
 		// go through and bind all the params
-		for (Map.Entry<String, Object> entity : params.entrySet()) {
-			exec.bind(entity.getKey(), entity.getValue());
+		for (String column : template.getWhereColumns()) {
+			exec.bind(column, params.get(column));
 		}
 
 		// execute using the BeanHandler
 		return exec.execute();
 	}
 
+	@Override
+	protected Object getEntity() {
+		return entityInstance;
+	}
+
 //	private int includeColumnsExecute(final Class<? extends T> entityClass)
 //			throws SQLException {
 //
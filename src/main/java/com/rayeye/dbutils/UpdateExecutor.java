@@ -36,7 +36,21 @@ public class UpdateExecutor extends AbstractExecutor<UpdateExecutor> {
      * @throws SQLException thrown if there is an error during execution.
      */
     UpdateExecutor(final Connection conn, final String sql, final boolean closeConnection) throws SQLException {
-        super(conn, sql);
+        this(conn, sql, closeConnection, null);
+    }
+
+    /**
+     * Constructs an UpdateExecutor given a connection, SQL statement and statement cache.
+     *
+     * @param conn The connection to use during execution.
+     * @param sql The SQL statement.
+     * @param closeConnection If the connection should be closed or not.
+     * @param statementCache The cache to take the statement from, or null.
+     * @throws SQLException thrown if there is an error during execution.
+     */
+    UpdateExecutor(final Connection conn, final String sql, final boolean closeConnection,
+            final StatementCache statementCache) throws SQLException {
+        super(conn, sql, statementCache);
         this.closeConn = closeConnection;
     }
 
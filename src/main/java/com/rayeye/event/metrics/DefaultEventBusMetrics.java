@@ -0,0 +1,166 @@
+package com.rayeye.event.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 默认的统计实现: 每个事件类型和 handler 一组分段计数器和直方图, 时间以微秒记录.
+ */
+public class DefaultEventBusMetrics implements EventBusMetrics {
+
+	private final ConcurrentMap<String, TypeMetrics> types = new ConcurrentHashMap<String, TypeMetrics>();
+	private final ConcurrentMap<String, HandlerMetrics> handlers = new ConcurrentHashMap<String, HandlerMetrics>();
+	private final Histogram fetch = new Histogram();
+	private final StripedCounter fetchEmpty = new StripedCounter();
+	private final ConcurrentMap<String, LagSample> lags = new ConcurrentHashMap<String, LagSample>();
+
+	@Override
+	public void posted(String type) {
+		typeOf(type).posted.increment();
+	}
+
+	@Override
+	public void stored(String type, long nanos) {
+		TypeMetrics metrics = typeOf(type);
+		metrics.stored.increment();
+		metrics.put.record(nanos / 1000);
+	}
+
+	@Override
+	public void fetched(long nanos, boolean empty) {
+		fetch.record(nanos / 1000);
+		if (empty) {
+			fetchEmpty.increment();
+		}
+	}
+
+	@Override
+	public void dropped(String type) {
+		typeOf(type).dropped.increment();
+	}
+
+	@Override
+	public void consumed(String type, long queuedMicros) {
+		TypeMetrics metrics = typeOf(type);
+		metrics.consumed.increment();
+		if (queuedMicros >= 0) {
+			metrics.queued.record(queuedMicros);
+		}
+	}
+
+	@Override
+	public void dispatched(String type, long nanos) {
+		typeOf(type).dispatch.record(nanos / 1000);
+	}
+
+	@Override
+	public void handled(String type, String handler, long nanos) {
+		handlerOf(type, handler).latency.record(nanos / 1000);
+	}
+
+	@Override
+	public void handlerFailed(String type, String handler, Throwable cause) {
+		typeOf(type).failures.increment();
+		handlerOf(type, handler).failures.increment();
+	}
+
+	@Override
+	public void lag(LagSample sample) {
+		lags.put(sample.getKey(), sample);
+	}
+
+	@Override
+	public MetricsSnapshot snapshot() {
+		Map<String, EventTypeSnapshot> typeSnapshots = new TreeMap<String, EventTypeSnapshot>();
+		for (Map.Entry<String, TypeMetrics> entry : types.entrySet()) {
+			typeSnapshots.put(entry.getKey(), entry.getValue().snapshot(entry.getKey()));
+		}
+		Map<String, HandlerSnapshot> handlerSnapshots = new TreeMap<String, HandlerSnapshot>();
+		for (Map.Entry<String, HandlerMetrics> entry : handlers.entrySet()) {
+			HandlerMetrics metrics = entry.getValue();
+			handlerSnapshots.put(entry.getKey(), new HandlerSnapshot(metrics.type, metrics.handler,
+					metrics.failures.sum(), new HistogramSnapshot(metrics.latency)));
+		}
+		return new MetricsSnapshot(System.currentTimeMillis(), typeSnapshots, handlerSnapshots,
+				new TreeMap<String, LagSample>(lags), new HistogramSnapshot(fetch), fetchEmpty.sum());
+	}
+
+	@Override
+	public EventCounts counts() {
+		long posted = 0, stored = 0, consumed = 0, dropped = 0, failures = 0;
+		for (TypeMetrics metrics : types.values()) {
+			posted += metrics.posted.sum();
+			stored += metrics.stored.sum();
+			consumed += metrics.consumed.sum();
+			dropped += metrics.dropped.sum();
+			failures += metrics.failures.sum();
+		}
+		return new EventCounts(posted, stored, consumed, dropped, failures);
+	}
+
+	@Override
+	public void reset() {
+		types.clear();
+		handlers.clear();
+		lags.clear();
+		fetch.reset();
+		fetchEmpty.reset();
+	}
+
+	private TypeMetrics typeOf(String type) {
+		if (type == null) {
+			type = UNKNOWN_TYPE;
+		}
+		TypeMetrics metrics = types.get(type);
+		if (metrics == null) {
+			types.putIfAbsent(type, new TypeMetrics());
+			metrics = types.get(type);
+		}
+		return metrics;
+	}
+
+	/**
+	 * 同一个 handler 注册在父类型上时会处理多种事件, 按事件类型分开统计.
+	 */
+	private HandlerMetrics handlerOf(String type, String handler) {
+		String key = HandlerSnapshot.key(type, handler);
+		HandlerMetrics metrics = handlers.get(key);
+		if (metrics == null) {
+			handlers.putIfAbsent(key, new HandlerMetrics(type, handler));
+			metrics = handlers.get(key);
+		}
+		return metrics;
+	}
+
+	private static class TypeMetrics {
+		final StripedCounter posted = new StripedCounter();
+		final StripedCounter stored = new StripedCounter();
+		final StripedCounter consumed = new StripedCounter();
+		final StripedCounter dropped = new StripedCounter();
+		final StripedCounter failures = new StripedCounter();
+		final Histogram put = new Histogram();
+		final Histogram queued = new Histogram();
+		final Histogram dispatch = new Histogram();
+
+		EventTypeSnapshot snapshot(String type) {
+			return new EventTypeSnapshot(type, posted.sum(), stored.sum(), consumed.sum(),
+					dropped.sum(), failures.sum(), new HistogramSnapshot(put),
+					new HistogramSnapshot(queued), new HistogramSnapshot(dispatch));
+		}
+	}
+
+	private static class HandlerMetrics {
+		final String type;
+		final String handler;
+		final StripedCounter failures = new StripedCounter();
+		final Histogram latency = new Histogram();
+
+		HandlerMetrics(String type, String handler) {
+			this.type = type;
+			this.handler = handler;
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.rayeye.event.metrics;
+
+/**
+ * event bus 的统计接口, 由 {@link com.rayeye.event.store.AbstractEventBus} 在各个环节回调.
+ * 实现必须线程安全且足够轻量, 回调发生在发布和消费的线程上.
+ */
+public interface EventBusMetrics {
+
+	/**
+	 * 类型为空或者本节点加载不了时统计使用的事件类名, 远端写入的任意类名不会各自占用统计.
+	 */
+	public static final String UNKNOWN_TYPE = "unknown";
+
+	/**
+	 * 调用了 post.
+	 * @param type 事件类名
+	 */
+	public void posted(String type);
+
+	/**
+	 * 事件写入存储.
+	 * @param type 事件类名
+	 * @param nanos 写入耗时
+	 */
+	public void stored(String type, long nanos);
+
+	/**
+	 * 从存储读取一次.
+	 * @param nanos 读取耗时
+	 * @param empty 队列为空, 没有读到事件
+	 */
+	public void fetched(long nanos, boolean empty);
+
+	/**
+	 * 读取到的事件没有被处理: 没有 handler, 被过滤, 或者无法解析.
+	 * @param type 事件类名, 未知类型为 {@link #UNKNOWN_TYPE}
+	 */
+	public void dropped(String type);
+
+	/**
+	 * 事件解析完成, 开始分发.
+	 * @param type 事件类名
+	 * @param queuedMicros 从发布到开始分发的时间, 未知时为负数
+	 */
+	public void consumed(String type, long queuedMicros);
+
+	/**
+	 * 所有 handler 执行完成.
+	 * @param type 事件类名
+	 * @param nanos 分发耗时
+	 */
+	public void dispatched(String type, long nanos);
+
+	/**
+	 * 单个 handler 执行完成.
+	 * @param type 事件类名
+	 * @param handler handler 类名
+	 * @param nanos 耗时
+	 */
+	public void handled(String type, String handler, long nanos);
+
+	/**
+	 * handler 抛出异常.
+	 * @param type 事件类名
+	 * @param handler handler 类名
+	 * @param cause 异常
+	 */
+	public void handlerFailed(String type, String handler, Throwable cause);
+
+	/**
+	 * 队列积压采样.
+	 * @param sample 采样结果
+	 */
+	public void lag(LagSample sample);
+
+	/**
+	 * @return 当前的统计值
+	 */
+	public MetricsSnapshot snapshot();
+
+	/**
+	 * 只读取合计计数, 比 {@link #snapshot()} 轻得多, 供频繁轮询使用.
+	 * @return 当前的合计计数
+	 */
+	public EventCounts counts();
+
+	/**
+	 * 清空统计值.
+	 */
+	public void reset();
+
+}
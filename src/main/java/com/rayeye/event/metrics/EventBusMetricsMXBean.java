@@ -0,0 +1,22 @@
+package com.rayeye.event.metrics;
+
+/**
+ * 通过 JMX 暴露的 event bus 统计.
+ */
+public interface EventBusMetricsMXBean {
+
+	public long getPosted();
+
+	public long getStored();
+
+	public long getConsumed();
+
+	public long getDropped();
+
+	public long getFailures();
+
+	public MetricsSnapshot getSnapshot();
+
+	public void reset();
+
+}
@@ -0,0 +1,42 @@
+package com.rayeye.event.metrics;
+
+/**
+ * 所有事件类型合计的计数, 只读取计数器, 不计算直方图.
+ */
+public class EventCounts {
+
+	private final long posted;
+	private final long stored;
+	private final long consumed;
+	private final long dropped;
+	private final long failures;
+
+	public EventCounts(long posted, long stored, long consumed, long dropped, long failures) {
+		this.posted = posted;
+		this.stored = stored;
+		this.consumed = consumed;
+		this.dropped = dropped;
+		this.failures = failures;
+	}
+
+	public long getPosted() {
+		return posted;
+	}
+
+	public long getStored() {
+		return stored;
+	}
+
+	public long getConsumed() {
+		return consumed;
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+
+	public long getFailures() {
+		return failures;
+	}
+
+}
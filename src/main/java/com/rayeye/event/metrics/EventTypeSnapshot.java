@@ -0,0 +1,91 @@
+package com.rayeye.event.metrics;
+
+/**
+ * 单个事件类型的统计, 时间单位为微秒.
+ */
+public class EventTypeSnapshot {
+
+	private final String type;
+	private final long posted;
+	private final long stored;
+	private final long consumed;
+	private final long dropped;
+	private final long failures;
+	private final HistogramSnapshot put;
+	private final HistogramSnapshot queued;
+	private final HistogramSnapshot dispatch;
+
+	public EventTypeSnapshot(String type, long posted, long stored, long consumed, long dropped, long failures,
+			HistogramSnapshot put, HistogramSnapshot queued, HistogramSnapshot dispatch) {
+		this.type = type;
+		this.posted = posted;
+		this.stored = stored;
+		this.consumed = consumed;
+		this.dropped = dropped;
+		this.failures = failures;
+		this.put = put;
+		this.queued = queued;
+		this.dispatch = dispatch;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return 调用 post 的次数
+	 */
+	public long getPosted() {
+		return posted;
+	}
+
+	/**
+	 * @return 写入存储的次数
+	 */
+	public long getStored() {
+		return stored;
+	}
+
+	/**
+	 * @return 解析并分发给 handler 的次数
+	 */
+	public long getConsumed() {
+		return consumed;
+	}
+
+	/**
+	 * @return 读取后因没有 handler, 被过滤或无法解析而丢弃的次数
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return handler 抛出异常的次数
+	 */
+	public long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return 写入存储的耗时
+	 */
+	public HistogramSnapshot getPut() {
+		return put;
+	}
+
+	/**
+	 * @return 从发布到开始分发的时间
+	 */
+	public HistogramSnapshot getQueued() {
+		return queued;
+	}
+
+	/**
+	 * @return 从开始分发到所有 handler 执行完成的时间
+	 */
+	public HistogramSnapshot getDispatch() {
+		return dispatch;
+	}
+
+}
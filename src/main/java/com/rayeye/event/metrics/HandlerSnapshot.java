@@ -0,0 +1,46 @@
+package com.rayeye.event.metrics;
+
+/**
+ * 单个 handler 处理某一事件类型的统计, 时间单位为微秒.
+ */
+public class HandlerSnapshot {
+
+	private final String type;
+	private final String handler;
+	private final long failures;
+	private final HistogramSnapshot latency;
+
+	public HandlerSnapshot(String type, String handler, long failures, HistogramSnapshot latency) {
+		this.type = type;
+		this.handler = handler;
+		this.failures = failures;
+		this.latency = latency;
+	}
+
+	/**
+	 * {@link MetricsSnapshot#getHandlers()} 中的 key.
+	 * @param type 事件类名
+	 * @param handler handler 类名
+	 * @return 事件类名#handler 类名
+	 */
+	public static String key(String type, String handler) {
+		return type + "#" + handler;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public String getHandler() {
+		return handler;
+	}
+
+	public long getFailures() {
+		return failures;
+	}
+
+	public HistogramSnapshot getLatency() {
+		return latency;
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.rayeye.event.metrics;
+
+/**
+ * {@link Histogram} 某一时刻的统计值.
+ */
+public class HistogramSnapshot {
+
+	private final long count;
+	private final double mean;
+	private final long p50;
+	private final long p90;
+	private final long p99;
+	private final long max;
+
+	public HistogramSnapshot(Histogram histogram) {
+		this.count = histogram.getCount();
+		this.mean = histogram.getMean();
+		this.p50 = histogram.getValueAtPercentile(50);
+		this.p90 = histogram.getValueAtPercentile(90);
+		this.p99 = histogram.getValueAtPercentile(99);
+		this.max = histogram.getMax();
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count + ", mean=" + mean + ", p50=" + p50 + ", p90=" + p90 + ", p99=" + p99 + ", max=" + max;
+	}
+
+}
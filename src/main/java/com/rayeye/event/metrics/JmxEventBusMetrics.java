@@ -0,0 +1,85 @@
+package com.rayeye.event.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 把 {@link EventBusMetrics} 注册到 platform MBeanServer,
+ * ObjectName 为 com.rayeye.event:type=EventBusMetrics,name=&lt;name&gt;.
+ */
+public class JmxEventBusMetrics implements EventBusMetricsMXBean {
+
+	private final EventBusMetrics metrics;
+	private ObjectName objectName;
+
+	public JmxEventBusMetrics(EventBusMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * 注册 MBean, 同名的已注册 MBean 会被替换.
+	 * @param name bus 名称
+	 * @return this
+	 * @throws JMException 注册失败
+	 */
+	public synchronized JmxEventBusMetrics register(String name) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName on = new ObjectName("com.rayeye.event:type=EventBusMetrics,name=" + ObjectName.quote(name));
+		if (server.isRegistered(on)) {
+			server.unregisterMBean(on);
+		}
+		server.registerMBean(this, on);
+		this.objectName = on;
+		return this;
+	}
+
+	public synchronized void unregister() throws JMException {
+		if (objectName != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			objectName = null;
+		}
+	}
+
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	@Override
+	public long getPosted() {
+		return metrics.counts().getPosted();
+	}
+
+	@Override
+	public long getStored() {
+		return metrics.counts().getStored();
+	}
+
+	@Override
+	public long getConsumed() {
+		return metrics.counts().getConsumed();
+	}
+
+	@Override
+	public long getDropped() {
+		return metrics.counts().getDropped();
+	}
+
+	@Override
+	public long getFailures() {
+		return metrics.counts().getFailures();
+	}
+
+	@Override
+	public MetricsSnapshot getSnapshot() {
+		return metrics.snapshot();
+	}
+
+	@Override
+	public void reset() {
+		metrics.reset();
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.rayeye.event.metrics;
+
+/**
+ * 某个队列一次积压采样的结果.
+ */
+public class LagSample {
+
+	private final String key;
+	private final long timestamp;
+	private final long length;
+	private final long oldestAgeMillis;
+	private final double consumeRate;
+
+	public LagSample(String key, long timestamp, long length, long oldestAgeMillis, double consumeRate) {
+		this.key = key;
+		this.timestamp = timestamp;
+		this.length = length;
+		this.oldestAgeMillis = oldestAgeMillis;
+		this.consumeRate = consumeRate;
+	}
+
+	/**
+	 * @return 队列的 key
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return 采样时间
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return 队列长度
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return 队首 (最早入队) 事件已等待的毫秒数, 队列为空或事件没有时间戳时为 -1
+	 */
+	public long getOldestAgeMillis() {
+		return oldestAgeMillis;
+	}
+
+	/**
+	 * @return 本节点每秒消费的事件数, 按两次采样之间的增量计算
+	 */
+	public double getConsumeRate() {
+		return consumeRate;
+	}
+
+	@Override
+	public String toString() {
+		return key + ": length=" + length + ", oldestAgeMillis=" + oldestAgeMillis + ", consumeRate=" + consumeRate;
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.rayeye.event.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * event bus 某一时刻的统计值.
+ */
+public class MetricsSnapshot {
+
+	private final long timestamp;
+	private final Map<String, EventTypeSnapshot> types;
+	private final Map<String, HandlerSnapshot> handlers;
+	private final Map<String, LagSample> lags;
+	private final HistogramSnapshot fetch;
+	private final long fetchEmpty;
+
+	public MetricsSnapshot(long timestamp, Map<String, EventTypeSnapshot> types,
+			Map<String, HandlerSnapshot> handlers, Map<String, LagSample> lags,
+			HistogramSnapshot fetch, long fetchEmpty) {
+		this.timestamp = timestamp;
+		this.types = Collections.unmodifiableMap(types);
+		this.handlers = Collections.unmodifiableMap(handlers);
+		this.lags = Collections.unmodifiableMap(lags);
+		this.fetch = fetch;
+		this.fetchEmpty = fetchEmpty;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return 事件类名 -> 统计
+	 */
+	public Map<String, EventTypeSnapshot> getTypes() {
+		return types;
+	}
+
+	/**
+	 * @return 事件类名#handler 类名 -> 统计, 见 {@link HandlerSnapshot#key(String, String)}
+	 */
+	public Map<String, HandlerSnapshot> getHandlers() {
+		return handlers;
+	}
+
+	/**
+	 * @return 队列 key -> 最近一次积压采样
+	 */
+	public Map<String, LagSample> getLags() {
+		return lags;
+	}
+
+	/**
+	 * @return 从存储读取事件的耗时, 单位微秒
+	 */
+	public HistogramSnapshot getFetch() {
+		return fetch;
+	}
+
+	/**
+	 * @return 从存储读取但队列为空的次数
+	 */
+	public long getFetchEmpty() {
+		return fetchEmpty;
+	}
+
+	public long getPosted() {
+		long sum = 0;
+		for (EventTypeSnapshot type : types.values()) {
+			sum += type.getPosted();
+		}
+		return sum;
+	}
+
+	public long getStored() {
+		long sum = 0;
+		for (EventTypeSnapshot type : types.values()) {
+			sum += type.getStored();
+		}
+		return sum;
+	}
+
+	public long getConsumed() {
+		long sum = 0;
+		for (EventTypeSnapshot type : types.values()) {
+			sum += type.getConsumed();
+		}
+		return sum;
+	}
+
+	public long getDropped() {
+		long sum = 0;
+		for (EventTypeSnapshot type : types.values()) {
+			sum += type.getDropped();
+		}
+		return sum;
+	}
+
+	public long getFailures() {
+		long sum = 0;
+		for (EventTypeSnapshot type : types.values()) {
+			sum += type.getFailures();
+		}
+		return sum;
+	}
+
+}
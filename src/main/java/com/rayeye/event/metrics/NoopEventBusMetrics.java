@@ -0,0 +1,64 @@
+package com.rayeye.event.metrics;
+
+import java.util.Collections;
+
+/**
+ * 不做任何统计.
+ */
+public class NoopEventBusMetrics implements EventBusMetrics {
+
+	@Override
+	public void posted(String type) {
+	}
+
+	@Override
+	public void stored(String type, long nanos) {
+	}
+
+	@Override
+	public void fetched(long nanos, boolean empty) {
+	}
+
+	@Override
+	public void dropped(String type) {
+	}
+
+	@Override
+	public void consumed(String type, long queuedMicros) {
+	}
+
+	@Override
+	public void dispatched(String type, long nanos) {
+	}
+
+	@Override
+	public void handled(String type, String handler, long nanos) {
+	}
+
+	@Override
+	public void handlerFailed(String type, String handler, Throwable cause) {
+	}
+
+	@Override
+	public void lag(LagSample sample) {
+	}
+
+	@Override
+	public MetricsSnapshot snapshot() {
+		return new MetricsSnapshot(System.currentTimeMillis(),
+				Collections.<String, EventTypeSnapshot> emptyMap(),
+				Collections.<String, HandlerSnapshot> emptyMap(),
+				Collections.<String, LagSample> emptyMap(),
+				new HistogramSnapshot(new Histogram()), 0);
+	}
+
+	@Override
+	public EventCounts counts() {
+		return new EventCounts(0, 0, 0, 0, 0);
+	}
+
+	@Override
+	public void reset() {
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.rayeye.event.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器, 不同线程落在不同的缓存行上累加, 读取时求和.
+ * 写多读少的场景下比单个 AtomicLong 的竞争小得多.
+ */
+public class StripedCounter {
+
+	/**
+	 * 每段占用的 long 个数, 8 个 long 为 64 字节, 避免伪共享.
+	 */
+	private static final int PADDING = 8;
+	private static final int STRIPES = stripes();
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+	public void increment() {
+		add(1);
+	}
+
+	public void add(long value) {
+		cells.addAndGet(index(), value);
+	}
+
+	public long sum() {
+		long sum = 0;
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	public void reset() {
+		for (int i = 0; i < STRIPES; i++) {
+			cells.set(i * PADDING, 0);
+		}
+	}
+
+	private static int index() {
+		long id = Thread.currentThread().getId();
+		int h = (int) (id ^ (id >>> 32));
+		h *= 0x9E3779B9;
+		return ((h >>> 16) & (STRIPES - 1)) * PADDING;
+	}
+
+	private static int stripes() {
+		int n = Runtime.getRuntime().availableProcessors() * 2;
+		return Integer.highestOneBit(Math.max(n - 1, 1)) << 1;
+	}
+
+}
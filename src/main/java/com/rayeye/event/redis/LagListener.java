@@ -0,0 +1,22 @@
+package com.rayeye.event.redis;
+
+import com.rayeye.event.metrics.LagSample;
+
+/**
+ * 队列积压越过阈值时的回调, 只在状态变化时触发一次.
+ */
+public interface LagListener {
+
+	/**
+	 * 队列长度或最早事件的等待时间超过阈值.
+	 * @param sample 触发的采样
+	 */
+	public void exceeded(LagSample sample);
+
+	/**
+	 * 积压回落到阈值以下.
+	 * @param sample 触发的采样
+	 */
+	public void recovered(LagSample sample);
+
+}
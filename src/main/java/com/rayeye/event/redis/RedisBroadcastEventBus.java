@@ -0,0 +1,115 @@
+package com.rayeye.event.redis;
+
+import java.io.Closeable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.rayeye.event.EventBus;
+import com.rayeye.event.store.AbstractEventBus;
+import com.rayeye.event.store.StoreEvent;
+
+/**
+ * 广播的 event bus: 事件以 redis PUBLISH 发到频道, 订阅了该频道的每个节点都收到并交给自己的 handler,
+ * 发布者自己也会收到.
+ * <p>
+ * 与 {@link RedisEventBus} 的队列 (每个事件只被一个节点取走) 不同, 事件不落地:
+ * 发布时没有订阅的节点收不到, 适合缓存失效这类丢失后可以靠过期兜底的通知.
+ */
+public class RedisBroadcastEventBus extends AbstractEventBus implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RedisBroadcastEventBus.class);
+
+	private final String channel;
+	private final Jedis subscriber;
+	private final Jedis publisher;
+	/** monitor 中的订阅, 关闭时先退订 */
+	private volatile RedisEventListener subscription;
+	private volatile boolean closed;
+
+	/**
+	 * @param host redis 地址
+	 * @param port redis 端口
+	 * @param channel 频道, 同一频道的 bus 互相广播
+	 */
+	public RedisBroadcastEventBus(String host, int port, String channel) {
+		super();
+		this.channel = channel;
+		this.subscriber = new Jedis(host, port);
+		// 订阅中的连接不能再执行 publish, 发布使用独立连接
+		this.publisher = new Jedis(host, port);
+	}
+
+	/**
+	 * 退订并关闭 redis 连接, monitor 随之返回. 订阅中的连接由 monitor 收到退订回复后关闭.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		RedisEventListener listener = subscription;
+		boolean unsubscribed = false;
+		if (listener != null && listener.isSubscribed()) {
+			try {
+				listener.unsubscribe();
+				unsubscribed = true;
+			} catch (RuntimeException e) {
+				LOG.warn("unsubscribe from channel " + channel + " failed", e);
+			}
+		}
+		if (!unsubscribed) {
+			subscriber.close();
+		}
+		publisher.close();
+	}
+
+	@Override
+	public synchronized void put(StoreEvent event) {
+		publisher.publish(channel, JSON.toJSONString(event));
+	}
+
+	/**
+	 * 事件由订阅回调分发, 没有需要轮询的存储.
+	 */
+	@Override
+	protected void run(EventBus eventBus) {
+	}
+
+	/**
+	 * 订阅频道并分发收到的事件, 阻塞直到 {@link #close()}.
+	 */
+	@Override
+	public void monitor() {
+		RedisEventListener listener = new RedisEventListener() {
+			@Override
+			public void onMessage(String channel, String message) {
+				receive(message);
+			}
+		};
+		subscription = listener;
+		try {
+			subscriber.subscribe(listener, channel);
+		} finally {
+			subscription = null;
+			if (closed) {
+				subscriber.close();
+			}
+		}
+	}
+
+	private void receive(String message) {
+		StoreEvent event;
+		try {
+			event = JSON.parseObject(message, StoreEvent.class);
+		} catch (JSONException e) {
+			LOG.warn("malformed event on channel " + channel + ": " + message);
+			return;
+		}
+		if (event != null) {
+			dispatch(read, event);
+		}
+	}
+}
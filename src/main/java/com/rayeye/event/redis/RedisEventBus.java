@@ -1,59 +1,83 @@
 package com.rayeye.event.redis;
 
+import java.io.Closeable;
+
 import redis.clients.jedis.Jedis;
 
 import com.rayeye.event.EventBus;
 import com.rayeye.event.store.AbstractEventBus;
-import com.rayeye.event.store.ReadEvent;
 import com.rayeye.event.store.StoreEvent;
 import com.rayeye.redis.Command;
 import com.rayeye.redis.RedisByteCommand;
 
-public class RedisEventBus extends AbstractEventBus {
+public class RedisEventBus extends AbstractEventBus implements Closeable {
 
 	private Command command;
 	private final String EVENTS_KEY = "events";
 	private Jedis redis;
+	private Jedis publisher;
+	private Jedis commandConnection;
+	private final String host;
+	private final int port;
 	
 	public RedisEventBus(String host , int port) {
 		super();
+		this.host = host;
+		this.port = port;
 		this.redis = new Jedis(host , port);
-		this.command = new RedisByteCommand(new Jedis(host , port));
+		// 订阅中的连接不能再执行 publish, 发布通知使用独立连接
+		this.publisher = new Jedis(host , port);
+		this.commandConnection = new Jedis(host , port);
+		this.command = new RedisByteCommand(commandConnection);
+	}
+
+	/**
+	 * 关闭本 bus 的 redis 连接, monitor 中的订阅随之结束. 积压监控的连接由监控自己关闭.
+	 */
+	@Override
+	public synchronized void close() {
+		redis.close();
+		publisher.close();
+		commandConnection.close();
 	}
 
 	public synchronized void put( StoreEvent event){
 		command.push( EVENTS_KEY , event);
-		this.redis.publish(EVENTS_KEY , event.getId());
+		this.publisher.publish(EVENTS_KEY , event.getId());
 	}
 	
 	private synchronized StoreEvent get(){
+		long start = System.nanoTime();
 		StoreEvent event = command.pop(EVENTS_KEY , StoreEvent.class);
+		getMetrics().fetched(System.nanoTime() - start, event == null);
 		return event;
 	}
 
 	@Override
 	public void run(EventBus eventBus) {
 		StoreEvent event = null;
-		try {
-			if( ( event = this.get() ) != null ) {
-				eventBus.post(new ReadEvent(event.getType(), event.getEvent() ));
-			}
-		} catch (ClassNotFoundException e) {
-			//nothing
+		if( ( event = this.get() ) != null ) {
+			dispatch(eventBus, event);
 		}
 	}
 	
 	private void executeEvents(EventBus eventBus) {
 		StoreEvent event = null;
 		while(( event = this.get() ) != null ) {
-			try {
-				eventBus.post(new ReadEvent(event.getType(), event.getEvent() ));
-			} catch (ClassNotFoundException e) {
-				//nothing
-			}
+			dispatch(eventBus, event);
 		}
 	}
 	
+	/**
+	 * 创建积压监控, 使用独立的 redis 连接, 采样结果写入本 bus 的统计.
+	 * 连接由监控独占, 调用监控的 stop 时关闭.
+	 * @return 尚未启动的监控
+	 */
+	public RedisLagMonitor newLagMonitor() {
+		Jedis jedis = new Jedis(host , port);
+		return new RedisLagMonitor(new RedisByteCommand(jedis), getMetrics(), EVENTS_KEY).closeOnStop(jedis);
+	}
+	
 	@Override
 	public void monitor() {
 		if( this.redis == null ) {
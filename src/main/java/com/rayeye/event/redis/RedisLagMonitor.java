@@ -0,0 +1,202 @@
+package com.rayeye.event.redis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rayeye.event.metrics.EventBusMetrics;
+import com.rayeye.event.metrics.LagSample;
+import com.rayeye.event.store.StoreEvent;
+import com.rayeye.redis.Command;
+
+/**
+ * 定时采样 redis 队列的积压: 队列长度, 最早事件的等待时间和本节点的消费速度.
+ * 采样结果写入 {@link EventBusMetrics}, 越过阈值时通知 {@link LagListener}.
+ * 使用独立的 redis 连接, 不影响 event bus 的读写; 由本监控独占的连接在 {@link #stop()} 时关闭.
+ */
+public class RedisLagMonitor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RedisLagMonitor.class);
+
+	private final Command command;
+	private final EventBusMetrics metrics;
+	private final List<String> keys;
+	private final List<LagListener> listeners = new CopyOnWriteArrayList<LagListener>();
+	private final Set<String> exceeded = new HashSet<String>();
+
+	private long maxLength = Long.MAX_VALUE;
+	private long maxAgeMillis = Long.MAX_VALUE;
+
+	private long lastConsumed = -1;
+	private long lastSampled;
+	private ScheduledExecutorService executor;
+	private Closeable connection;
+
+	public RedisLagMonitor(Command command, EventBusMetrics metrics, String... keys) {
+		this.command = command;
+		this.metrics = metrics;
+		this.keys = Arrays.asList(keys);
+	}
+
+	/**
+	 * @param maxLength 队列长度阈值
+	 * @return this
+	 */
+	public RedisLagMonitor setMaxLength(long maxLength) {
+		this.maxLength = maxLength;
+		return this;
+	}
+
+	/**
+	 * @param maxAgeMillis 最早事件等待时间的阈值
+	 * @return this
+	 */
+	public RedisLagMonitor setMaxAgeMillis(long maxAgeMillis) {
+		this.maxAgeMillis = maxAgeMillis;
+		return this;
+	}
+
+	/**
+	 * @param connection command 使用的连接, 由本监控独占, stop 时关闭
+	 * @return this
+	 */
+	public RedisLagMonitor closeOnStop(Closeable connection) {
+		this.connection = connection;
+		return this;
+	}
+
+	public RedisLagMonitor addListener(LagListener listener) {
+		this.listeners.add(listener);
+		return this;
+	}
+
+	/**
+	 * 启动定时采样.
+	 * @param period 采样间隔
+	 * @param unit 时间单位
+	 */
+	public synchronized void start(long period, TimeUnit unit) {
+		if (executor != null) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "redis-lag-monitor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sample();
+				} catch (RuntimeException e) {
+					LOG.warn("lag sampling failed", e);
+				}
+			}
+		}, 0, period, unit);
+	}
+
+	/**
+	 * 停止采样并关闭独占的连接, 之后不能再采样.
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			try {
+				// 等正在进行的采样结束再关闭连接
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			executor = null;
+		}
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (IOException e) {
+				LOG.warn("failed to close the lag monitor connection", e);
+			}
+			connection = null;
+		}
+	}
+
+	/**
+	 * 立即采样一次所有队列.
+	 * @return 采样结果
+	 */
+	public synchronized List<LagSample> sample() {
+		long now = System.currentTimeMillis();
+		double rate = consumeRate(now);
+
+		List<LagSample> samples = new ArrayList<LagSample>(keys.size());
+		for (String key : keys) {
+			long length = command.length(key);
+			long age = -1;
+			if (length > 0) {
+				StoreEvent oldest = command.peek(key, StoreEvent.class);
+				long published = oldest == null ? -1 : oldest.getLongHeader(StoreEvent.HEADER_TIMESTAMP, -1);
+				if (published > 0) {
+					age = Math.max(now - published, 0);
+				}
+			}
+
+			LagSample sample = new LagSample(key, now, length, age, rate);
+			metrics.lag(sample);
+			notifyListeners(sample);
+			samples.add(sample);
+		}
+		return samples;
+	}
+
+	private double consumeRate(long now) {
+		long consumed = metrics.counts().getConsumed();
+		double rate = 0;
+		if (lastConsumed >= 0 && now > lastSampled) {
+			rate = (consumed - lastConsumed) * 1000.0 / (now - lastSampled);
+		}
+		lastConsumed = consumed;
+		lastSampled = now;
+		return rate;
+	}
+
+	private void notifyListeners(LagSample sample) {
+		boolean over = sample.getLength() > maxLength || sample.getOldestAgeMillis() > maxAgeMillis;
+		if (over == exceeded.contains(sample.getKey())) {
+			return;
+		}
+
+		if (over) {
+			exceeded.add(sample.getKey());
+		} else {
+			exceeded.remove(sample.getKey());
+		}
+
+		for (LagListener listener : listeners) {
+			try {
+				if (over) {
+					listener.exceeded(sample);
+				} else {
+					listener.recovered(sample);
+				}
+			} catch (RuntimeException e) {
+				LOG.warn("lag listener failed", e);
+			}
+		}
+	}
+
+}
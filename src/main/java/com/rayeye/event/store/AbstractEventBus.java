@@ -1,25 +1,51 @@
 package com.rayeye.event.store;
 
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
-import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.reflect.Invokable;
 import com.google.common.reflect.Parameter;
+import com.google.common.reflect.TypeToken;
 import com.rayeye.event.Event;
 import com.rayeye.event.EventBus;
 import com.rayeye.event.EventHandler;
+import com.rayeye.event.metrics.DefaultEventBusMetrics;
+import com.rayeye.event.metrics.EventBusMetrics;
+import com.rayeye.event.metrics.NoopEventBusMetrics;
 
 public abstract class AbstractEventBus implements EventBus {
 
+	private static final Logger LOG = LoggerFactory.getLogger(AbstractEventBus.class);
+
 	protected StoreEventBus store;
 	protected MonitorEventBus read;
 	protected GoogleEventBus eventBus;
+	private final List<EventFilter> filters = new CopyOnWriteArrayList<EventFilter>();
+	private volatile EventBusMetrics metrics = new DefaultEventBusMetrics();
+	private final AtomicLong sequence = new AtomicLong();
+	private String node = ManagementFactory.getRuntimeMXBean().getName();
+
+	/**
+	 * 当前线程正在处理的事件的 trace id.
+	 */
+	private static final ThreadLocal<String> CURRENT_TRACE = new ThreadLocal<String>();
 
 	public AbstractEventBus() {
 		this.init();
@@ -39,6 +65,7 @@ public abstract class AbstractEventBus implements EventBus {
 
 	public int post(Event event) {
 		if (this.store != null) {
+			metrics.posted(event.getClass().getName());
 			this.store.post(event);
 		}
 		return 0;
@@ -58,6 +85,110 @@ public abstract class AbstractEventBus implements EventBus {
 		}
 	}
 
+	/**
+	 * 发布节点名称, 写入事件的 node header, 默认为 pid@hostname.
+	 * @param node 节点名称
+	 */
+	public void setNode(String node) {
+		this.node = node;
+	}
+
+	public String getNode() {
+		return node;
+	}
+
+	public EventBusMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * 替换统计实现, 不需要统计时可以设置为 {@link NoopEventBusMetrics}.
+	 * @param metrics 统计实现
+	 */
+	public void setMetrics(EventBusMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * 给待存储的事件写入 header.
+	 * @param event 待存储的事件
+	 * @return event
+	 */
+	protected StoreEvent stamp(StoreEvent event) {
+		String trace = CURRENT_TRACE.get();
+		event.setHeader(StoreEvent.HEADER_TIMESTAMP, String.valueOf(System.currentTimeMillis()))
+			.setHeader(StoreEvent.HEADER_NODE, node)
+			.setHeader(StoreEvent.HEADER_SEQUENCE, String.valueOf(sequence.incrementAndGet()))
+			.setHeader(StoreEvent.HEADER_TRACE_ID, trace != null ? trace : newTraceId());
+		return event;
+	}
+
+	/**
+	 * trace id 只用于关联事件, 不需要 {@link UUID#randomUUID()} 的 SecureRandom, 发布时使用线程本地的随机数.
+	 */
+	private static String newTraceId() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return new UUID(random.nextLong(), random.nextLong()).toString();
+	}
+
+	/**
+	 * 添加订阅过滤器, 在反序列化事件内容之前对 StoreEvent 进行判断.
+	 * @param filter 返回 false 的事件直接丢弃, 不会被解析
+	 */
+	public void filter(EventFilter filter) {
+		this.filters.add(filter);
+	}
+
+	/**
+	 * 判断读取到的事件是否需要处理: 没有对应 handler 或者被过滤器拒绝的事件不再解析.
+	 * @param event 从存储中读取的事件
+	 * @return true 需要解析并分发
+	 */
+	protected boolean accept(StoreEvent event) {
+		if (!this.read.isKnown(event.getType()) || this.read.handlersFor(event.getType()).isEmpty()) {
+			return false;
+		}
+		for (EventFilter filter : filters) {
+			if (!filter.accept(event)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 解析从存储中读取的事件并交给 handler 处理.
+	 * @param eventBus run 方法传入的 event bus
+	 * @param event 从存储中读取的事件
+	 */
+	protected void dispatch(EventBus eventBus, StoreEvent event) {
+		if (!accept(event)) {
+			metrics.dropped(this.read.isKnown(event.getType()) ? event.getType() : EventBusMetrics.UNKNOWN_TYPE);
+			return;
+		}
+		ReadEvent readEvent;
+		try {
+			readEvent = new ReadEvent(event.getType(), event.getEvent());
+		} catch (ClassNotFoundException e) {
+			metrics.dropped(EventBusMetrics.UNKNOWN_TYPE);
+			return;
+		}
+
+		long published = event.getLongHeader(StoreEvent.HEADER_TIMESTAMP, -1);
+		metrics.consumed(event.getType(),
+				published > 0 ? Math.max(System.currentTimeMillis() - published, 0) * 1000 : -1);
+
+		String previous = CURRENT_TRACE.get();
+		CURRENT_TRACE.set(event.getHeader(StoreEvent.HEADER_TRACE_ID));
+		long start = System.nanoTime();
+		try {
+			eventBus.post(readEvent);
+		} finally {
+			metrics.dispatched(event.getType(), System.nanoTime() - start);
+			CURRENT_TRACE.set(previous);
+		}
+	}
+
 	private class GoogleEventBus {
 		private com.google.common.eventbus.EventBus eventBus;
 
@@ -76,19 +207,32 @@ public abstract class AbstractEventBus implements EventBus {
 
 	private class StoreEventBus {
 		public void post(Event event) {
-			eventBus.post(new StoreEvent(event));
+			eventBus.post(stamp(new StoreEvent(event)));
 		}
 
 		@Subscribe
 		public void handler(StoreEvent event) {
+			long start = System.nanoTime();
 			put(event);
+			metrics.stored(event.getType(), System.nanoTime() - start);
 		}
 	}
 
 	private class MonitorEventBus implements EventBus {
-		private Multimap<String, EventHandler> handlers;
+		/**
+		 * 缓存的事件类型上限, 类名来自存储, 不能让任意写入的类名撑大缓存.
+		 */
+		private static final int MAX_CACHED_TYPES = 1024;
+
+		private Multimap<Class<?>, EventHandler> handlers;
 		private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
+		/**
+		 * 事件类名 -> 该类型及其父类/接口上注册的全部 handler, 首次出现时展开并缓存, 本节点加载不了的类型为 absent.
+		 */
+		private final Cache<String, Optional<ImmutableList<EventHandler>>> dispatchCache = CacheBuilder.newBuilder()
+				.maximumSize(MAX_CACHED_TYPES).build();
+
 		public MonitorEventBus() {
 			this.handlers = HashMultimap.create();
 		}
@@ -115,22 +259,76 @@ public abstract class AbstractEventBus implements EventBus {
 		@Override
 		public void on(EventHandler handler) {
 			Method[] methods = handler.getClass().getMethods();
-			lock.readLock().lock();
+			lock.writeLock().lock();
 			try {
 				for (Method m : methods) {
-					if (m.getName().equals("on")) {
+					// 跳过泛型擦除生成的 on(Event) 桥接方法
+					if (m.getName().equals("on") && !m.isBridge()) {
 						Invokable invokable = Invokable.from(m);
 						ImmutableList<Parameter> parameters = invokable
 								.getParameters();
 						if (parameters.size() > 0) {
 							Parameter param = parameters.get(0);
-							String typeName = param.getType().getType()
-									.getTypeName();
-							this.handlers.put(typeName, handler);
+							this.handlers.put(param.getType().getRawType(), handler);
 							break;
 						}
 					}
 				}
+				this.dispatchCache.invalidateAll();
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		/**
+		 * 返回能处理该类型事件的 handler, 包括注册在父类和接口上的.
+		 * @param type 事件类名
+		 * @return handler 列表, 不会为 null
+		 */
+		ImmutableList<EventHandler> handlersFor(String type) {
+			return lookup(type).or(ImmutableList.<EventHandler>of());
+		}
+
+		/**
+		 * @param type 事件类名
+		 * @return true 类型不为空并且本节点可以加载
+		 */
+		boolean isKnown(String type) {
+			return type != null && lookup(type).isPresent();
+		}
+
+		private Optional<ImmutableList<EventHandler>> lookup(String type) {
+			Optional<ImmutableList<EventHandler>> typeHandlers = dispatchCache.getIfPresent(type);
+			if (typeHandlers != null) {
+				return typeHandlers;
+			}
+
+			Class<?> eventClass;
+			try {
+				// 类名来自存储, 只加载不初始化, 不执行远端指定类的静态代码块
+				eventClass = Class.forName(type, false, AbstractEventBus.class.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				// 本节点加载不了的类型也缓存, 之后同类型的事件不再走 Class.forName 和异常
+				typeHandlers = Optional.absent();
+				lock.readLock().lock();
+				try {
+					dispatchCache.asMap().putIfAbsent(type, typeHandlers);
+				} finally {
+					lock.readLock().unlock();
+				}
+				return typeHandlers;
+			}
+
+			lock.readLock().lock();
+			try {
+				ImmutableList.Builder<EventHandler> builder = ImmutableList.builder();
+				for (Class<?> clazz : TypeToken.of(eventClass).getTypes().rawTypes()) {
+					builder.addAll(handlers.get(clazz));
+				}
+				typeHandlers = Optional.of(builder.build());
+				// 在读锁内写缓存, 避免与 on() 的清空交错留下过期的列表
+				dispatchCache.asMap().putIfAbsent(type, typeHandlers);
+				return typeHandlers;
 			} finally {
 				lock.readLock().unlock();
 			}
@@ -138,15 +336,15 @@ public abstract class AbstractEventBus implements EventBus {
 
 		@Subscribe
 		public void readHandler(ReadEvent event) {
-			if (handlers.containsKey(event.getType())) {
-				Collection<EventHandler> typeHandlers = handlers.get(event.getType());
-				for (EventHandler h : typeHandlers) {
-					lock.readLock().lock();
-					try {
-						h.on(event.getEvent());
-					} finally {
-						lock.readLock().unlock();
-					}
+			for (EventHandler h : handlersFor(event.getType())) {
+				long start = System.nanoTime();
+				try {
+					h.on(event.getEvent());
+				} catch (RuntimeException e) {
+					metrics.handlerFailed(event.getType(), h.getClass().getName(), e);
+					LOG.error("handler " + h.getClass().getName() + " failed on event " + event.getType(), e);
+				} finally {
+					metrics.handled(event.getType(), h.getClass().getName(), System.nanoTime() - start);
 				}
 			}
 		}
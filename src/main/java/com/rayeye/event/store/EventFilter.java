@@ -0,0 +1,14 @@
+package com.rayeye.event.store;
+
+/**
+ * 订阅过滤器, 只能依据 StoreEvent 的 id, type 等信息判断, 此时事件内容还没有被解析.
+ */
+public interface EventFilter {
+
+	/**
+	 * @param event 从存储中读取, 尚未反序列化的事件
+	 * @return false 则丢弃该事件
+	 */
+	public boolean accept(StoreEvent event);
+
+}
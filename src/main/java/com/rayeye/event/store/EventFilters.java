@@ -0,0 +1,45 @@
+package com.rayeye.event.store;
+
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import com.rayeye.event.Event;
+
+/**
+ * 常用的 {@link EventFilter}.
+ */
+public class EventFilters {
+
+	private EventFilters() {
+	}
+
+	/**
+	 * 只接收指定类型的事件 (按类名精确匹配).
+	 * @param types 事件类型
+	 * @return filter
+	 */
+	@SafeVarargs
+	public static EventFilter types(Class<? extends Event>... types) {
+		ImmutableSet.Builder<String> names = ImmutableSet.builder();
+		for (Class<? extends Event> type : types) {
+			names.add(type.getName());
+		}
+		return typeNames(names.build());
+	}
+
+	/**
+	 * 只接收指定类名的事件.
+	 * @param typeNames 事件类名
+	 * @return filter
+	 */
+	public static EventFilter typeNames(final Set<String> typeNames) {
+		final Set<String> names = ImmutableSet.copyOf(typeNames);
+		return new EventFilter() {
+			@Override
+			public boolean accept(StoreEvent event) {
+				return names.contains(event.getType());
+			}
+		};
+	}
+
+}
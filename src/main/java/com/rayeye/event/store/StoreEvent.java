@@ -1,13 +1,38 @@
 package com.rayeye.event.store;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.annotation.JSONField;
 import com.rayeye.event.Event;
 
 public class StoreEvent implements Event {
 
+	/**
+	 * 发布时间, System.currentTimeMillis().
+	 */
+	public static final String HEADER_TIMESTAMP = "timestamp";
+
+	/**
+	 * 发布事件的节点.
+	 */
+	public static final String HEADER_NODE = "node";
+
+	/**
+	 * 发布节点内递增的序号.
+	 */
+	public static final String HEADER_SEQUENCE = "sequence";
+
+	/**
+	 * 调用链 id, handler 中发布的事件沿用当前事件的 trace id.
+	 */
+	public static final String HEADER_TRACE_ID = "traceId";
+
 	private String id;
 	private String value;
 	private String type;
+	private Map<String, String> headers;
 
 	public StoreEvent(String id, String event, String type) {
 		this.id = id;
@@ -23,6 +48,7 @@ public class StoreEvent implements Event {
 				.getName());
 	}
 
+	@JSONField(serialize = false)
 	public Event getEvent() throws ClassNotFoundException {
 		return (Event) JSON.parseObject(this.getValue(),
 				Class.forName(getType()));
@@ -40,6 +66,32 @@ public class StoreEvent implements Event {
 		return type;
 	}
 
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	public String getHeader(String name) {
+		return headers == null ? null : headers.get(name);
+	}
+
+	/**
+	 * 读取 long 类型的 header.
+	 * @param name header 名
+	 * @param defaultValue 不存在或格式错误时返回的值
+	 * @return header 值
+	 */
+	public long getLongHeader(String name, long defaultValue) {
+		String header = getHeader(name);
+		if (header == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(header);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
 	public void setId(String id) {
 		this.id = id;
 	}
@@ -52,4 +104,16 @@ public class StoreEvent implements Event {
 		this.type = type;
 	}
 
+	public void setHeaders(Map<String, String> headers) {
+		this.headers = headers;
+	}
+
+	public StoreEvent setHeader(String name, String value) {
+		if (headers == null) {
+			headers = new HashMap<String, String>();
+		}
+		headers.put(name, value);
+		return this;
+	}
+
 }
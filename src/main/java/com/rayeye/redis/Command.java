@@ -28,6 +28,18 @@ public interface Command {
 	 */
 	<T> T get(String key, Type type , int seconds);
 	
+	/**
+	 * 删除 key
+	 * @param key
+	 */
+	void delete(String key);
+	
+	/**
+	 * 一次请求删除多个 key
+	 * @param keys 为空时不发请求
+	 */
+	void delete(Collection<String> keys);
+	
 	
 	/**
 	 * 入队  入堆
@@ -78,4 +90,21 @@ public interface Command {
 	 * @return
 	 */
 	<T> T rpop(String key, Type type);
+	
+	/**
+	 * 队列长度
+	 * 
+	 * @param key
+	 * @return
+	 */
+	long length(String key);
+	
+	/**
+	 * 查看队列中下一个会被 pop 出来的元素, 不出队
+	 * 
+	 * @param key
+	 * @param type
+	 * @return
+	 */
+	<T> T peek(String key, Type type);
 }
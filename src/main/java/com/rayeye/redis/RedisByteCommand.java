@@ -24,9 +24,8 @@ public class RedisByteCommand implements Command {
 
 	@Override
 	public void set(String key, Object value, int seconds) {
-		byte[] byteKey = stringToBytes(key);
-		jedis.set(byteKey , objectToBytes(value));
-		jedis.expire(byteKey, seconds);
+		// SETEX 一次写入值和过期时间, 不会留下没有过期时间的 key
+		jedis.setex(stringToBytes(key), seconds, objectToBytes(value));
 	}
 	
 	@Override
@@ -50,6 +49,24 @@ public class RedisByteCommand implements Command {
 	}
 	
 	
+	@Override
+	public void delete(String key) {
+		jedis.del(stringToBytes(key));
+	}
+	
+	@Override
+	public void delete(Collection<String> keys) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		byte[][] byteKeys = new byte[keys.size()][];
+		int i = 0;
+		for (String key : keys) {
+			byteKeys[i++] = stringToBytes(key);
+		}
+		jedis.del(byteKeys);
+	}
+	
 	@Override
 	public <T> long push(String key, Collection<T> values) {
 		long result = 0;
@@ -88,6 +105,17 @@ public class RedisByteCommand implements Command {
 		return parse(bytes, type);
 	}
 	
+	@Override
+	public long length(String key) {
+		return jedis.llen(stringToBytes(key));
+	}
+	
+	@Override
+	public <T> T peek(String key, Type type) {
+		byte[] bytes = jedis.lindex(stringToBytes(key), -1);
+		return parse(bytes, type);
+	}
+	
 
 	private byte[] stringToBytes(String str) {
 		return str.getBytes();
@@ -0,0 +1,192 @@
+package com.rayeye.redis;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * 线程安全的 {@link Command}: 每次调用从连接池借一个连接, 以 {@link RedisByteCommand} 执行后归还.
+ * 连接池由调用方创建和关闭.
+ */
+public class RedisPoolCommand implements Command {
+
+	/**
+	 * 在借来的连接上执行的一次调用.
+	 */
+	private interface Call<T> {
+		T call(Command command);
+	}
+
+	private final JedisPool pool;
+
+	public RedisPoolCommand(JedisPool pool) {
+		this.pool = pool;
+	}
+
+	private <T> T execute(Call<T> call) {
+		Jedis jedis = pool.getResource();
+		try {
+			return call.call(new RedisByteCommand(jedis));
+		} finally {
+			// 连接出错时 close 把它作为坏连接归还, 由连接池销毁
+			jedis.close();
+		}
+	}
+
+	@Override
+	public void set(final String key, final Object value) {
+		execute(new Call<Void>() {
+			@Override
+			public Void call(Command command) {
+				command.set(key, value);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public Map<String, Object> get(final String key) {
+		return execute(new Call<Map<String, Object>>() {
+			@Override
+			public Map<String, Object> call(Command command) {
+				return command.get(key);
+			}
+		});
+	}
+
+	@Override
+	public <T> T get(final String key, final Type type) {
+		return execute(new Call<T>() {
+			@Override
+			public T call(Command command) {
+				return command.get(key, type);
+			}
+		});
+	}
+
+	@Override
+	public void set(final String key, final Object value, final int seconds) {
+		execute(new Call<Void>() {
+			@Override
+			public Void call(Command command) {
+				command.set(key, value, seconds);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public <T> T get(final String key, final Type type, final int seconds) {
+		return execute(new Call<T>() {
+			@Override
+			public T call(Command command) {
+				return command.get(key, type, seconds);
+			}
+		});
+	}
+
+	@Override
+	public void delete(final String key) {
+		execute(new Call<Void>() {
+			@Override
+			public Void call(Command command) {
+				command.delete(key);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void delete(final Collection<String> keys) {
+		execute(new Call<Void>() {
+			@Override
+			public Void call(Command command) {
+				command.delete(keys);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public <T> long push(final String key, final Collection<T> values) {
+		return execute(new Call<Long>() {
+			@Override
+			public Long call(Command command) {
+				return command.push(key, values);
+			}
+		});
+	}
+
+	@Override
+	public long push(final String key, final Object value) {
+		return execute(new Call<Long>() {
+			@Override
+			public Long call(Command command) {
+				return command.push(key, value);
+			}
+		});
+	}
+
+	@Override
+	public Map<String, Object> pop(final String key) {
+		return execute(new Call<Map<String, Object>>() {
+			@Override
+			public Map<String, Object> call(Command command) {
+				return command.pop(key);
+			}
+		});
+	}
+
+	@Override
+	public <T> T pop(final String key, final Type type) {
+		return execute(new Call<T>() {
+			@Override
+			public T call(Command command) {
+				return command.pop(key, type);
+			}
+		});
+	}
+
+	@Override
+	public Map<String, Object> rpop(final String key) {
+		return execute(new Call<Map<String, Object>>() {
+			@Override
+			public Map<String, Object> call(Command command) {
+				return command.rpop(key);
+			}
+		});
+	}
+
+	@Override
+	public <T> T rpop(final String key, final Type type) {
+		return execute(new Call<T>() {
+			@Override
+			public T call(Command command) {
+				return command.rpop(key, type);
+			}
+		});
+	}
+
+	@Override
+	public long length(final String key) {
+		return execute(new Call<Long>() {
+			@Override
+			public Long call(Command command) {
+				return command.length(key);
+			}
+		});
+	}
+
+	@Override
+	public <T> T peek(final String key, final Type type) {
+		return execute(new Call<T>() {
+			@Override
+			public T call(Command command) {
+				return command.peek(key, type);
+			}
+		});
+	}
+}
@@ -1,13 +1,36 @@
 package com.rayeye.repo;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import com.rayeye.dbutils.Cursor;
+import com.rayeye.dbutils.Page;
+
 public interface Repository<T> {
 
+	/**
+	 * 插入记录. 数据库生成的主键会写回 @Id 字段.
+	 * @param entity 要插入的记录
+	 * @return 主键, 实体没有 @Id 时为 null
+	 */
 	Serializable insert(T entity);
 	
+	/**
+	 * 批量插入, 多行 VALUES 按最大包大小分段, 在一个事务中执行. 生成的主键会写回 @Id 字段.
+	 * @param entities 要插入的记录
+	 * @return 插入的记录数
+	 */
+	int insertAll(Collection<T> entities);
+	
+	/**
+	 * 批量插入并返回数据库生成的主键, 顺序与 entities 一致.
+	 * @param entities 要插入的记录
+	 * @return 生成的主键
+	 */
+	List<Serializable> insertAllReturningKeys(Collection<T> entities);
+	
 	void insertAttrs(T entity , String ... includeAttrs);
 	
 	void insertExcludeAttrs(T entity , String ... excludeAttrs);
@@ -17,11 +40,32 @@ public interface Repository<T> {
 	void updateAttrs(T entity , String ... includeAttrs);
 	
 	void updateExcludeAttrs(T entity , String ... excludeAttrs);
+	
+	/**
+	 * 按 id 批量更新, 同一条 UPDATE 语句以 JDBC batch 执行, 在一个事务中执行.
+	 * @param entities 要更新的记录
+	 * @return 更新的记录数
+	 */
+	int updateAll(Collection<T> entities);
 
 	void remove(T entity);
 	
 	void removeById(java.io.Serializable pk);
 	
+	/**
+	 * 批量删除, 按 id 合并为分段的 DELETE ... WHERE id IN (...), 在一个事务中执行.
+	 * @param entities 要删除的记录
+	 * @return 删除的记录数
+	 */
+	int removeAll(Collection<T> entities);
+	
+	/**
+	 * 按 id 批量删除, 合并为分段的 DELETE ... WHERE id IN (...), 在一个事务中执行.
+	 * @param pks 要删除的 id
+	 * @return 删除的记录数
+	 */
+	int removeAllById(Collection<?> pks);
+	
 	void removeByAttrs(T entity , String ... attrs );
 	
 	T findById(java.io.Serializable pk);
@@ -38,6 +82,20 @@ public interface Repository<T> {
 	
 	List<T> findAll();
 	
+	/**
+	 * 流式读取全部记录, 逐行映射, 内存占用与记录数无关. 使用完毕必须关闭 cursor.
+	 * @return 打开的 cursor
+	 */
+	Cursor<T> streamAll();
+	
+	/**
+	 * 按 id 做 keyset 分页读取.
+	 * @param after 上一页的 {@link Page#getNext()}, null 表示第一页
+	 * @param size 每页记录数
+	 * @return 当前页
+	 */
+	Page<T> findPage(Object after, int size);
+	
 	List<T> findAllincludeAttrs(String ... includeAttrs);
 	
 	List<T> findAllExcludeAttrs(String ... excludeAttrs);
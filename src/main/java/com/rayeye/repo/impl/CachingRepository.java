@@ -0,0 +1,475 @@
+package com.rayeye.repo.impl;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.fastjson.JSON;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.rayeye.dbutils.Cursor;
+import com.rayeye.dbutils.EntityMetadata;
+import com.rayeye.dbutils.Page;
+import com.rayeye.dbutils.QueryRunner;
+import com.rayeye.repo.Repository;
+
+/**
+ * 带二级实体缓存的 Repository 装饰器 (read-through).
+ * <p>
+ * {@link #findById(Serializable)} 先查本地缓存, 未命中时委托查询并缓存结果, 查不到的记录不缓存.
+ * 缓存按条数上限 LRU 淘汰, 写入后超过存活时间失效.
+ * 经由本 repository 的 update / remove 系列操作会使对应 id 的缓存失效, 按属性删除时清空全部缓存;
+ * 其它途径修改的数据只能等待过期, 或调用 {@link #invalidate(Serializable)}. 主键为 null 的实体不会被缓存, 它的修改被忽略.
+ * <p>
+ * 在 {@link QueryRunner#inTransaction} 的事务中修改时, 先使本地缓存失效, 提交后再执行一次完整的失效
+ * ({@link #changedIds(Collection)} 等), 提交前并发读取放回缓存的旧数据在提交后被清除, 回滚时不再失效.
+ * 事务所在的 QueryRunner 默认取 {@link DbutilsRepository#getDb()}, 其它 delegate 用 {@link #setQueryRunner(QueryRunner)} 指定.
+ * <p>
+ * 默认缓存 fastjson 序列化的字节, 每次读取反序列化出新的实体, 调用方可以修改返回的实体.
+ * {@link #setSerialized(boolean) setSerialized(false)} 后改为缓存实体对象本身, 省去反序列化,
+ * 但所有调用方拿到同一个实例, 不能修改它.
+ */
+public class CachingRepository<T> implements Repository<T> {
+
+	private final Repository<T> delegate;
+	private final Class<T> entityClass;
+	private final Cache<String, Object> cache;
+	/** 每次失效加一, 查询期间发生过失效的结果不放入缓存, 避免旧数据覆盖 */
+	private final AtomicLong invalidations = new AtomicLong();
+
+	private volatile boolean serialized = true;
+	private volatile QueryRunner queryRunner;
+
+	/**
+	 * @param delegate 实际执行读写的 repository
+	 * @param entityClass 实体类型, 用于取 id 和反序列化
+	 * @param maximumSize 最多缓存的记录数
+	 * @param expireAfterWrite 缓存写入后的存活时间
+	 * @param unit 时间单位
+	 */
+	public CachingRepository(Repository<T> delegate, Class<T> entityClass, long maximumSize,
+			long expireAfterWrite, TimeUnit unit) {
+		this.delegate = delegate;
+		this.entityClass = entityClass;
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWrite, unit)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * @param serialized 是否以序列化字节缓存实体, 默认 true; 已缓存的值在失效前照常返回
+	 * @return this
+	 */
+	public CachingRepository<T> setSerialized(boolean serialized) {
+		this.serialized = serialized;
+		return this;
+	}
+
+	/**
+	 * @param queryRunner delegate 写入所用的 QueryRunner, 在它的事务中修改时提交后再失效
+	 * @return this
+	 */
+	public CachingRepository<T> setQueryRunner(QueryRunner queryRunner) {
+		this.queryRunner = queryRunner;
+		return this;
+	}
+
+	/**
+	 * @return 设置的 QueryRunner, 没有设置时取 {@link DbutilsRepository} delegate 的, 都没有时为 null
+	 */
+	protected QueryRunner getQueryRunner() {
+		if (queryRunner != null) {
+			return queryRunner;
+		}
+		return delegate instanceof DbutilsRepository ? ((DbutilsRepository<?>) delegate).getDb() : null;
+	}
+
+	protected Repository<T> getDelegate() {
+		return delegate;
+	}
+
+	protected Class<T> getEntityClass() {
+		return entityClass;
+	}
+
+	/**
+	 * @return 命中率等缓存统计
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	/**
+	 * @return 当前缓存的记录数
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * 使一条记录的缓存失效.
+	 * @param pk 主键, null 时忽略
+	 */
+	public void invalidate(Serializable pk) {
+		if (pk == null) {
+			return;
+		}
+		invalidations.incrementAndGet();
+		cache.invalidate(cacheKey(pk));
+	}
+
+	/**
+	 * 清空缓存.
+	 */
+	public void invalidateAll() {
+		invalidations.incrementAndGet();
+		cache.invalidateAll();
+	}
+
+	/**
+	 * 经由本 repository 修改或删除了一条记录, 默认使本地缓存失效.
+	 * @param pk 主键, 不为 null
+	 */
+	protected void changed(Serializable pk) {
+		invalidate(pk);
+	}
+
+	/**
+	 * 经由本 repository 修改或删除了多条记录, 默认逐条调用 {@link #changed(Serializable)}.
+	 * @param pks 主键, 不含 null
+	 */
+	protected void changedIds(Collection<Serializable> pks) {
+		for (Serializable pk : pks) {
+			changed(pk);
+		}
+	}
+
+	/**
+	 * 经由本 repository 修改了不确定的多条记录, 默认清空本地缓存.
+	 */
+	protected void changedAll() {
+		invalidateAll();
+	}
+
+	/**
+	 * 本地缓存未命中时读取记录, 默认委托 findById.
+	 * @param pk 主键
+	 * @return 记录, 不存在时为 null
+	 */
+	protected T load(Serializable pk) {
+		return delegate.findById(pk);
+	}
+
+	/**
+	 * 本地缓存和失效通知共用的主键形式, 主键的字符串形式, Integer 1 与 Long 1 视为同一主键.
+	 * @param pk 主键, 不为 null
+	 * @return 缓存中的 key
+	 */
+	protected static String cacheKey(Object pk) {
+		return pk.toString();
+	}
+
+	private void changedEntity(T entity) {
+		EntityMetadata.Property id = EntityMetadata.of(entityClass).getIdProperty();
+		if (id == null) {
+			changedAllAfterCommit();
+			return;
+		}
+		try {
+			changedId(id.getAccessor().get(entity));
+		} catch (SQLException e) {
+			changedAllAfterCommit();
+		}
+	}
+
+	/**
+	 * 主键为 null 的记录没有缓存, 不用失效, 其余同 {@link #changedNullableIds(Iterable)}.
+	 * @param pk 主键, 可以为 null
+	 */
+	protected void changedId(Object pk) {
+		changedNullableIds(Collections.singletonList(pk));
+	}
+
+	private void changedEntities(Collection<T> entities) {
+		EntityMetadata.Property id = EntityMetadata.of(entityClass).getIdProperty();
+		if (id == null) {
+			changedAllAfterCommit();
+			return;
+		}
+		List<Object> pks = new ArrayList<Object>(entities.size());
+		try {
+			for (T entity : entities) {
+				pks.add(id.getAccessor().get(entity));
+			}
+		} catch (SQLException e) {
+			changedAllAfterCommit();
+			return;
+		}
+		changedNullableIds(pks);
+	}
+
+	/**
+	 * 跳过 null 后交给 {@link #changedIds(Collection)}, 在事务中时提交后再交给它.
+	 * @param pks 主键, 可以含 null
+	 */
+	protected void changedNullableIds(Iterable<?> pks) {
+		final List<Serializable> ids = new ArrayList<Serializable>();
+		for (Object pk : pks) {
+			if (pk != null) {
+				ids.add((Serializable) pk);
+			}
+		}
+		if (ids.isEmpty()) {
+			return;
+		}
+		afterCommit(ids, new Runnable() {
+			@Override
+			public void run() {
+				changedIds(ids);
+			}
+		});
+	}
+
+	/**
+	 * 同 {@link #changedAll()}, 在事务中时提交后再执行.
+	 */
+	protected void changedAllAfterCommit() {
+		afterCommit(null, new Runnable() {
+			@Override
+			public void run() {
+				changedAll();
+			}
+		});
+	}
+
+	/**
+	 * 不在事务中时立即执行失效; 在事务中时先使本地缓存失效, 提交后再执行.
+	 * @param pks 本地先失效的主键, null 表示全部
+	 * @param invalidation 完整的失效
+	 */
+	private void afterCommit(List<Serializable> pks, Runnable invalidation) {
+		QueryRunner runner = getQueryRunner();
+		if (runner == null || !runner.isInTransaction()) {
+			invalidation.run();
+			return;
+		}
+		if (pks == null) {
+			invalidateAll();
+		} else {
+			for (Serializable pk : pks) {
+				invalidate(pk);
+			}
+		}
+		runner.afterCommit(invalidation);
+	}
+
+	@SuppressWarnings("unchecked")
+	private T fromCache(Object value) {
+		if (value instanceof byte[]) {
+			return JSON.parseObject((byte[]) value, entityClass);
+		}
+		return (T) value;
+	}
+
+	@Override
+	public T findById(Serializable pk) {
+		String key = cacheKey(pk);
+		Object value = cache.getIfPresent(key);
+		if (value != null) {
+			return fromCache(value);
+		}
+
+		long version = invalidations.get();
+		T entity = load(pk);
+		if (entity != null && invalidations.get() == version) {
+			cache.put(key, serialized ? JSON.toJSONBytes(entity) : entity);
+		}
+		return entity;
+	}
+
+	@Override
+	public Serializable insert(T entity) {
+		return delegate.insert(entity);
+	}
+
+	@Override
+	public int insertAll(Collection<T> entities) {
+		return delegate.insertAll(entities);
+	}
+
+	@Override
+	public List<Serializable> insertAllReturningKeys(Collection<T> entities) {
+		return delegate.insertAllReturningKeys(entities);
+	}
+
+	@Override
+	public void insertAttrs(T entity, String... includeAttrs) {
+		delegate.insertAttrs(entity, includeAttrs);
+	}
+
+	@Override
+	public void insertExcludeAttrs(T entity, String... excludeAttrs) {
+		delegate.insertExcludeAttrs(entity, excludeAttrs);
+	}
+
+	@Override
+	public void update(T entity) {
+		try {
+			delegate.update(entity);
+		} finally {
+			changedEntity(entity);
+		}
+	}
+
+	@Override
+	public void updateAttrs(T entity, String... includeAttrs) {
+		try {
+			delegate.updateAttrs(entity, includeAttrs);
+		} finally {
+			changedEntity(entity);
+		}
+	}
+
+	@Override
+	public void updateExcludeAttrs(T entity, String... excludeAttrs) {
+		try {
+			delegate.updateExcludeAttrs(entity, excludeAttrs);
+		} finally {
+			changedEntity(entity);
+		}
+	}
+
+	@Override
+	public int updateAll(Collection<T> entities) {
+		try {
+			return delegate.updateAll(entities);
+		} finally {
+			changedEntities(entities);
+		}
+	}
+
+	@Override
+	public void remove(T entity) {
+		try {
+			delegate.remove(entity);
+		} finally {
+			changedEntity(entity);
+		}
+	}
+
+	@Override
+	public void removeById(Serializable pk) {
+		try {
+			delegate.removeById(pk);
+		} finally {
+			changedId(pk);
+		}
+	}
+
+	@Override
+	public int removeAll(Collection<T> entities) {
+		try {
+			return delegate.removeAll(entities);
+		} finally {
+			changedEntities(entities);
+		}
+	}
+
+	@Override
+	public int removeAllById(Collection<?> pks) {
+		try {
+			return delegate.removeAllById(pks);
+		} finally {
+			changedNullableIds(pks);
+		}
+	}
+
+	@Override
+	public void removeByAttrs(T entity, String... attrs) {
+		try {
+			delegate.removeByAttrs(entity, attrs);
+		} finally {
+			// 不知道删除了哪些 id
+			changedAllAfterCommit();
+		}
+	}
+
+	@Override
+	public T findByIdIncludeAttrs(Serializable pk, String... includeAttrs) {
+		return delegate.findByIdIncludeAttrs(pk, includeAttrs);
+	}
+
+	@Override
+	public T findByIdExcludeAttrs(Serializable pk, String... excludeAttrs) {
+		return delegate.findByIdExcludeAttrs(pk, excludeAttrs);
+	}
+
+	@Override
+	public List<T> find(Map<String, Object> params) {
+		return delegate.find(params);
+	}
+
+	@Override
+	public List<T> findIncludeAttrs(Map<String, Object> params, String... includeAttrs) {
+		return delegate.findIncludeAttrs(params, includeAttrs);
+	}
+
+	@Override
+	public List<T> findExcludeAttrs(Map<String, Object> params, String... excludeAttrs) {
+		return delegate.findExcludeAttrs(params, excludeAttrs);
+	}
+
+	@Override
+	public List<T> findAll() {
+		return delegate.findAll();
+	}
+
+	@Override
+	public Cursor<T> streamAll() {
+		return delegate.streamAll();
+	}
+
+	@Override
+	public Page<T> findPage(Object after, int size) {
+		return delegate.findPage(after, size);
+	}
+
+	@Override
+	public List<T> findAllincludeAttrs(String... includeAttrs) {
+		return delegate.findAllincludeAttrs(includeAttrs);
+	}
+
+	@Override
+	public List<T> findAllExcludeAttrs(String... excludeAttrs) {
+		return delegate.findAllExcludeAttrs(excludeAttrs);
+	}
+
+	@Override
+	public List<T> findSql(String sql, Object... params) {
+		return delegate.findSql(sql, params);
+	}
+
+	@Override
+	public List<T> findSqlForMap(String sql, Map<String, Object> params) {
+		return delegate.findSqlForMap(sql, params);
+	}
+
+	@Override
+	public T findUniqueResult(String sql, Object... params) {
+		return delegate.findUniqueResult(sql, params);
+	}
+
+	@Override
+	public T findUniqueResult(String sql, Map<String, Object> params) {
+		return delegate.findUniqueResult(sql, params);
+	}
+}
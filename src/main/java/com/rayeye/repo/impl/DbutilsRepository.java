@@ -1,17 +1,18 @@
 package com.rayeye.repo.impl;
 
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.beanutils.PropertyUtils;
-
-import com.rayeye.dbutils.EntityUtils;
+import com.rayeye.dbutils.Cursor;
+import com.rayeye.dbutils.EntityMetadata;
+import com.rayeye.dbutils.Page;
 import com.rayeye.dbutils.QueryExecutor;
 import com.rayeye.dbutils.QueryRunner;
 import com.rayeye.dbutils.handlers.BeanHandler;
@@ -29,10 +30,6 @@ public abstract class DbutilsRepository<T> implements Repository<T> {
 		return new RepositoryException(message);
 	}
 	
-	private Object getPropertyValue(T entity , String name) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException{
-		return PropertyUtils.getProperty(entity , name);
-	}
-	
 	public QueryRunner getDb() {
 		return db;
 	}
@@ -45,7 +42,31 @@ public abstract class DbutilsRepository<T> implements Repository<T> {
 	public Serializable insert(T entity) {
 		try {
 			getDb().insert(getEntityClass(), entity).insert();
-			return null;
+			// the generated key, if any, has been written into the id
+			EntityMetadata.Property id = EntityMetadata.of(getEntityClass()).getIdProperty();
+			return id == null ? null : (Serializable) id.getAccessor().get(entity);
+		} catch (SQLException e) {
+			throw newException(e.getMessage());
+		}
+	}
+	
+	@Override
+	public int insertAll(Collection<T> entities) {
+		try {
+			return getDb().insertAll(getEntityClass(), entities).insert();
+		} catch (SQLException e) {
+			throw newException(e.getMessage());
+		}
+	}
+	
+	@Override
+	public List<Serializable> insertAllReturningKeys(Collection<T> entities) {
+		try {
+			List<Serializable> keys = new ArrayList<Serializable>(entities.size());
+			for (Object key : getDb().insertAll(getEntityClass(), entities).insertReturningKeys()) {
+				keys.add((Serializable) key);
+			}
+			return keys;
 		} catch (SQLException e) {
 			throw newException(e.getMessage());
 		}
@@ -102,6 +123,15 @@ public abstract class DbutilsRepository<T> implements Repository<T> {
 	}
 	
 
+	@Override
+	public int updateAll(Collection<T> entities) {
+		try {
+			return getDb().updateAll(getEntityClass(), entities).update();
+		} catch (Exception e) {
+			throw newException(e.getMessage());
+		}
+	}
+
 	@Override
 	public void remove(T entity) {
 		try {
@@ -114,13 +144,39 @@ public abstract class DbutilsRepository<T> implements Repository<T> {
 	@Override
 	public void removeById(Serializable pk) {
 		try {
-			String id = EntityUtils.getIdColumnName(getEntityClass());
+			String id = EntityMetadata.of(getEntityClass()).getIdName();
 			getDb().delete(getEntityClass()).bind(id , pk ).delete();
 		} catch (Exception e) {
 			throw newException(e.getMessage());
 		}
 	}
 	
+	@Override
+	public int removeAll(Collection<T> entities) {
+		try {
+			EntityMetadata.Property id = EntityMetadata.of(getEntityClass()).getIdProperty();
+			if (id == null) {
+				throw newException(getEntityClass().getName() + " does not have an id column");
+			}
+			List<Object> pks = new ArrayList<Object>(entities.size());
+			for (T entity : entities) {
+				pks.add(id.getAccessor().get(entity));
+			}
+			return getDb().deleteAll(getEntityClass(), pks).delete();
+		} catch (SQLException e) {
+			throw newException(e.getMessage());
+		}
+	}
+	
+	@Override
+	public int removeAllById(Collection<?> pks) {
+		try {
+			return getDb().deleteAll(getEntityClass(), pks).delete();
+		} catch (Exception e) {
+			throw newException(e.getMessage());
+		}
+	}
+	
 	@Override
 	public void removeByAttrs(T entity, String... attrs) {
 		try {
@@ -133,7 +189,7 @@ public abstract class DbutilsRepository<T> implements Repository<T> {
 	@Override
 	public T findById(Serializable pk) {
 		try {
-			String id = EntityUtils.getIdColumnName(getEntityClass());
+			String id = EntityMetadata.of(getEntityClass()).getIdName();
 			return getDb().query(getEntityClass()).bind(id , pk).uniqueResult();
 		} catch (SQLException e) {
 			throw newException(e.getMessage());
@@ -143,7 +199,7 @@ public abstract class DbutilsRepository<T> implements Repository<T> {
 	@Override
 	public T findByIdIncludeAttrs(Serializable pk, String... includeAttrs) {
 		try {
-			String id = EntityUtils.getIdColumnName(getEntityClass());
+			String id = EntityMetadata.of(getEntityClass()).getIdName();
 			return getDb().query(getEntityClass()).include(includeAttrs).bind(id , pk).uniqueResult();
 		} catch (SQLException e) {
 			throw newException(e.getMessage());
@@ -153,7 +209,7 @@ public abstract class DbutilsRepository<T> implements Repository<T> {
 	@Override
 	public T findByIdExcludeAttrs(Serializable pk, String... excludeAttrs) {
 		try {
-			String id = EntityUtils.getIdColumnName(getEntityClass());
+			String id = EntityMetadata.of(getEntityClass()).getIdName();
 			return getDb().query(getEntityClass())
 				.exclude(excludeAttrs)
 				.bind(id , pk)
@@ -201,6 +257,24 @@ public abstract class DbutilsRepository<T> implements Repository<T> {
 		}
 	}
 	
+	@Override
+	public Cursor<T> streamAll() {
+		try {
+			return getDb().query(getEntityClass()).stream();
+		} catch (SQLException e) {
+			throw newException(e.getMessage());
+		}
+	}
+	
+	@Override
+	public Page<T> findPage(Object after, int size) {
+		try {
+			return getDb().query(getEntityClass()).after(after).page(size);
+		} catch (SQLException e) {
+			throw newException(e.getMessage());
+		}
+	}
+	
 	@Override
 	public List<T> findAllincludeAttrs(String... includeAttrs) {
 		try {
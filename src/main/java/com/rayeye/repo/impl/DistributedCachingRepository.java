@@ -0,0 +1,198 @@
+package com.rayeye.repo.impl;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rayeye.dbutils.EntityMetadata;
+import com.rayeye.event.EventBus;
+import com.rayeye.event.EventHandler;
+import com.rayeye.event.redis.RedisBroadcastEventBus;
+import com.rayeye.redis.Command;
+import com.rayeye.redis.RedisPoolCommand;
+import com.rayeye.repo.Repository;
+import com.rayeye.repo.RepositoryException;
+
+/**
+ * 两级实体缓存的 Repository 装饰器: 本地缓存 (near cache) + redis.
+ * <p>
+ * {@link #findById(Serializable)} 依次查本地缓存, redis 和数据库 (cache-aside),
+ * 从数据库读到的记录以 {@link Command#set(String, Object, int)} 写入 redis 并设置过期时间.
+ * 经由本 repository 修改记录后删除 redis 中的 key, 并通过 {@link EventBus} 发布
+ * {@link EntityChangedEvent}, 其它节点收到后使本地缓存失效. 批量修改用一次 DEL 删除全部 key,
+ * 发布一个包含全部主键的通知. 在事务中修改时 DEL 和通知在提交后执行, 见 {@link CachingRepository}.
+ * <p>
+ * 通知要送到每个节点, event bus 应是广播的, 如 {@link RedisBroadcastEventBus};
+ * 队列式的 bus 每个通知只有一个节点收到. Command 会被多个线程同时调用, 应是线程安全的,
+ * 如 {@link RedisPoolCommand}.
+ * <p>
+ * redis 不可用时记录日志并直接读写数据库. 没有收到通知的节点最多读到本地缓存存活时间内的旧数据;
+ * 并发的读和写也可能把旧数据写回 redis, 同样以 redis 的过期时间为限.
+ */
+public class DistributedCachingRepository<T> extends CachingRepository<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DistributedCachingRepository.class);
+
+	private final Command command;
+	private final EventBus eventBus;
+	private final int redisSeconds;
+	private final String prefix;
+	private final String source = UUID.randomUUID().toString();
+
+	/**
+	 * @param delegate 实际执行读写的 repository
+	 * @param entityClass 实体类型
+	 * @param command redis 命令, 线程安全
+	 * @param eventBus 发布和接收失效通知, 广播到所有节点
+	 * @param maximumSize 本地最多缓存的记录数
+	 * @param nearExpire 本地缓存的存活时间, 应远小于 redisSeconds
+	 * @param unit 时间单位
+	 * @param redisSeconds redis 中缓存的过期秒数
+	 */
+	public DistributedCachingRepository(Repository<T> delegate, Class<T> entityClass, Command command,
+			EventBus eventBus, long maximumSize, long nearExpire, TimeUnit unit, int redisSeconds) {
+		super(delegate, entityClass, maximumSize, nearExpire, unit);
+		this.command = command;
+		this.eventBus = eventBus;
+		this.redisSeconds = redisSeconds;
+		this.prefix = "entity:" + entityClass.getName() + ":";
+		eventBus.on(new EventHandler<EntityChangedEvent>() {
+			@Override
+			public void on(EntityChangedEvent event) {
+				onChanged(event);
+			}
+		});
+	}
+
+	private void onChanged(EntityChangedEvent event) {
+		if (source.equals(event.getSource()) || !getEntityClass().getName().equals(event.getType())) {
+			return;
+		}
+		if (event.getKeys() == null) {
+			invalidateAll();
+			return;
+		}
+		for (String key : event.getKeys()) {
+			invalidate(key);
+		}
+	}
+
+	/**
+	 * @param pk 主键
+	 * @return redis 中的 key
+	 */
+	protected String redisKey(Serializable pk) {
+		return prefix + cacheKey(pk);
+	}
+
+	@Override
+	protected T load(Serializable pk) {
+		String key = redisKey(pk);
+		try {
+			T entity = command.get(key, getEntityClass());
+			if (entity != null) {
+				return entity;
+			}
+		} catch (RuntimeException e) {
+			LOG.warn("redis get " + key + " failed, reading from the database", e);
+		}
+
+		T entity = getDelegate().findById(pk);
+		if (entity != null) {
+			try {
+				command.set(key, entity, redisSeconds);
+			} catch (RuntimeException e) {
+				LOG.warn("redis set " + key + " failed", e);
+			}
+		}
+		return entity;
+	}
+
+	@Override
+	protected void changed(Serializable pk) {
+		changedIds(Collections.singletonList(pk));
+	}
+
+	@Override
+	protected void changedIds(Collection<Serializable> pks) {
+		List<String> keys = new ArrayList<String>(pks.size());
+		List<String> redisKeys = new ArrayList<String>(pks.size());
+		for (Serializable pk : pks) {
+			invalidate(pk);
+			keys.add(cacheKey(pk));
+			redisKeys.add(redisKey(pk));
+		}
+		try {
+			command.delete(redisKeys);
+		} catch (RuntimeException e) {
+			LOG.warn("redis delete of " + redisKeys.size() + " keys failed, they expire in " + redisSeconds + "s", e);
+		}
+		publish(keys);
+	}
+
+	@Override
+	protected void changedAll() {
+		super.changedAll();
+		publish(null);
+	}
+
+	private void publish(List<String> keys) {
+		try {
+			eventBus.post(new EntityChangedEvent(getEntityClass().getName(), keys, source));
+		} catch (RuntimeException e) {
+			LOG.warn("failed to publish the change of " + getEntityClass().getName() + " " + keys, e);
+		}
+	}
+
+	/**
+	 * redis 中的 key 无法按类型清除, 删除前先查出匹配记录的 id, 一并失效.
+	 */
+	@Override
+	public void removeByAttrs(T entity, String... attrs) {
+		EntityMetadata metadata = EntityMetadata.of(getEntityClass());
+		EntityMetadata.Property id = metadata.getIdProperty();
+		if (id == null) {
+			super.removeByAttrs(entity, attrs);
+			return;
+		}
+
+		List<T> removed;
+		try {
+			Map<String, Object> params = new HashMap<String, Object>();
+			for (String attr : attrs) {
+				EntityMetadata.Property property = metadata.getProperty(attr);
+				if (property == null) {
+					throw new RepositoryException(attr + " is not a property of " + getEntityClass().getName());
+				}
+				params.put(attr, property.getAccessor().get(entity));
+			}
+			removed = getDelegate().findIncludeAttrs(params, id.getName());
+		} catch (SQLException e) {
+			throw new RepositoryException(e.getMessage());
+		}
+
+		try {
+			getDelegate().removeByAttrs(entity, attrs);
+		} finally {
+			List<Object> pks = new ArrayList<Object>(removed.size());
+			try {
+				for (T row : removed) {
+					pks.add(id.getAccessor().get(row));
+				}
+				changedNullableIds(pks);
+			} catch (SQLException e) {
+				changedAllAfterCommit();
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.rayeye.repo.impl;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.rayeye.event.Event;
+
+/**
+ * 实体被修改或删除的通知, 由 {@link DistributedCachingRepository} 发布, 其它节点收到后使本地缓存失效.
+ * 一次批量修改的全部主键放在同一个通知中.
+ */
+public class EntityChangedEvent implements Event {
+
+	private String id;
+	private String type;
+	private List<String> keys;
+	private String source;
+
+	public EntityChangedEvent() {
+	}
+
+	/**
+	 * @param type 实体类名
+	 * @param keys {@link CachingRepository#cacheKey(Object)} 形式的主键, null 表示该类型的全部记录
+	 * @param source 发布通知的 repository 实例, 用于忽略自己发出的通知
+	 */
+	public EntityChangedEvent(String type, List<String> keys, String source) {
+		this.id = UUID.randomUUID().toString();
+		this.type = type;
+		this.keys = keys;
+		this.source = source;
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public List<String> getKeys() {
+		return keys;
+	}
+
+	public void setKeys(List<String> keys) {
+		this.keys = keys;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public void setSource(String source) {
+		this.source = source;
+	}
+}
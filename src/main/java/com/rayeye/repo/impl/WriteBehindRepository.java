@@ -0,0 +1,537 @@
+package com.rayeye.repo.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.rayeye.dbutils.Cursor;
+import com.rayeye.dbutils.Page;
+import com.rayeye.repo.Repository;
+import com.rayeye.repo.RepositoryException;
+
+/**
+ * 异步批量写入的 Repository 装饰器 (write-behind).
+ * <p>
+ * {@link #insert(Object)} 只把记录放入有界队列就返回, 后台线程按条数
+ * ({@link #setBatchSize(int)}) 或等待时间 ({@link #setMaxDelay(long, TimeUnit)})
+ * 把队列中的记录用 {@link Repository#insertAll(Collection)} 批量写入.
+ * 队列满时 insert 阻塞等待 (背压), 超过 {@link #setOfferTimeout(long, TimeUnit)} 抛出
+ * {@link RepositoryException}.
+ * <p>
+ * 需要确认落库的调用方使用 {@link #insertAsync(Object)} 或 {@link #flush()} 返回的 future.
+ * 其余写操作先等待队列中的记录写完再执行, 保证顺序; 读操作直接委托, 可能读不到还在队列中的记录.
+ * 批量写入失败时逐条重新插入, 只有写不进去的记录通过对应的 future 报告失败, 之后不再重试.
+ * 逐条重试要求 delegate 的 insertAll 失败时整体回滚, {@link DbutilsRepository} 在一个事务中写入.
+ */
+public class WriteBehindRepository<T> implements Repository<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(WriteBehindRepository.class);
+
+	/**
+	 * 队列中的一项: 一条记录, flush 标记, 或 stop 标记.
+	 */
+	private static final class Pending<T> {
+		final T entity;
+		final SettableFuture<T> inserted;
+		final SettableFuture<Void> flushed;
+		/** 已完成并从 pending 中扣除, 只由写入线程访问 */
+		boolean completed;
+
+		Pending(T entity, SettableFuture<T> inserted, SettableFuture<Void> flushed) {
+			this.entity = entity;
+			this.inserted = inserted;
+			this.flushed = flushed;
+		}
+	}
+
+	private final Repository<T> delegate;
+	private final BlockingQueue<Pending<T>> queue;
+	/** 已入队但还未写完的项数, 包括后台线程正在写的批次 */
+	private final AtomicInteger pending = new AtomicInteger();
+	/** stop 放入队列的标记, 后台线程写完它之前的记录后退出 */
+	private final Pending<T> stopMarker = new Pending<T>(null, null, null);
+	/** 入队时持有读锁, stop 持有写锁修改 running, 停止后不会再有记录入队 */
+	private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+
+	private int batchSize = 500;
+	private long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(100);
+	private long offerTimeoutNanos = Long.MAX_VALUE;
+
+	private volatile boolean running;
+	private Thread writer;
+
+	/**
+	 * @param delegate 实际执行写入的 repository
+	 * @param capacity 队列容量
+	 */
+	public WriteBehindRepository(Repository<T> delegate, int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.delegate = delegate;
+		this.queue = new ArrayBlockingQueue<Pending<T>>(capacity);
+	}
+
+	/**
+	 * @param batchSize 每批最多写入的记录数, 攒够即写
+	 * @return this
+	 */
+	public WriteBehindRepository<T> setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+		}
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * @param maxDelay 记录在队列中最长等待多久就写入, 不论批次是否攒满
+	 * @param unit 时间单位
+	 * @return this
+	 */
+	public WriteBehindRepository<T> setMaxDelay(long maxDelay, TimeUnit unit) {
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+		return this;
+	}
+
+	/**
+	 * @param timeout 队列满时 insert 最长等待时间, 默认一直等待
+	 * @param unit 时间单位
+	 * @return this
+	 */
+	public WriteBehindRepository<T> setOfferTimeout(long timeout, TimeUnit unit) {
+		this.offerTimeoutNanos = unit.toNanos(timeout);
+		return this;
+	}
+
+	/**
+	 * @return 已入队但还未写完的记录和 flush 标记数
+	 */
+	public int getPending() {
+		return pending.get();
+	}
+
+	/**
+	 * 启动后台写入线程.
+	 */
+	public synchronized void start() {
+		if (writer != null) {
+			return;
+		}
+		running = true;
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "write-behind-" + System.identityHashCode(this));
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * 停止后台线程, 队列中剩余的记录在返回前写完.
+	 * 等待时被中断则直接返回, 后台线程写完队列后自行退出, 可以再次调用 stop 等待它退出.
+	 */
+	public synchronized void stop() {
+		if (writer == null) {
+			return;
+		}
+		stopLock.writeLock().lock();
+		try {
+			running = false;
+		} finally {
+			stopLock.writeLock().unlock();
+		}
+		// 唤醒等待攒批的后台线程. 队列满时后台线程不会空等, 放不进标记也会在取空队列后退出, 这里不能阻塞
+		queue.offer(stopMarker);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			// 后台线程还在写, 不能在这里同时写剩余的记录
+			Thread.currentThread().interrupt();
+			return;
+		}
+		writer = null;
+
+		// 后台线程退出后留下的 stop 标记和记录
+		List<Pending<T>> rest = new ArrayList<Pending<T>>();
+		while (queue.drainTo(rest, batchSize) > 0) {
+			// 中断后再次 stop 会多放一个标记
+			rest.removeAll(Collections.singleton(stopMarker));
+			write(rest);
+			rest.clear();
+		}
+	}
+
+	/**
+	 * 放入队列, 稍后批量写入.
+	 * @param entity 要插入的记录
+	 * @return 写入后完成的 future, 值为写入后的记录 (自增主键已写回)
+	 */
+	public ListenableFuture<T> insertAsync(T entity) {
+		SettableFuture<T> future = SettableFuture.create();
+		enqueue(new Pending<T>(entity, future, null));
+		return future;
+	}
+
+	/**
+	 * 在队列尾部放入 flush 标记, 后台线程遇到标记时立即写入当前批次.
+	 * @return 标记之前入队的记录写完后完成的 future, 所在批次写入失败时以失败完成
+	 */
+	public ListenableFuture<Void> flush() {
+		SettableFuture<Void> future = SettableFuture.create();
+		enqueue(new Pending<T>(null, null, future));
+		return future;
+	}
+
+	/**
+	 * 放入队列, 稍后批量写入. 主键还未生成, 总是返回 null.
+	 */
+	@Override
+	public Serializable insert(T entity) {
+		insertAsync(entity);
+		return null;
+	}
+
+	private void enqueue(Pending<T> item) {
+		stopLock.readLock().lock();
+		try {
+			offer(item);
+		} finally {
+			stopLock.readLock().unlock();
+		}
+	}
+
+	private void offer(Pending<T> item) {
+		if (!running) {
+			throw new RepositoryException("write-behind repository is not running");
+		}
+		pending.incrementAndGet();
+		boolean queued = false;
+		try {
+			if (offerTimeoutNanos == Long.MAX_VALUE) {
+				queue.put(item);
+				queued = true;
+			} else {
+				queued = queue.offer(item, offerTimeoutNanos, TimeUnit.NANOSECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RepositoryException("interrupted while waiting for the write-behind queue");
+		} finally {
+			if (!queued) {
+				pending.decrementAndGet();
+			}
+		}
+		if (!queued) {
+			throw new RepositoryException("write-behind queue is full");
+		}
+	}
+
+	private void writeLoop() {
+		List<Pending<T>> batch = new ArrayList<Pending<T>>(batchSize);
+		boolean stopped = false;
+		while (!stopped) {
+			try {
+				Pending<T> first = queue.poll(maxDelayNanos, TimeUnit.NANOSECONDS);
+				if (first == null) {
+					if (!running) {
+						return;
+					}
+					continue;
+				}
+				batch.add(first);
+				fill(batch, System.nanoTime() + maxDelayNanos);
+			} catch (InterruptedException e) {
+				// 线程只通过 stop 停止, 忽略中断, 已取出的记录照常写入
+			}
+			stopped = batch.remove(stopMarker);
+			try {
+				if (!batch.isEmpty()) {
+					write(batch);
+				}
+			} catch (Throwable e) {
+				// Error 也不能让后台线程退出, 否则之后的 insert 会一直阻塞在满的队列上
+				LOG.error("write-behind writer failed on a batch of " + batch.size(), e);
+				for (Pending<T> item : batch) {
+					if (!item.completed) {
+						complete(item, e);
+					}
+				}
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * 攒批: 直到条数够, 遇到 flush 或 stop 标记, 或者到达 deadline.
+	 */
+	private void fill(List<Pending<T>> batch, long deadline) throws InterruptedException {
+		int checked = 0;
+		while (true) {
+			for (; checked < batch.size(); checked++) {
+				Pending<T> item = batch.get(checked);
+				if (item.flushed != null || item == stopMarker) {
+					return;
+				}
+			}
+			if (batch.size() >= batchSize || !running) {
+				return;
+			}
+			if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+				continue;
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return;
+			}
+			Pending<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null) {
+				return;
+			}
+			batch.add(next);
+		}
+	}
+
+	private void write(List<Pending<T>> batch) {
+		List<T> entities = new ArrayList<T>(batch.size());
+		for (Pending<T> item : batch) {
+			if (item.inserted != null) {
+				entities.add(item.entity);
+			}
+		}
+
+		boolean batched = entities.isEmpty();
+		if (!batched) {
+			try {
+				delegate.insertAll(entities);
+				batched = true;
+			} catch (RuntimeException e) {
+				LOG.warn("write-behind insert of " + entities.size() + " entities failed, inserting them one by one", e);
+			}
+		}
+
+		// 按入队顺序完成, flush 标记总在批次末尾, 本批有记录写入失败时以失败完成
+		RuntimeException failure = null;
+		for (Pending<T> item : batch) {
+			if (item.inserted == null) {
+				complete(item, failure);
+			} else if (batched) {
+				complete(item, null);
+			} else {
+				try {
+					delegate.insert(item.entity);
+					complete(item, null);
+				} catch (RuntimeException e) {
+					LOG.error("write-behind insert failed", e);
+					failure = e;
+					complete(item, e);
+				}
+			}
+		}
+	}
+
+	private void complete(Pending<T> item, Throwable failure) {
+		item.completed = true;
+		// 先更新计数再完成 future, 等待者醒来时看到的计数已不含这一项
+		pending.decrementAndGet();
+		if (failure != null) {
+			if (item.inserted != null) {
+				item.inserted.setException(failure);
+			} else {
+				item.flushed.setException(failure);
+			}
+		} else if (item.inserted != null) {
+			item.inserted.set(item.entity);
+		} else {
+			item.flushed.set(null);
+		}
+	}
+
+	/**
+	 * 等待队列中的记录写完, 其它写操作在此之后执行. 写入失败已由对应的 future 报告.
+	 */
+	private void awaitPending() {
+		if (pending.get() == 0 || !running) {
+			return;
+		}
+		try {
+			flush().get();
+		} catch (ExecutionException e) {
+			// 已记录日志
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RepositoryException("interrupted while flushing the write-behind queue");
+		}
+	}
+
+	@Override
+	public int insertAll(Collection<T> entities) {
+		awaitPending();
+		return delegate.insertAll(entities);
+	}
+
+	@Override
+	public List<Serializable> insertAllReturningKeys(Collection<T> entities) {
+		awaitPending();
+		return delegate.insertAllReturningKeys(entities);
+	}
+
+	@Override
+	public void insertAttrs(T entity, String... includeAttrs) {
+		awaitPending();
+		delegate.insertAttrs(entity, includeAttrs);
+	}
+
+	@Override
+	public void insertExcludeAttrs(T entity, String... excludeAttrs) {
+		awaitPending();
+		delegate.insertExcludeAttrs(entity, excludeAttrs);
+	}
+
+	@Override
+	public void update(T entity) {
+		awaitPending();
+		delegate.update(entity);
+	}
+
+	@Override
+	public void updateAttrs(T entity, String... includeAttrs) {
+		awaitPending();
+		delegate.updateAttrs(entity, includeAttrs);
+	}
+
+	@Override
+	public void updateExcludeAttrs(T entity, String... excludeAttrs) {
+		awaitPending();
+		delegate.updateExcludeAttrs(entity, excludeAttrs);
+	}
+
+	@Override
+	public int updateAll(Collection<T> entities) {
+		awaitPending();
+		return delegate.updateAll(entities);
+	}
+
+	@Override
+	public void remove(T entity) {
+		awaitPending();
+		delegate.remove(entity);
+	}
+
+	@Override
+	public void removeById(Serializable pk) {
+		awaitPending();
+		delegate.removeById(pk);
+	}
+
+	@Override
+	public int removeAll(Collection<T> entities) {
+		awaitPending();
+		return delegate.removeAll(entities);
+	}
+
+	@Override
+	public int removeAllById(Collection<?> pks) {
+		awaitPending();
+		return delegate.removeAllById(pks);
+	}
+
+	@Override
+	public void removeByAttrs(T entity, String... attrs) {
+		awaitPending();
+		delegate.removeByAttrs(entity, attrs);
+	}
+
+	@Override
+	public T findById(Serializable pk) {
+		return delegate.findById(pk);
+	}
+
+	@Override
+	public T findByIdIncludeAttrs(Serializable pk, String... includeAttrs) {
+		return delegate.findByIdIncludeAttrs(pk, includeAttrs);
+	}
+
+	@Override
+	public T findByIdExcludeAttrs(Serializable pk, String... excludeAttrs) {
+		return delegate.findByIdExcludeAttrs(pk, excludeAttrs);
+	}
+
+	@Override
+	public List<T> find(Map<String, Object> params) {
+		return delegate.find(params);
+	}
+
+	@Override
+	public List<T> findIncludeAttrs(Map<String, Object> params, String... includeAttrs) {
+		return delegate.findIncludeAttrs(params, includeAttrs);
+	}
+
+	@Override
+	public List<T> findExcludeAttrs(Map<String, Object> params, String... excludeAttrs) {
+		return delegate.findExcludeAttrs(params, excludeAttrs);
+	}
+
+	@Override
+	public List<T> findAll() {
+		return delegate.findAll();
+	}
+
+	@Override
+	public Cursor<T> streamAll() {
+		return delegate.streamAll();
+	}
+
+	@Override
+	public Page<T> findPage(Object after, int size) {
+		return delegate.findPage(after, size);
+	}
+
+	@Override
+	public List<T> findAllincludeAttrs(String... includeAttrs) {
+		return delegate.findAllincludeAttrs(includeAttrs);
+	}
+
+	@Override
+	public List<T> findAllExcludeAttrs(String... excludeAttrs) {
+		return delegate.findAllExcludeAttrs(excludeAttrs);
+	}
+
+	@Override
+	public List<T> findSql(String sql, Object... params) {
+		return delegate.findSql(sql, params);
+	}
+
+	@Override
+	public List<T> findSqlForMap(String sql, Map<String, Object> params) {
+		return delegate.findSqlForMap(sql, params);
+	}
+
+	@Override
+	public T findUniqueResult(String sql, Object... params) {
+		return delegate.findUniqueResult(sql, params);
+	}
+
+	@Override
+	public T findUniqueResult(String sql, Map<String, Object> params) {
+		return delegate.findUniqueResult(sql, params);
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.rayeye.dbutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BeanProcessorTest {
+
+    public static class Row {
+        private int count;
+        private Long total;
+        private String userName;
+        private Timestamp created;
+        private java.sql.Date day;
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public Long getTotal() {
+            return total;
+        }
+
+        public void setTotal(Long total) {
+            this.total = total;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public void setUserName(String userName) {
+            this.userName = userName;
+        }
+
+        public Timestamp getCreated() {
+            return created;
+        }
+
+        public void setCreated(Timestamp created) {
+            this.created = created;
+        }
+
+        public java.sql.Date getDay() {
+            return day;
+        }
+
+        public void setDay(java.sql.Date day) {
+            this.day = day;
+        }
+    }
+
+    private static StubJdbc.Rows rows(String... labels) {
+        return new StubJdbc.Rows(labels, new Object[][] {
+                { Integer.valueOf(3), Long.valueOf(30), "ann", new java.util.Date(1000L), new java.util.Date(2000L) },
+                { null, null, null, null, null } });
+    }
+
+    @Test
+    public void testToBeanList() throws SQLException {
+        List<Row> list = new BeanProcessor().toBeanList(
+                rows("count", "TOTAL", "userName", "created", "day").resultSet(), Row.class);
+
+        assertEquals(2, list.size());
+        assertEquals(3, list.get(0).getCount());
+        assertEquals(Long.valueOf(30), list.get(0).getTotal());
+        assertEquals("ann", list.get(0).getUserName());
+        assertEquals(new Timestamp(1000L), list.get(0).getCreated());
+        assertEquals(java.sql.Date.class, list.get(0).getDay().getClass());
+        assertEquals(2000L, list.get(0).getDay().getTime());
+
+        assertEquals(0, list.get(1).getCount());
+        assertNull(list.get(1).getTotal());
+        assertNull(list.get(1).getUserName());
+        assertNull(list.get(1).getDay());
+    }
+
+    @Test
+    public void testMapperCachedPerShape() throws SQLException {
+        BeanProcessor processor = new BeanProcessor();
+        ResultSet rs = rows("count", "total", "userName", "created", "day").resultSet();
+
+        RowMapper<Row> mapper = processor.rowMapper(rs.getMetaData(), Row.class);
+        assertSame(mapper, processor.rowMapper(rows("count", "total", "userName", "created", "day")
+                .resultSet().getMetaData(), Row.class));
+        assertNotSame(mapper, processor.rowMapper(rows("count", "total", "user_name", "created", "day")
+                .resultSet().getMetaData(), Row.class));
+    }
+
+    @Test
+    public void testGenerousMatching() throws SQLException {
+        ResultSet rs = rows("count", "total", "user_name", "created", "day").resultSet();
+
+        assertNull(new BeanProcessor().toBeanList(rs, Row.class).get(0).getUserName());
+        assertEquals("ann", new GenerousBeanProcessor().toBeanList(
+                rows("count", "total", "user_name", "created", "day").resultSet(), Row.class).get(0).getUserName());
+    }
+
+    @Test
+    public void testOverriddenProcessColumn() throws SQLException {
+        BeanProcessor upper = new BeanProcessor() {
+            @Override
+            protected Object processColumn(ResultSet rs, int index, Class<?> propType) throws SQLException {
+                Object value = super.processColumn(rs, index, propType);
+                return value instanceof String ? ((String) value).toUpperCase() : value;
+            }
+        };
+
+        List<Row> list = upper.toBeanList(rows("count", "total", "userName", "created", "day").resultSet(), Row.class);
+
+        assertEquals("ANN", list.get(0).getUserName());
+        assertEquals(3, list.get(0).getCount());
+        assertEquals(0, list.get(1).getCount());
+    }
+}
@@ -0,0 +1,101 @@
+package com.rayeye.dbutils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.fri.timers.entity.Times;
+import org.junit.Test;
+
+public class CursorTest {
+
+    private static StubJdbc.Rows rows() {
+        return new StubJdbc.Rows(new String[] { "id", "year", "month" }, new Object[][] {
+                { Long.valueOf(1), Integer.valueOf(2014), Integer.valueOf(1) },
+                { Long.valueOf(2), Integer.valueOf(2015), Integer.valueOf(2) } });
+    }
+
+    /**
+     * A forward-only result set, which does not support isLast().
+     */
+    private static ResultSet forwardOnly(final StubJdbc.Rows rows) {
+        return ProxyFactory.instance().createResultSet(new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("isLast".equals(method.getName())) {
+                    throw new SQLFeatureNotSupportedException("isLast");
+                }
+                return rows.invoke(proxy, method, args);
+            }
+        });
+    }
+
+    @Test
+    public void testArrays() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(rows());
+        Cursor<Object[]> cursor = new QueryExecutor(conn.connection(), "select * from times", true)
+                .stream(new BasicRowProcessor());
+
+        List<Object[]> list = new ArrayList<Object[]>();
+        for (Object[] row : cursor) {
+            list.add(row);
+        }
+
+        assertEquals(2, list.size());
+        assertArrayEquals(new Object[] { Long.valueOf(2), Integer.valueOf(2015), Integer.valueOf(2) }, list.get(1));
+        assertTrue(cursor.isClosed());
+        assertTrue(conn.isClosed());
+    }
+
+    @Test
+    public void testMapsAndBeans() throws SQLException {
+        Cursor<Map<String, Object>> maps = new QueryExecutor(new StubJdbc.Conn(rows()).connection(),
+                "select * from times", true).streamMaps(new BasicRowProcessor());
+        assertEquals(Integer.valueOf(2014), maps.next().get("year"));
+        maps.close();
+
+        RowProcessor generous = new BasicRowProcessor(new GenerousBeanProcessor());
+        Cursor<Times> beans = new QueryExecutor(new StubJdbc.Conn(rows()).connection(),
+                "select * from times", true).stream(Times.class, generous);
+        assertEquals(2014, beans.next().getYear());
+        assertEquals(2015, beans.next().getYear());
+        assertFalse(beans.hasNext());
+    }
+
+    @Test
+    public void testIterableOnce() throws SQLException {
+        Cursor<Times> cursor = new QueryExecutor(new StubJdbc.Conn(rows()).connection(),
+                "select * from times", true).stream(Times.class);
+        cursor.iterator();
+        try {
+            cursor.iterator();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testResultSetIteratorForwardOnly() {
+        ResultSetIterator it = new ResultSetIterator(forwardOnly(rows()));
+
+        assertTrue(it.hasNext());
+        assertTrue(it.hasNext());
+        assertEquals(Long.valueOf(1), it.next()[0]);
+        assertEquals(Long.valueOf(2), it.next()[0]);
+        assertFalse(it.hasNext());
+    }
+}
@@ -0,0 +1,54 @@
+package com.rayeye.dbutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.fri.timers.entity.Times;
+import org.junit.Test;
+
+public class DeleteAllEntityExecutorTest {
+
+    private static List<Long> ids(int count) {
+        List<Long> ids = new ArrayList<Long>();
+        for (int i = 0; i < count; i++) {
+            ids.add(Long.valueOf(i));
+        }
+        return ids;
+    }
+
+    @Test
+    public void testDeleteByIdsSql() {
+        assertEquals("delete from times where id in (?,?,?)", EntityMetadata.of(Times.class).deleteByIdsSql(3));
+    }
+
+    @Test
+    public void testDeleteInChunks() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(null);
+        int count = new DeleteAllEntityExecutor<Times>(Times.class, ids(2 * DeleteAllEntityExecutor.IN_LIST_SIZE + 2),
+                conn.connection()).delete();
+
+        assertEquals(2 * DeleteAllEntityExecutor.IN_LIST_SIZE + 2, count);
+        assertEquals(2, conn.getPrepared().size());
+        assertEquals(EntityMetadata.of(Times.class).deleteByIdsSql(DeleteAllEntityExecutor.IN_LIST_SIZE),
+                conn.getPrepared().get(0));
+        assertEquals("delete from times where id in (?,?)", conn.getPrepared().get(1));
+        assertEquals(3, conn.getBatches());
+        assertEquals(1, conn.getCommits());
+        assertTrue(conn.isClosed());
+    }
+
+    @Test
+    public void testDeleteNothing() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(null);
+
+        assertEquals(0, new DeleteAllEntityExecutor<Times>(Times.class, Collections.emptyList(), conn.connection())
+                .delete());
+        assertTrue(conn.getPrepared().isEmpty());
+        assertTrue(conn.isClosed());
+    }
+}
@@ -0,0 +1,79 @@
+package com.rayeye.dbutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.fri.timers.entity.Times;
+import org.fri.timers.entity.Times2;
+import org.junit.Test;
+
+public class EntityMetadataTest {
+
+    @Test
+    public void testMetadata() {
+        EntityMetadata times = EntityMetadata.of(Times.class);
+
+        assertSame(times, EntityMetadata.of(Times.class));
+        assertEquals("times", times.getTableName());
+        assertEquals("id", times.getIdName());
+        assertTrue(times.getIdProperty().isGenerated());
+        assertEquals("[year, month]", times.getColumnNames().keySet().toString());
+        assertEquals("[id, year, month]", times.getAllColumnNames().keySet().toString());
+    }
+
+    @Test
+    public void testMappedSuperclass() {
+        EntityMetadata times = EntityMetadata.of(Times2.class);
+
+        assertEquals("times23", times.getTableName());
+        assertEquals("[id, year, month, created]", times.getColumnNames().keySet().toString());
+        assertEquals("created", times.getProperty("created").getColumn());
+        assertNull(times.getProperty("missing"));
+    }
+
+    @Test
+    public void testSqlTemplates() {
+        EntityMetadata times = EntityMetadata.of(Times2.class);
+        Set<String> where = new HashSet<String>(Arrays.asList("id"));
+
+        assertEquals("insert into times23 (id,year,month,created) values(:id,:year,:month,:created)",
+                times.insertSql(null, null).getSql());
+        assertEquals("update times23 set year = :year, month = :month, created = :created where id = :id",
+                times.updateSql(null, null, where).getSql());
+        assertEquals("select id,month from times23 where id = :id",
+                times.selectSql(new HashSet<String>(Arrays.asList("month", "id")), null, where).getSql());
+        assertEquals("delete from times23 where id = :id", times.deleteSql(where).getSql());
+
+        SqlTemplate template = times.updateSql(null, new HashSet<String>(Arrays.asList("created")), where);
+        assertEquals("update times23 set year = :year, month = :month where id = :id", template.getSql());
+        assertSame(template, times.updateSql(null, new HashSet<String>(Arrays.asList("created")), where));
+    }
+
+    @Test
+    public void testKeysetSql() {
+        EntityMetadata times = EntityMetadata.of(Times.class);
+        Set<String> where = new HashSet<String>(Arrays.asList("year"));
+
+        assertEquals("select id,year,month from times where year = :year and id > :__after order by id limit :__limit",
+                times.selectSql(null, null, where, Arrays.asList("id"), true, true).getSql());
+        assertEquals("select id,year,month from times where id < :__after order by id desc limit :__limit",
+                times.selectSql(null, null, null, Arrays.asList("id desc"), true, true).getSql());
+        assertEquals("select id,year,month from times order by year desc, month",
+                times.selectSql(null, null, null, Arrays.asList("year desc", "month"), false, false).getSql());
+        assertEquals("select id,year,month from times",
+                times.selectSql(null, null, null, new ArrayList<String>(), false, false).getSql());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAnEntity() {
+        EntityMetadata.of(String.class);
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.rayeye.dbutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.fri.timers.entity.Times;
+import org.junit.Test;
+
+public class InsertAllEntityExecutorTest {
+
+    private static final String ONE_ROW = "insert into times (year,month) values (?,?)";
+
+    private static List<Times> times(int count) {
+        List<Times> list = new ArrayList<Times>();
+        for (int i = 0; i < count; i++) {
+            Times times = new Times();
+            times.setYear(2000 + i);
+            times.setMonth(i % 12 + 1);
+            list.add(times);
+        }
+        return list;
+    }
+
+    private static StubJdbc.Rows keys(int count) {
+        Object[][] keys = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            keys[i] = new Object[] { BigInteger.valueOf(7 + i) };
+        }
+        return new StubJdbc.Rows(new String[] { "GENERATED_KEY" }, keys);
+    }
+
+    @Test
+    public void testInsertRowsSql() {
+        EntityMetadata metadata = EntityMetadata.of(Times.class);
+        SqlTemplate template = metadata.insertSql(null, null);
+
+        assertEquals(ONE_ROW, metadata.insertRowsSql(template, 1));
+        assertEquals("insert into times (year,month) values (?,?),(?,?),(?,?)", metadata.insertRowsSql(template, 3));
+    }
+
+    @Test
+    public void testInsertInOneStatement() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(null);
+        int count = new InsertAllEntityExecutor<Times>(Times.class, times(3), conn.connection()).insert();
+
+        assertEquals(3, count);
+        assertEquals(Collections.singletonList("insert into times (year,month) values (?,?),(?,?),(?,?)"),
+                conn.getPrepared());
+        assertEquals(1, conn.getBatches());
+        assertEquals(1, conn.getCommits());
+        assertTrue(conn.isClosed());
+    }
+
+    @Test
+    public void testInsertChunkedByPacketSize() throws SQLException {
+        // each row of two numbers is estimated at 54 bytes, so 4 rows fit
+        StubJdbc.Conn conn = new StubJdbc.Conn(null);
+        int count = new InsertAllEntityExecutor<Times>(Times.class, times(10), conn.connection())
+                .maxPacketSize(ONE_ROW.length() + 4 * 54).insert();
+
+        assertEquals(10, count);
+        assertEquals(2, conn.getPrepared().size());
+        assertEquals("insert into times (year,month) values (?,?),(?,?),(?,?),(?,?)", conn.getPrepared().get(0));
+        assertEquals("insert into times (year,month) values (?,?),(?,?)", conn.getPrepared().get(1));
+        assertEquals(3, conn.getBatches());
+        assertEquals(1, conn.getCommits());
+        assertTrue(conn.isClosed());
+    }
+
+    @Test
+    public void testPacketSmallerThanARow() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(null);
+        int count = new InsertAllEntityExecutor<Times>(Times.class, times(3), conn.connection())
+                .maxPacketSize(1).insert();
+
+        assertEquals(3, count);
+        assertEquals(Collections.singletonList(ONE_ROW), conn.getPrepared());
+        assertEquals(3, conn.getBatches());
+    }
+
+    @Test
+    public void testInsertWritesGeneratedIds() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(keys(3));
+        List<Times> times = times(3);
+        new InsertAllEntityExecutor<Times>(Times.class, times, conn.connection()).insert();
+
+        assertEquals(1, conn.getKeyedStatements());
+        assertEquals(7L, times.get(0).getId());
+        assertEquals(9L, times.get(2).getId());
+    }
+
+    @Test
+    public void testMissingKeysLeaveIdsUnset() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(keys(2));
+        List<Times> times = times(3);
+
+        assertEquals(3, new InsertAllEntityExecutor<Times>(Times.class, times, conn.connection()).insert());
+        assertEquals(0L, times.get(0).getId());
+    }
+
+    @Test
+    public void testInsertReturningKeys() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(keys(2));
+        List<Times> times = times(2);
+        List<Object> keys = new InsertAllEntityExecutor<Times>(Times.class, times, conn.connection())
+                .insertReturningKeys();
+
+        assertEquals(2, keys.size());
+        assertEquals(BigInteger.valueOf(8), keys.get(1));
+        assertEquals(8L, times.get(1).getId());
+        assertEquals(Collections.singletonList(ONE_ROW), conn.getPrepared());
+        assertEquals(1, conn.getKeyedStatements());
+        assertEquals(2, conn.getBatches());
+        assertEquals(1, conn.getCommits());
+        assertTrue(conn.isClosed());
+    }
+
+    @Test
+    public void testInsertNothing() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(null);
+
+        assertEquals(0, new InsertAllEntityExecutor<Times>(Times.class, new ArrayList<Times>(),
+                conn.connection()).insert());
+        assertTrue(conn.getPrepared().isEmpty());
+        assertTrue(conn.isClosed());
+    }
+}
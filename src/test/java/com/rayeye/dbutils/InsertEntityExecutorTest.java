@@ -0,0 +1,36 @@
+package com.rayeye.dbutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+
+import org.fri.timers.entity.Times;
+import org.junit.Test;
+
+public class InsertEntityExecutorTest {
+
+    @Test
+    public void testInsertWritesGeneratedId() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(new StubJdbc.Rows(new String[] { "GENERATED_KEY" },
+                new Object[][] { { BigDecimal.valueOf(42) } }));
+        Times times = new Times();
+        times.setYear(2014);
+
+        assertEquals(1, new InsertEntityExecutor<Times>(times, Times.class, conn.connection()).insert());
+        assertEquals("insert into times (year,month) values(?,?)", conn.getPrepared().get(0));
+        assertEquals(1, conn.getKeyedStatements());
+        assertEquals(42L, times.getId());
+        assertTrue(conn.isClosed());
+    }
+
+    @Test
+    public void testNoGeneratedKey() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(null);
+        Times times = new Times();
+
+        assertEquals(1, new InsertEntityExecutor<Times>(times, Times.class, conn.connection()).insert());
+        assertEquals(0L, times.getId());
+    }
+}
@@ -0,0 +1,63 @@
+package com.rayeye.dbutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+public class ParsedSqlTest {
+
+    @Test
+    public void testParse() {
+        ParsedSql parsed = ParsedSql.parse("select * from times where year = :year and (month = :month or :month is null)");
+
+        assertEquals("select * from times where year = ? and (month = ? or ? is null)", parsed.getJdbcSql());
+        assertEquals("[1]", parsed.getPositions().get("year").toString());
+        assertEquals("[2, 3]", parsed.getPositions().get("month").toString());
+        assertSame(parsed, ParsedSql.parse(parsed.getSql()));
+    }
+
+    @Test
+    public void testQuotesCommentsAndCasts() {
+        ParsedSql parsed = ParsedSql.parseUncached("select ':skip', \"a:b\", `c:d`, 'it''s :x', 'e\\':f' -- :comment\n"
+                + "from t /* :block */ where created::date = :day and id = :id::int");
+
+        assertEquals("select ':skip', \"a:b\", `c:d`, 'it''s :x', 'e\\':f' -- :comment\n"
+                + "from t /* :block */ where created::date = ? and id = ?::int", parsed.getJdbcSql());
+        assertEquals("[day, id]", parsed.getPositions().keySet().toString());
+        assertEquals("[2]", parsed.getPositions().get("id").toString());
+    }
+
+    @Test
+    public void testNoParameters() {
+        String sql = "select * from times where a = 'x:y'";
+        ParsedSql parsed = ParsedSql.parseUncached(sql);
+
+        assertSame(sql, parsed.getJdbcSql());
+        assertTrue(parsed.getPositions().isEmpty());
+    }
+
+    @Test
+    public void testUnboundParamsDoNotChangeCachedTable() throws SQLException {
+        String sql = "select * from times where year = :year and month = :month";
+        StubJdbc.Conn stub = new StubJdbc.Conn(new StubJdbc.Rows(new String[0], new Object[0][]));
+        Connection conn = stub.connection();
+
+        try {
+            new QueryExecutor(conn, sql, false).bind(":year", 2014).throwIfUnmappedParams();
+            fail();
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().endsWith("month"));
+        }
+
+        assertEquals(2, ParsedSql.parse(sql).getPositions().size());
+        new QueryExecutor(conn, sql, false).bind("year", 2014).bind("month", 10).throwIfUnmappedParams();
+        assertEquals("select * from times where year = ? and month = ?", stub.getPrepared().get(1));
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.rayeye.dbutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.fri.timers.entity.Times;
+import org.junit.Test;
+
+public class PropertyAccessorTest {
+
+    public enum Color {
+        RED, GREEN
+    }
+
+    public static class Paint {
+        private int id;
+        private String name;
+        private Color color;
+        private long secret;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Color getColor() {
+            return color;
+        }
+
+        public void setColor(Color color) {
+            this.color = color;
+        }
+
+        public String getLabel() {
+            return name + "-" + color;
+        }
+    }
+
+    public static class Strict {
+        private String code;
+
+        public String getCode() {
+            return code;
+        }
+
+        public void setCode(String code) {
+            if (code.isEmpty()) {
+                throw new ClassCastException("empty code");
+            }
+            this.code = code;
+        }
+    }
+
+    @Test
+    public void testBeanProperties() throws SQLException {
+        PropertyAccessor id = PropertyAccessor.forClass(Paint.class).get("id");
+        PropertyAccessor color = PropertyAccessor.forClass(Paint.class).get("color");
+        PropertyAccessor label = PropertyAccessor.forClass(Paint.class).get("label");
+        Paint paint = new Paint();
+
+        assertSame(PropertyAccessor.forClass(Paint.class), PropertyAccessor.forClass(Paint.class));
+
+        id.set(paint, Integer.valueOf(7));
+        color.set(paint, "GREEN");
+        assertEquals(Integer.valueOf(7), id.get(paint));
+        assertSame(Color.GREEN, color.get(paint));
+        assertSame(Color.GREEN, paint.getColor());
+
+        assertTrue(label.isReadable());
+        assertFalse(label.isWritable());
+        assertEquals("null-GREEN", label.get(paint));
+    }
+
+    @Test
+    public void testFieldFallback() throws Exception {
+        PropertyAccessor secret = PropertyAccessor.forField(Paint.class, Paint.class.getDeclaredField("secret"));
+        Paint paint = new Paint();
+
+        secret.set(paint, Long.valueOf(42));
+        assertEquals(42L, paint.secret);
+        assertEquals(Long.valueOf(42), secret.get(paint));
+    }
+
+    @Test
+    public void testEntityAccessor() throws SQLException {
+        Times times = new Times();
+        times.setYear(2014);
+
+        PropertyAccessor year = EntityMetadata.of(Times.class).getProperty("year").getAccessor();
+        assertEquals(2014, ((Number) year.get(times)).intValue());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testIncompatibleType() throws SQLException {
+        PropertyAccessor.forClass(Paint.class).get("name").set(new Paint(), Integer.valueOf(1));
+    }
+
+    @Test
+    public void testSetterExceptionKeepsCause() {
+        PropertyAccessor code = PropertyAccessor.forClass(Strict.class).get("code");
+
+        try {
+            code.set(new Strict(), "");
+            fail();
+        } catch (SQLException e) {
+            assertTrue(e.getCause() instanceof ClassCastException);
+            assertEquals("Cannot set code: empty code", e.getMessage());
+        }
+        try {
+            code.set(new Strict(), null);
+            fail();
+        } catch (SQLException e) {
+            assertNotNull(e.getCause());
+            assertTrue(e.getCause() instanceof NullPointerException);
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void testNullForPrimitive() throws SQLException {
+        PropertyAccessor.forClass(Paint.class).get("id").set(new Paint(), null);
+    }
+
+    @Test
+    public void testToBeanListWithEnum() throws SQLException {
+        StubJdbc.Rows rows = new StubJdbc.Rows(new String[] { "id", "name", "color" }, new Object[][] {
+                { Integer.valueOf(1), "sky", "RED" },
+                { Integer.valueOf(2), "grass", null } });
+
+        List<Paint> paints = new BeanProcessor().toBeanList(rows.resultSet(), Paint.class);
+
+        assertEquals(2, paints.size());
+        assertEquals(1, paints.get(0).getId());
+        assertSame(Color.RED, paints.get(0).getColor());
+        assertEquals("grass", paints.get(1).getName());
+        assertEquals(null, paints.get(1).getColor());
+    }
+}
@@ -3,20 +3,142 @@ package com.rayeye.dbutils;
 import static org.junit.Assert.*;
 
 import java.sql.SQLException;
-
-import javax.sql.DataSource;
+import java.util.NoSuchElementException;
 
 import org.fri.timers.entity.Times;
 import org.junit.Test;
 
-import com.rayeye.config.Config;
-import com.rayeye.dbutils.handlers.BeanHandler;
-
 public class QueryEntityExecutorTest {
 
+	private static StubJdbc.Rows rows(int count) {
+		Object[][] rows = new Object[count][];
+		for (int i = 0; i < count; i++) {
+			rows[i] = new Object[] { Long.valueOf(i), Integer.valueOf(2000 + i % 20), Integer.valueOf(i % 12 + 1) };
+		}
+		return new StubJdbc.Rows(new String[] { "id", "year", "month" }, rows);
+	}
+
 	@Test
 	public void testQuery() throws SQLException {
 		assertNotEquals(1, 2);
 	}
 
+	@Test
+	public void testStream() throws SQLException {
+		StubJdbc.Conn conn = new StubJdbc.Conn(rows(3));
+		Cursor<Times> cursor = new QueryEntityExecutor<Times>(Times.class, conn.connection()).stream();
+
+		assertEquals("select id,year,month from times", conn.getPrepared().get(0));
+		assertEquals(QueryExecutor.STREAMING_FETCH_SIZE, conn.getFetchSize());
+
+		long sum = 0;
+		while (cursor.hasNext()) {
+			sum += cursor.next().getId();
+		}
+
+		assertEquals(3, sum);
+		assertTrue(cursor.isClosed());
+		assertEquals(1, conn.getClosedStatements());
+		assertTrue(conn.isClosed());
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testStreamExhausted() throws SQLException {
+		Cursor<Times> cursor = new QueryEntityExecutor<Times>(Times.class,
+				new StubJdbc.Conn(rows(0)).connection()).stream();
+
+		assertFalse(cursor.hasNext());
+		cursor.next();
+	}
+
+	@Test
+	public void testCloseEarly() throws SQLException {
+		StubJdbc.Conn conn = new StubJdbc.Conn(rows(10));
+		Cursor<Times> cursor = new QueryEntityExecutor<Times>(Times.class, conn.connection()).stream();
+
+		assertEquals(0L, cursor.next().getId());
+		cursor.close();
+		cursor.close();
+
+		assertFalse(cursor.hasNext());
+		assertEquals(1, conn.getClosedStatements());
+		assertTrue(conn.isClosed());
+	}
+
+	@Test
+	public void testPage() throws SQLException {
+		StubJdbc.Conn conn = new StubJdbc.Conn(rows(3));
+		Page<Times> page = new QueryEntityExecutor<Times>(Times.class, conn.connection()).page(2);
+
+		assertEquals("select id,year,month from times order by id limit ?", conn.getPrepared().get(0));
+		assertEquals(2, page.getItems().size());
+		assertEquals(Long.valueOf(1), page.getNext());
+
+		conn = new StubJdbc.Conn(rows(3));
+		page = new QueryEntityExecutor<Times>(Times.class, conn.connection()).eq("year", 2000)
+				.include("year").after(page.getNext()).page(5);
+
+		assertEquals("select id,year from times where year = ? and id > ? order by id limit ?", conn.getPrepared().get(0));
+		assertEquals(3, page.getItems().size());
+		assertFalse(page.hasNext());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testPageOrderedByOtherColumn() throws SQLException {
+		new QueryEntityExecutor<Times>(Times.class, new StubJdbc.Conn(rows(3)).connection()).orderBy("year").page(2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPageSizeNotPositive() throws SQLException {
+		new QueryEntityExecutor<Times>(Times.class, new StubJdbc.Conn(rows(3)).connection()).page(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPageSizeOverflow() throws SQLException {
+		new QueryEntityExecutor<Times>(Times.class, new StubJdbc.Conn(rows(3)).connection()).page(Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void testOrderByAndLimit() throws SQLException {
+		StubJdbc.Conn conn = new StubJdbc.Conn(rows(3));
+		new QueryEntityExecutor<Times>(Times.class, conn.connection()).orderByDesc("year").orderBy("month").limit(3).list();
+
+		assertEquals("select id,year,month from times order by year desc, month limit ?", conn.getPrepared().get(0));
+	}
+
+	@Test
+	public void testForEach() throws SQLException {
+		StubJdbc.Conn conn = new StubJdbc.Conn(rows(100000));
+		final long[] sum = new long[1];
+
+		int count = new QueryEntityExecutor<Times>(Times.class, conn.connection()).forEach(new RowCallback<Times>() {
+			@Override
+			public void on(Times row) {
+				sum[0] += row.getMonth();
+			}
+		});
+
+		assertEquals(100000, count);
+		assertEquals(649984L, sum[0]);
+		assertTrue(conn.isClosed());
+	}
+
+	@Test
+	public void testForEachCallbackFails() throws SQLException {
+		StubJdbc.Conn conn = new StubJdbc.Conn(rows(5));
+
+		try {
+			new QueryEntityExecutor<Times>(Times.class, conn.connection()).forEach(new RowCallback<Times>() {
+				@Override
+				public void on(Times row) throws SQLException {
+					throw new SQLException("stop");
+				}
+			});
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().startsWith("stop"));
+		}
+		assertEquals(1, conn.getClosedStatements());
+		assertTrue(conn.isClosed());
+	}
 }
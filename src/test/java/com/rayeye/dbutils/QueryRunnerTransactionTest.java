@@ -0,0 +1,153 @@
+package com.rayeye.dbutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.fri.timers.entity.Times;
+import org.junit.Test;
+
+public class QueryRunnerTransactionTest {
+
+    private static Times times(long id) {
+        Times times = new Times();
+        times.setId(id);
+        times.setYear(2014);
+        return times;
+    }
+
+    @Test
+    public void testOneConnectionAndCommit() throws SQLException {
+        final StubJdbc.Conn stub = new StubJdbc.Conn(null);
+        final QueryRunner runner = new QueryRunner(stub.dataSource());
+        runner.setStatementCacheSize(16);
+
+        String result = runner.inTransaction(new TransactionCallback<String>() {
+            @Override
+            public String doInTransaction(Connection conn) throws SQLException {
+                assertTrue(runner.isInTransaction());
+                runner.update(times(1)).bindId().update(Times.class);
+                runner.update(times(2)).bindId().update(Times.class);
+                runner.updateAll(Times.class, Arrays.asList(times(3), times(4))).update();
+                runner.delete(Times.class).bind("id", 5).delete();
+
+                // executors leave the connection open
+                assertFalse(conn.isClosed());
+                return "done";
+            }
+        });
+
+        assertEquals("done", result);
+        assertFalse(runner.isInTransaction());
+        assertEquals(1, stub.getConnections());
+        assertEquals(1, stub.getCommits());
+        assertEquals(0, stub.getRollbacks());
+        assertTrue(stub.getAutoCommit());
+        assertTrue(stub.isClosed());
+        // the update statement is prepared once, for the single and the batched updates
+        assertEquals(2, stub.getPrepared().size());
+    }
+
+    @Test
+    public void testRollbackOnException() throws SQLException {
+        final StubJdbc.Conn stub = new StubJdbc.Conn(null);
+        final QueryRunner runner = new QueryRunner(stub.dataSource());
+
+        try {
+            runner.inTransaction(new TransactionCallback<Void>() {
+                @Override
+                public Void doInTransaction(Connection conn) throws SQLException {
+                    runner.update(times(1)).bindId().update(Times.class);
+                    throw new IllegalStateException("fail");
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("fail", e.getMessage());
+        }
+
+        assertFalse(runner.isInTransaction());
+        assertEquals(0, stub.getCommits());
+        assertEquals(1, stub.getRollbacks());
+        assertTrue(stub.getAutoCommit());
+        assertTrue(stub.isClosed());
+    }
+
+    @Test
+    public void testNestedJoins() throws SQLException {
+        final StubJdbc.Conn stub = new StubJdbc.Conn(null);
+        final QueryRunner runner = new QueryRunner(stub.dataSource());
+
+        runner.inTransaction(new TransactionCallback<Void>() {
+            @Override
+            public Void doInTransaction(final Connection outer) throws SQLException {
+                runner.inTransaction(new TransactionCallback<Void>() {
+                    @Override
+                    public Void doInTransaction(Connection inner) throws SQLException {
+                        assertSame(outer, inner);
+                        return null;
+                    }
+                });
+                assertEquals(0, stub.getCommits());
+                return null;
+            }
+        });
+
+        assertEquals(1, stub.getConnections());
+        assertEquals(1, stub.getCommits());
+    }
+
+    @Test
+    public void testAfterCommit() throws SQLException {
+        final StubJdbc.Conn stub = new StubJdbc.Conn(null);
+        final QueryRunner runner = new QueryRunner(stub.dataSource());
+        final List<String> events = new ArrayList<String>();
+
+        runner.inTransaction(new TransactionCallback<Void>() {
+            @Override
+            public Void doInTransaction(Connection conn) throws SQLException {
+                runner.afterCommit(new Runnable() {
+                    @Override
+                    public void run() {
+                        events.add("committed " + stub.getCommits());
+                    }
+                });
+                events.add("work");
+                return null;
+            }
+        });
+        try {
+            runner.inTransaction(new TransactionCallback<Void>() {
+                @Override
+                public Void doInTransaction(Connection conn) throws SQLException {
+                    runner.afterCommit(new Runnable() {
+                        @Override
+                        public void run() {
+                            events.add("rolled back");
+                        }
+                    });
+                    throw new IllegalStateException("fail");
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        runner.afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                events.add("no transaction");
+            }
+        });
+
+        assertEquals(Arrays.asList("work", "committed 1", "no transaction"), events);
+    }
+}
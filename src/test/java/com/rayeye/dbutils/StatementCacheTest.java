@@ -0,0 +1,88 @@
+package com.rayeye.dbutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+public class StatementCacheTest {
+
+    @Test
+    public void testReuseAndEviction() throws SQLException {
+        StubJdbc.Conn stub = new StubJdbc.Conn(null);
+        StatementCache cache = new StatementCache(stub.connection(), 2);
+
+        PreparedStatement a = cache.prepare("a");
+        // 使用中的语句不会被再次借出
+        PreparedStatement nested = cache.prepare("a");
+        assertNotSame(a, nested);
+        cache.release("a", nested);
+        assertEquals(1, stub.getClosedStatements());
+
+        cache.release("a", a);
+        assertSame(a, cache.prepare("a"));
+        cache.release("a", a);
+
+        cache.release("b", cache.prepare("b"));
+        cache.release("c", cache.prepare("c"));
+        assertEquals(2, cache.size());
+        assertEquals(2, stub.getClosedStatements());
+        assertEquals("[a, a, b, c]", stub.getPrepared().toString());
+
+        cache.close();
+        assertEquals(4, stub.getClosedStatements());
+    }
+
+    @Test
+    public void testGeneratedKeysCachedSeparately() throws SQLException {
+        StubJdbc.Conn stub = new StubJdbc.Conn(null);
+        StatementCache cache = new StatementCache(stub.connection(), 4);
+
+        PreparedStatement plain = cache.prepare("insert");
+        cache.release("insert", plain);
+        PreparedStatement keyed = cache.prepare("insert", true);
+        assertNotSame(plain, keyed);
+        cache.release("insert", true, keyed);
+
+        assertSame(keyed, cache.prepare("insert", true));
+        assertSame(plain, cache.prepare("insert"));
+        assertEquals(2, cache.size());
+        assertEquals(1, stub.getKeyedStatements());
+    }
+
+    @Test
+    public void testQueryRunnerCachesOnlyInTransaction() throws SQLException {
+        final StubJdbc.Conn stub = new StubJdbc.Conn(null);
+        final QueryRunner runner = new QueryRunner(stub.dataSource());
+        runner.setStatementCacheSize(16);
+
+        runner.inTransaction(new TransactionCallback<Void>() {
+            @Override
+            public Void doInTransaction(Connection conn) throws SQLException {
+                for (int i = 0; i < 3; i++) {
+                    runner.update(conn, "update times set year = :year where id = :id")
+                        .bind("year", 2014).bind("id", i).execute();
+                }
+                assertEquals(0, stub.getClosedStatements());
+                return null;
+            }
+        });
+        assertEquals(1, stub.getPrepared().size());
+        assertEquals(1, stub.getClosedStatements());
+
+        // a caller's connection outside a transaction is not held on to
+        StubJdbc.Conn caller = new StubJdbc.Conn(null);
+        for (int i = 0; i < 2; i++) {
+            runner.update(caller.connection(), "update times set year = :year where id = :id")
+                .bind("year", 2014).bind("id", i).execute();
+        }
+        assertEquals(2, caller.getPrepared().size());
+        assertEquals(2, caller.getClosedStatements());
+    }
+
+}
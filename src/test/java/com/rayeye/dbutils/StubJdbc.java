@@ -0,0 +1,345 @@
+package com.rayeye.dbutils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+/**
+ * In-memory JDBC stand-ins built with {@link ProxyFactory}, used to measure and
+ * test the mapping layer without a database. Only the methods dbutils calls are
+ * implemented; everything else returns a default value.
+ */
+public class StubJdbc {
+
+    private StubJdbc() {
+    }
+
+    /**
+     * A forward-only result set over fixed rows. Call {@link #reset()} to iterate again.
+     */
+    public static class Rows implements InvocationHandler {
+        private final String[] labels;
+        private final Object[][] rows;
+        private final ResultSetMetaData meta;
+        private int cursor = -1;
+        private boolean wasNull;
+        private boolean closed;
+
+        public Rows(final String[] labels, final Object[][] rows) {
+            this.labels = labels;
+            this.rows = rows;
+            this.meta = ProxyFactory.instance().createResultSetMetaData(new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    final String name = method.getName();
+                    if ("getColumnCount".equals(name)) {
+                        return Integer.valueOf(labels.length);
+                    } else if ("getColumnLabel".equals(name) || "getColumnName".equals(name)) {
+                        return labels[((Integer) args[0]).intValue() - 1];
+                    }
+                    return defaultValue(method.getReturnType());
+                }
+            });
+        }
+
+        public Rows reset() {
+            cursor = -1;
+            closed = false;
+            return this;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        public ResultSet resultSet() {
+            return ProxyFactory.instance().createResultSet(this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+            final String name = method.getName();
+
+            if ("next".equals(name)) {
+                return Boolean.valueOf(++cursor < rows.length);
+            } else if ("getMetaData".equals(name)) {
+                return meta;
+            } else if ("wasNull".equals(name)) {
+                return Boolean.valueOf(wasNull);
+            } else if ("close".equals(name)) {
+                closed = true;
+                return null;
+            } else if ("isClosed".equals(name)) {
+                return Boolean.valueOf(closed);
+            } else if ("isLast".equals(name)) {
+                return Boolean.valueOf(cursor == rows.length - 1);
+            } else if (name.startsWith("get") && args != null && args.length == 1) {
+                final Object value = value(args[0]);
+                wasNull = value == null;
+                return convert(value, method.getReturnType());
+            }
+            return defaultValue(method.getReturnType());
+        }
+
+        private Object value(Object column) throws SQLException {
+            if (cursor < 0 || cursor >= rows.length) {
+                throw new SQLException("Result set is not positioned on a row");
+            }
+            int index;
+            if (column instanceof Integer) {
+                index = ((Integer) column).intValue() - 1;
+            } else {
+                index = -1;
+                for (int i = 0; i < labels.length; i++) {
+                    if (labels[i].equalsIgnoreCase((String) column)) {
+                        index = i;
+                        break;
+                    }
+                }
+            }
+            if (index < 0 || index >= labels.length) {
+                throw new SQLException("No such column: " + column);
+            }
+            return rows[cursor][index];
+        }
+    }
+
+    /**
+     * A connection whose prepared statements return the given rows from
+     * <code>executeQuery</code>, report one updated row and record the SQL they
+     * were prepared with.
+     */
+    public static class Conn implements InvocationHandler {
+        private static final Rows NO_ROWS = new Rows(new String[] { "GENERATED_KEY" }, new Object[0][]);
+
+        private final Rows rows;
+        private final List<String> prepared = new ArrayList<String>();
+        private int closedStatements;
+        private int keyedStatements;
+        private int fetchSize;
+        private int batches;
+        private int commits;
+        private int rollbacks;
+        private int connections;
+        private boolean autoCommit = true;
+        private boolean closed;
+
+        public Conn(Rows rows) {
+            this.rows = rows;
+        }
+
+        public Connection connection() {
+            return ProxyFactory.instance().createConnection(this);
+        }
+
+        /**
+         * @return a data source handing out this connection, reopened on every call.
+         */
+        public DataSource dataSource() {
+            return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { DataSource.class },
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if ("getConnection".equals(method.getName())) {
+                                connections++;
+                                closed = false;
+                                return connection();
+                            }
+                            return defaultValue(method.getReturnType());
+                        }
+                    });
+        }
+
+        /**
+         * @return the number of connections handed out by {@link #dataSource()}.
+         */
+        public int getConnections() {
+            return connections;
+        }
+
+        public boolean getAutoCommit() {
+            return autoCommit;
+        }
+
+        public List<String> getPrepared() {
+            return prepared;
+        }
+
+        public int getClosedStatements() {
+            return closedStatements;
+        }
+
+        /**
+         * @return the number of statements prepared with <code>RETURN_GENERATED_KEYS</code>.
+         */
+        public int getKeyedStatements() {
+            return keyedStatements;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * @return the fetch size last set on a statement of this connection.
+         */
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        /**
+         * @return the number of statements executed in batches on this connection.
+         */
+        public int getBatches() {
+            return batches;
+        }
+
+        public int getCommits() {
+            return commits;
+        }
+
+        public int getRollbacks() {
+            return rollbacks;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            final String name = method.getName();
+            if ("prepareStatement".equals(name)) {
+                prepared.add((String) args[0]);
+                if (args.length == 2 && Integer.valueOf(Statement.RETURN_GENERATED_KEYS).equals(args[1])) {
+                    keyedStatements++;
+                }
+                return statement();
+            } else if ("close".equals(name)) {
+                closed = true;
+                return null;
+            } else if ("isClosed".equals(name)) {
+                return Boolean.valueOf(closed);
+            } else if ("getAutoCommit".equals(name)) {
+                return Boolean.valueOf(autoCommit);
+            } else if ("setAutoCommit".equals(name)) {
+                autoCommit = ((Boolean) args[0]).booleanValue();
+                return null;
+            } else if ("commit".equals(name)) {
+                commits++;
+                return null;
+            } else if ("rollback".equals(name)) {
+                rollbacks++;
+                return null;
+            }
+            return defaultValue(method.getReturnType());
+        }
+
+        private PreparedStatement statement() {
+            return ProxyFactory.instance().createPreparedStatement(new InvocationHandler() {
+                private boolean stmtClosed;
+                private int added;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    final String name = method.getName();
+                    if ("executeQuery".equals(name) || "getGeneratedKeys".equals(name)) {
+                        return rows == null ? NO_ROWS.reset().resultSet() : rows.reset().resultSet();
+                    } else if ("executeUpdate".equals(name)) {
+                        return Integer.valueOf(1);
+                    } else if ("addBatch".equals(name)) {
+                        added++;
+                        return null;
+                    } else if ("executeBatch".equals(name)) {
+                        // like most drivers, the count of each statement is not reported
+                        final int[] counts = new int[added];
+                        Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+                        batches += added;
+                        added = 0;
+                        return counts;
+                    } else if ("close".equals(name)) {
+                        if (!stmtClosed) {
+                            closedStatements++;
+                        }
+                        stmtClosed = true;
+                        return null;
+                    } else if ("isClosed".equals(name)) {
+                        return Boolean.valueOf(stmtClosed);
+                    } else if ("setFetchSize".equals(name)) {
+                        fetchSize = ((Integer) args[0]).intValue();
+                        return null;
+                    }
+                    return defaultValue(method.getReturnType());
+                }
+            });
+        }
+    }
+
+    static Object convert(Object value, Class<?> type) {
+        if (type == Object.class) {
+            return value;
+        }
+        if (value == null) {
+            return defaultValue(type);
+        }
+        if (type == String.class) {
+            return value.toString();
+        }
+        if (value instanceof Number) {
+            final Number n = (Number) value;
+            if (type == Integer.TYPE) {
+                return Integer.valueOf(n.intValue());
+            } else if (type == Long.TYPE) {
+                return Long.valueOf(n.longValue());
+            } else if (type == Double.TYPE) {
+                return Double.valueOf(n.doubleValue());
+            } else if (type == Float.TYPE) {
+                return Float.valueOf(n.floatValue());
+            } else if (type == Short.TYPE) {
+                return Short.valueOf(n.shortValue());
+            } else if (type == Byte.TYPE) {
+                return Byte.valueOf(n.byteValue());
+            } else if (type == BigDecimal.class) {
+                return new BigDecimal(n.toString());
+            }
+        }
+        if (type == Boolean.TYPE && value instanceof Boolean) {
+            return value;
+        }
+        if (type == Timestamp.class && value instanceof java.util.Date) {
+            return new Timestamp(((java.util.Date) value).getTime());
+        }
+        return value;
+    }
+
+    static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == Void.TYPE) {
+            return null;
+        } else if (type == Boolean.TYPE) {
+            return Boolean.FALSE;
+        } else if (type == Long.TYPE) {
+            return Long.valueOf(0);
+        } else if (type == Double.TYPE) {
+            return Double.valueOf(0);
+        } else if (type == Float.TYPE) {
+            return Float.valueOf(0);
+        } else if (type == Short.TYPE) {
+            return Short.valueOf((short) 0);
+        } else if (type == Byte.TYPE) {
+            return Byte.valueOf((byte) 0);
+        } else if (type == Character.TYPE) {
+            return Character.valueOf((char) 0);
+        }
+        return Integer.valueOf(0);
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.rayeye.dbutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.fri.timers.entity.Times;
+import org.junit.Test;
+
+public class UpdateAllEntityExecutorTest {
+
+    private static List<Times> times(int count) {
+        List<Times> list = new ArrayList<Times>();
+        for (int i = 0; i < count; i++) {
+            Times times = new Times();
+            times.setId(i + 1);
+            times.setYear(2000 + i);
+            list.add(times);
+        }
+        return list;
+    }
+
+    @Test
+    public void testUpdateInBatches() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(null);
+        int count = new UpdateAllEntityExecutor<Times>(Times.class, times(AbstractEntityExecutor.BATCH_SIZE + 5),
+                conn.connection()).update();
+
+        assertEquals(AbstractEntityExecutor.BATCH_SIZE + 5, count);
+        assertEquals(2, conn.getPrepared().size());
+        assertEquals("update times set year = ?, month = ? where id = ?", conn.getPrepared().get(0));
+        assertEquals(AbstractEntityExecutor.BATCH_SIZE + 5, conn.getBatches());
+        assertEquals(1, conn.getCommits());
+        assertTrue(conn.isClosed());
+    }
+
+    @Test
+    public void testUpdateIncludedColumns() throws SQLException {
+        StubJdbc.Conn conn = new StubJdbc.Conn(null);
+        new UpdateAllEntityExecutor<Times>(Times.class, times(2), conn.connection()).setIncludeColumns("month").update();
+
+        assertEquals(Collections.singletonList("update times set month = ? where id = ?"), conn.getPrepared());
+        assertEquals(2, conn.getBatches());
+    }
+}
@@ -0,0 +1,41 @@
+package com.rayeye.event.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+	@Test
+	public void testBucketBounds() {
+		for (long v : new long[] { 0, 1, 31, 32, 33, 63, 64, 1000, 123456789L, Long.MAX_VALUE }) {
+			long lower = Histogram.valueOf(Histogram.indexOf(v));
+			assertTrue(lower <= v);
+			assertTrue(v - lower <= Math.max(0, v / 32));
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(500.5, histogram.getMean(), 0.001);
+
+		long p50 = histogram.getValueAtPercentile(50);
+		long p99 = histogram.getValueAtPercentile(99);
+		assertTrue(Math.abs(p50 - 500) <= 500 / 32);
+		assertTrue(Math.abs(p99 - 990) <= 990 / 32);
+		assertEquals(1000, histogram.getValueAtPercentile(100), 1000 / 32);
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+	}
+
+}
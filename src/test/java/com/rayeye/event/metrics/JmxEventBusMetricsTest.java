@@ -0,0 +1,51 @@
+package com.rayeye.event.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+public class JmxEventBusMetricsTest {
+
+	@Test
+	public void testRegister() throws Exception {
+		DefaultEventBusMetrics metrics = new DefaultEventBusMetrics();
+		metrics.posted("a");
+		metrics.stored("a", 2000);
+
+		JmxEventBusMetrics jmx = new JmxEventBusMetrics(metrics).register("test");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(1L, server.getAttribute(jmx.getObjectName(), "Posted"));
+			assertEquals(1L, server.getAttribute(jmx.getObjectName(), "Stored"));
+			assertEquals(0L, server.getAttribute(jmx.getObjectName(), "Failures"));
+			CompositeData snapshot = (CompositeData) server.getAttribute(jmx.getObjectName(), "Snapshot");
+			assertEquals(1L, snapshot.get("stored"));
+		} finally {
+			jmx.unregister();
+		}
+	}
+
+	@Test
+	public void testHandlerKeyedByType() {
+		DefaultEventBusMetrics metrics = new DefaultEventBusMetrics();
+		metrics.handled("a", "h", 1000);
+		metrics.handled("b", "h", 3000);
+		metrics.handlerFailed("b", "h", new IllegalStateException());
+
+		Map<String, HandlerSnapshot> handlers = metrics.snapshot().getHandlers();
+		assertEquals(2, handlers.size());
+		HandlerSnapshot b = handlers.get(HandlerSnapshot.key("b", "h"));
+		assertEquals("b", b.getType());
+		assertEquals(1, b.getFailures());
+		assertEquals(1, b.getLatency().getCount());
+		assertEquals(0, handlers.get(HandlerSnapshot.key("a", "h")).getFailures());
+		assertEquals(1, metrics.counts().getFailures());
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.rayeye.event.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+
+import com.rayeye.event.EventHandler;
+import com.rayeye.event.impl.TestEvent;
+import com.rayeye.redis.RespServer;
+
+public class RedisBroadcastEventBusTest {
+
+	private RespServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new RespServer();
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	/**
+	 * 在后台线程订阅, 关闭 bus 时订阅连接断开, 线程随之结束.
+	 */
+	private static void monitorInBackground(final RedisBroadcastEventBus eventBus) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				eventBus.monitor();
+			}
+		}, "redis-broadcast-monitor");
+		thread.setDaemon(true);
+		thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread t, Throwable e) {
+				// 连接已关闭
+			}
+		});
+		thread.start();
+	}
+
+	private RedisBroadcastEventBus node(final String name, final List<String> received, final CountDownLatch latch) {
+		RedisBroadcastEventBus bus = new RedisBroadcastEventBus(server.getHost(), server.getPort(), "broadcast");
+		bus.on(new EventHandler<TestEvent>() {
+			@Override
+			public void on(TestEvent event) {
+				received.add(name + ":" + event.getValue());
+				latch.countDown();
+			}
+		});
+		monitorInBackground(bus);
+		return bus;
+	}
+
+	@Test
+	public void testEveryNodeReceives() throws InterruptedException {
+		List<String> received = new CopyOnWriteArrayList<String>();
+		CountDownLatch latch = new CountDownLatch(2);
+		RedisBroadcastEventBus a = node("a", received, latch);
+		RedisBroadcastEventBus b = node("b", received, latch);
+		Jedis jedis = new Jedis(server.getHost(), server.getPort());
+		try {
+			// 等两个节点都订阅上, 不是事件的消息被丢弃
+			while (jedis.publish("broadcast", "probe") < 2) {
+				Thread.sleep(10);
+			}
+
+			a.post(new TestEvent("x"));
+
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+			assertTrue(received.contains("a:x"));
+			assertTrue(received.contains("b:x"));
+			assertEquals(1, b.getMetrics().counts().getConsumed());
+		} finally {
+			jedis.close();
+			a.close();
+			b.close();
+		}
+	}
+
+	@Test
+	public void testCloseUnsubscribes() throws InterruptedException {
+		final RedisBroadcastEventBus bus = new RedisBroadcastEventBus(server.getHost(), server.getPort(), "broadcast");
+		final AtomicBoolean returned = new AtomicBoolean();
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				bus.monitor();
+				returned.set(true);
+			}
+		}, "redis-broadcast-monitor");
+		thread.setDaemon(true);
+		thread.start();
+		Jedis jedis = new Jedis(server.getHost(), server.getPort());
+		try {
+			while (jedis.publish("broadcast", "probe") < 1) {
+				Thread.sleep(10);
+			}
+
+			bus.close();
+			thread.join(5000);
+
+			// 退订后 monitor 正常返回, 而不是因连接关闭抛出异常
+			assertTrue(returned.get());
+			assertEquals(Long.valueOf(0), jedis.publish("broadcast", "probe"));
+		} finally {
+			jedis.close();
+		}
+	}
+}
@@ -1,31 +1,56 @@
 package com.rayeye.event.redis;
 
-import redis.clients.jedis.Jedis;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
 
 import com.rayeye.event.EventHandler;
 import com.rayeye.event.impl.TestEvent;
-import com.rayeye.event.impl.TestEvent2;
+import com.rayeye.redis.RespServer;
 
 public class RedisEventBusMonitorTest {
 
+	private RespServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new RespServer();
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void testBacklogDrainedByConsumer() throws InterruptedException {
+		RedisEventBus producer = new RedisEventBus(server.getHost(), server.getPort());
+		RedisEventBus consumer = new RedisEventBus(server.getHost(), server.getPort());
+		final CountDownLatch latch = new CountDownLatch(100);
+		consumer.on(new EventHandler<TestEvent>() {
+			@Override
+			public void on(TestEvent event) {
+				latch.countDown();
+			}
+		});
+
+		for (int i = 0; i < 100; i++) {
+			producer.post(new TestEvent(String.valueOf(i)));
+		}
+		RedisLagMonitor lag = producer.newLagMonitor();
+		assertEquals(100, lag.sample().get(0).getLength());
 
-	public static void main(String[] args){
-		
-//		final Jedis jedis = new Jedis("127.0.0.1" , 6379);
-//		RedisEventBus eventBus = new RedisEventBus("127.0.0.1" , 6379);
-//		eventBus.on(new EventHandler<TestEvent>() {
-//			@Override
-//			public void on(TestEvent event) {
-//				System.out.println("event1:" +  event.getId());
-//			}
-//		});
-//		
-//		eventBus.on(new EventHandler<TestEvent2>() {
-//			public void on(TestEvent2 event) {
-//				System.out.println("event2:" +  event.getId());
-//			}
-//		});
-//		eventBus.monitor();
+		RedisEventBusTest.monitorInBackground(consumer);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(0, lag.sample().get(0).getLength());
+		lag.stop();
 	}
 
 }
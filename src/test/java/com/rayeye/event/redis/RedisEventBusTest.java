@@ -1,32 +1,90 @@
 package com.rayeye.event.redis;
 
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisMonitor;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.rayeye.event.EventHandler;
 import com.rayeye.event.impl.TestEvent;
 import com.rayeye.event.impl.TestEvent2;
-import com.rayeye.redis.Command;
-import com.rayeye.redis.RedisByteCommand;
+import com.rayeye.redis.RespServer;
 
 public class RedisEventBusTest {
 
-	public static void main(String[] args) {
-//		final Jedis jedis = new Jedis("127.0.0.1" , 6379);
-//		Command cmd = new RedisByteCommand(jedis);
-		
-//		RedisEventBus eventBus = new RedisEventBus("127.0.0.1" , 6379);
-//		
-////		for( int i = 0 ; i < 100000 ; i++) {
-//			eventBus.post(new TestEvent("aaaaaddd1"));
-//			eventBus.post(new TestEvent("aaaaaddd2"));
-//			eventBus.post(new TestEvent2("aaaaaddd1"));
-//			eventBus.post(new TestEvent2("aaaaaddd2"));
-////		}
-
-		
-		
-		
-		
+	private RespServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new RespServer();
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	/**
+	 * 在后台线程订阅, 关闭 server 时订阅连接断开, 线程随之结束.
+	 */
+	static void monitorInBackground(final RedisEventBus eventBus) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				eventBus.monitor();
+			}
+		}, "redis-event-bus-monitor");
+		thread.setDaemon(true);
+		thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread t, Throwable e) {
+				// server 已关闭
+			}
+		});
+		thread.start();
+	}
+
+	@Test
+	public void testPostAndMonitor() throws InterruptedException {
+		RedisEventBus eventBus = new RedisEventBus(server.getHost(), server.getPort());
+		final List<String> received = new CopyOnWriteArrayList<String>();
+		final CountDownLatch latch = new CountDownLatch(4);
+
+		eventBus.on(new EventHandler<TestEvent>() {
+			@Override
+			public void on(TestEvent event) {
+				received.add("event1:" + event.getValue());
+				latch.countDown();
+			}
+		});
+		eventBus.on(new EventHandler<TestEvent2>() {
+			@Override
+			public void on(TestEvent2 event) {
+				received.add("event2:" + event.getValue());
+				latch.countDown();
+			}
+		});
+
+		// 订阅之前发布的事件在订阅成功时补偿处理
+		eventBus.post(new TestEvent("a"));
+		eventBus.post(new TestEvent2("b"));
+		monitorInBackground(eventBus);
+		eventBus.post(new TestEvent("c"));
+		eventBus.post(new TestEvent2("d"));
+
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		Collections.sort(received);
+		assertEquals("[event1:a, event1:c, event2:b, event2:d]", received.toString());
+		assertEquals(4, eventBus.getMetrics().snapshot().getConsumed());
 	}
 
 }
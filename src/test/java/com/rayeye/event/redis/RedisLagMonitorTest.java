@@ -0,0 +1,83 @@
+package com.rayeye.event.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.rayeye.event.impl.TestEvent;
+import com.rayeye.event.metrics.DefaultEventBusMetrics;
+import com.rayeye.event.metrics.LagSample;
+import com.rayeye.event.store.StoreEvent;
+import com.rayeye.redis.MemoryCommand;
+
+public class RedisLagMonitorTest {
+
+	@Test
+	public void testSampleAndThresholds() {
+		MemoryCommand command = new MemoryCommand();
+		DefaultEventBusMetrics metrics = new DefaultEventBusMetrics();
+		final List<String> notified = new ArrayList<String>();
+
+		RedisLagMonitor monitor = new RedisLagMonitor(command, metrics, "events")
+			.setMaxLength(1)
+			.addListener(new LagListener() {
+				@Override
+				public void exceeded(LagSample sample) {
+					notified.add("exceeded:" + sample.getLength());
+				}
+
+				@Override
+				public void recovered(LagSample sample) {
+					notified.add("recovered:" + sample.getLength());
+				}
+			});
+
+		long published = System.currentTimeMillis() - 5000;
+		command.push("events", new StoreEvent(new TestEvent("a"))
+			.setHeader(StoreEvent.HEADER_TIMESTAMP, String.valueOf(published)));
+		command.push("events", new StoreEvent(new TestEvent("b")));
+
+		LagSample sample = monitor.sample().get(0);
+		assertEquals(2, sample.getLength());
+		assertTrue(sample.getOldestAgeMillis() >= 5000);
+		assertEquals(sample.getLength(), metrics.snapshot().getLags().get("events").getLength());
+
+		// 状态未变化时不重复通知
+		monitor.sample();
+
+		command.pop("events", StoreEvent.class);
+		command.pop("events", StoreEvent.class);
+		sample = monitor.sample().get(0);
+		assertEquals(0, sample.getLength());
+		assertEquals(-1, sample.getOldestAgeMillis());
+
+		assertEquals(2, notified.size());
+		assertEquals("exceeded:2", notified.get(0));
+		assertEquals("recovered:0", notified.get(1));
+	}
+
+	@Test
+	public void testStopClosesOwnedConnection() throws InterruptedException {
+		final AtomicBoolean closed = new AtomicBoolean();
+		RedisLagMonitor monitor = new RedisLagMonitor(new MemoryCommand(), new DefaultEventBusMetrics(), "events")
+			.closeOnStop(new Closeable() {
+				@Override
+				public void close() {
+					closed.set(true);
+				}
+			});
+		monitor.start(1, TimeUnit.MILLISECONDS);
+		Thread.sleep(20);
+		monitor.stop();
+
+		assertTrue(closed.get());
+	}
+
+}
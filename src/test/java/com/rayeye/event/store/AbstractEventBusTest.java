@@ -0,0 +1,267 @@
+package com.rayeye.event.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.rayeye.event.Event;
+import com.rayeye.event.EventBus;
+import com.rayeye.event.EventHandler;
+import com.rayeye.event.impl.TestEvent;
+import com.rayeye.event.impl.TestEvent2;
+import com.rayeye.event.metrics.EventBusMetrics;
+import com.rayeye.event.metrics.MetricsSnapshot;
+
+public class AbstractEventBusTest {
+
+	/**
+	 * 用内存队列代替 redis 的 event bus.
+	 */
+	static class MemoryEventBus extends AbstractEventBus {
+
+		private final LinkedList<StoreEvent> queue = new LinkedList<StoreEvent>();
+
+		@Override
+		protected void put(StoreEvent event) {
+			queue.addFirst(event);
+		}
+
+		@Override
+		protected void run(EventBus eventBus) {
+			StoreEvent event = queue.pollLast();
+			if (event != null) {
+				dispatch(eventBus, event);
+			}
+		}
+
+		StoreEvent peek() {
+			return queue.peekLast();
+		}
+
+		void drain() {
+			while (!queue.isEmpty()) {
+				run(read);
+			}
+		}
+	}
+
+	@Test
+	public void testDispatchByExactType() {
+		MemoryEventBus bus = new MemoryEventBus();
+		final List<String> received = new ArrayList<String>();
+		bus.on(new EventHandler<TestEvent>() {
+			@Override
+			public void on(TestEvent event) {
+				received.add("1:" + event.getValue());
+			}
+		});
+		bus.on(new EventHandler<TestEvent2>() {
+			@Override
+			public void on(TestEvent2 event) {
+				received.add("2:" + event.getValue());
+			}
+		});
+
+		bus.post(new TestEvent("a"));
+		bus.post(new TestEvent2("b"));
+		bus.drain();
+
+		assertEquals(2, received.size());
+		assertEquals("1:a", received.get(0));
+		assertEquals("2:b", received.get(1));
+	}
+
+	@Test
+	public void testDispatchToSuperType() {
+		MemoryEventBus bus = new MemoryEventBus();
+		final List<String> received = new ArrayList<String>();
+		bus.on(new EventHandler<Event>() {
+			@Override
+			public void on(Event event) {
+				received.add(event.getClass().getSimpleName());
+			}
+		});
+
+		bus.post(new TestEvent("a"));
+		bus.post(new TestEvent2("b"));
+		bus.drain();
+
+		assertEquals(2, received.size());
+		assertEquals("TestEvent", received.get(0));
+		assertEquals("TestEvent2", received.get(1));
+	}
+
+	@Test
+	public void testHandlerRegisteredAfterFirstDispatch() {
+		MemoryEventBus bus = new MemoryEventBus();
+		final List<String> received = new ArrayList<String>();
+		bus.on(new EventHandler<TestEvent>() {
+			@Override
+			public void on(TestEvent event) {
+				received.add("exact");
+			}
+		});
+		bus.post(new TestEvent("a"));
+		bus.drain();
+
+		bus.on(new EventHandler<Event>() {
+			@Override
+			public void on(Event event) {
+				received.add("super");
+			}
+		});
+		bus.post(new TestEvent("b"));
+		bus.drain();
+
+		assertEquals(3, received.size());
+	}
+
+	@Test
+	public void testFilterBeforeParse() {
+		MemoryEventBus bus = new MemoryEventBus();
+		final List<String> received = new ArrayList<String>();
+		bus.on(new EventHandler<Event>() {
+			@Override
+			public void on(Event event) {
+				received.add(event.getClass().getSimpleName());
+			}
+		});
+		bus.filter(EventFilters.types(TestEvent2.class));
+
+		bus.post(new TestEvent("a"));
+		bus.post(new TestEvent2("b"));
+		bus.drain();
+
+		assertEquals(1, received.size());
+		assertEquals("TestEvent2", received.get(0));
+	}
+
+	private static final List<String> INITIALIZED = new ArrayList<String>();
+
+	/**
+	 * 初始化时记录到 INITIALIZED.
+	 */
+	static class StaticInitEvent {
+		static {
+			INITIALIZED.add(StaticInitEvent.class.getName());
+		}
+	}
+
+	@Test
+	public void testSkipEventWithoutHandler() {
+		MemoryEventBus bus = new MemoryEventBus();
+		bus.on(new EventHandler<TestEvent>() {
+			@Override
+			public void on(TestEvent event) {
+			}
+		});
+
+		StoreEvent unknown = new StoreEvent("1", "not json", TestEvent2.class.getName());
+		StoreEvent missing = new StoreEvent("2", "not json", "com.rayeye.event.NoSuchEvent");
+
+		assertFalse(bus.accept(unknown));
+		assertFalse(bus.accept(missing));
+		assertTrue(bus.accept(new StoreEvent(new TestEvent("a"))));
+	}
+
+	@Test
+	public void testUnknownTypesDroppedTogether() {
+		MemoryEventBus bus = new MemoryEventBus();
+		bus.on(new EventHandler<TestEvent>() {
+			@Override
+			public void on(TestEvent event) {
+			}
+		});
+
+		bus.put(new StoreEvent("1", "{}", "com.rayeye.event.NoSuchEvent1"));
+		bus.put(new StoreEvent("2", "{}", "com.rayeye.event.NoSuchEvent2"));
+		bus.put(new StoreEvent("3", "{}", StaticInitEvent.class.getName()));
+		bus.drain();
+
+		// 加载判断 handler 时不初始化类
+		assertTrue(INITIALIZED.isEmpty());
+		MetricsSnapshot snapshot = bus.getMetrics().snapshot();
+		assertEquals(2, snapshot.getTypes().get(EventBusMetrics.UNKNOWN_TYPE).getDropped());
+		assertEquals(1, snapshot.getTypes().get(StaticInitEvent.class.getName()).getDropped());
+		assertNull(snapshot.getTypes().get("com.rayeye.event.NoSuchEvent1"));
+	}
+
+	@Test
+	public void testHeadersAndLatency() {
+		final MemoryEventBus bus = new MemoryEventBus();
+		bus.setNode("node-1");
+		final List<String> traces = new ArrayList<String>();
+		bus.on(new EventHandler<TestEvent>() {
+			@Override
+			public void on(TestEvent event) {
+				bus.post(new TestEvent2("child"));
+			}
+		});
+		bus.on(new EventHandler<TestEvent2>() {
+			@Override
+			public void on(TestEvent2 event) {
+			}
+		});
+
+		bus.post(new TestEvent("a"));
+		StoreEvent parent = bus.peek();
+		assertEquals("node-1", parent.getHeader(StoreEvent.HEADER_NODE));
+		assertEquals(1L, parent.getLongHeader(StoreEvent.HEADER_SEQUENCE, -1));
+		assertTrue(parent.getLongHeader(StoreEvent.HEADER_TIMESTAMP, -1) > 0);
+		traces.add(parent.getHeader(StoreEvent.HEADER_TRACE_ID));
+
+		bus.run(bus.read);
+		StoreEvent child = bus.peek();
+		assertEquals(2L, child.getLongHeader(StoreEvent.HEADER_SEQUENCE, -1));
+		// handler 中发布的事件沿用父事件的 trace id
+		assertEquals(traces.get(0), child.getHeader(StoreEvent.HEADER_TRACE_ID));
+		bus.drain();
+
+		MetricsSnapshot snapshot = bus.getMetrics().snapshot();
+		assertEquals(1, snapshot.getTypes().get(TestEvent.class.getName()).getDispatch().getCount());
+		assertEquals(1, snapshot.getTypes().get(TestEvent2.class.getName()).getQueued().getCount());
+	}
+
+	@Test
+	public void testMetrics() {
+		MemoryEventBus bus = new MemoryEventBus();
+		final List<String> received = new ArrayList<String>();
+		bus.on(new EventHandler<TestEvent>() {
+			@Override
+			public void on(TestEvent event) {
+				throw new IllegalStateException("boom");
+			}
+		});
+		bus.on(new EventHandler<Event>() {
+			@Override
+			public void on(Event event) {
+				received.add(event.getId());
+			}
+		});
+		bus.filter(EventFilters.types(TestEvent.class));
+
+		bus.post(new TestEvent("a"));
+		bus.post(new TestEvent2("b"));
+		bus.drain();
+
+		// 前一个 handler 失败不影响后面的 handler
+		assertEquals(1, received.size());
+
+		MetricsSnapshot snapshot = bus.getMetrics().snapshot();
+		assertEquals(2, snapshot.getPosted());
+		assertEquals(2, snapshot.getStored());
+		assertEquals(1, snapshot.getConsumed());
+		assertEquals(1, snapshot.getDropped());
+		assertEquals(1, snapshot.getFailures());
+		assertEquals(1, snapshot.getTypes().get(TestEvent2.class.getName()).getDropped());
+		assertEquals(2, snapshot.getHandlers().size());
+	}
+
+}
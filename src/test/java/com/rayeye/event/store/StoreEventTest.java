@@ -0,0 +1,32 @@
+package com.rayeye.event.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import com.alibaba.fastjson.JSON;
+import com.rayeye.event.impl.TestEvent;
+
+public class StoreEventTest {
+
+	@Test
+	public void testHeadersRoundTrip() throws ClassNotFoundException {
+		TestEvent event = new TestEvent("a");
+		StoreEvent store = new StoreEvent(event)
+			.setHeader(StoreEvent.HEADER_TIMESTAMP, "100")
+			.setHeader(StoreEvent.HEADER_TRACE_ID, "trace");
+
+		String json = JSON.toJSONString(store);
+		// 事件内容只保存在 value 中
+		assertFalse(json.contains("\"event\""));
+
+		StoreEvent read = JSON.parseObject(json, StoreEvent.class);
+		assertEquals(event.getId(), read.getId());
+		assertEquals(100L, read.getLongHeader(StoreEvent.HEADER_TIMESTAMP, -1));
+		assertEquals("trace", read.getHeader(StoreEvent.HEADER_TRACE_ID));
+		assertEquals(-1L, read.getLongHeader(StoreEvent.HEADER_SEQUENCE, -1));
+		assertEquals("a", ((TestEvent) read.getEvent()).getValue());
+	}
+
+}
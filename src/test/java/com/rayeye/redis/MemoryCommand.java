@@ -0,0 +1,137 @@
+package com.rayeye.redis;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 内存中的 {@link Command}, 与 {@link RedisByteCommand} 一样以 JSON 字节保存, 用于测试.
+ * 不支持过期时间.
+ */
+public class MemoryCommand implements Command {
+
+	private final ConcurrentMap<String, byte[]> values = new ConcurrentHashMap<String, byte[]>();
+	private final ConcurrentMap<String, LinkedList<byte[]>> lists = new ConcurrentHashMap<String, LinkedList<byte[]>>();
+
+	@Override
+	public void set(String key, Object value) {
+		values.put(key, JSON.toJSONBytes(value));
+	}
+
+	@Override
+	public Map<String, Object> get(String key) {
+		byte[] bytes = values.get(key);
+		return bytes == null ? null : (JSONObject) JSON.parse(bytes);
+	}
+
+	@Override
+	public <T> T get(String key, Type type) {
+		return parse(values.get(key), type);
+	}
+
+	@Override
+	public void set(String key, Object value, int seconds) {
+		set(key, value);
+	}
+
+	@Override
+	public <T> T get(String key, Type type, int seconds) {
+		return get(key, type);
+	}
+
+	@Override
+	public void delete(String key) {
+		values.remove(key);
+		lists.remove(key);
+	}
+
+	@Override
+	public void delete(Collection<String> keys) {
+		for (String key : keys) {
+			delete(key);
+		}
+	}
+
+	@Override
+	public <T> long push(String key, Collection<T> values) {
+		long result = 0;
+		for (T t : values) {
+			result = push(key, t);
+		}
+		return result;
+	}
+
+	@Override
+	public long push(String key, Object value) {
+		LinkedList<byte[]> list = list(key);
+		synchronized (list) {
+			list.addFirst(JSON.toJSONBytes(value));
+			return list.size();
+		}
+	}
+
+	@Override
+	public Map<String, Object> pop(String key) {
+		return pop(key, JSONObject.class);
+	}
+
+	@Override
+	public <T> T pop(String key, Type type) {
+		LinkedList<byte[]> list = list(key);
+		synchronized (list) {
+			return parse(list.pollLast(), type);
+		}
+	}
+
+	@Override
+	public Map<String, Object> rpop(String key) {
+		return rpop(key, JSONObject.class);
+	}
+
+	@Override
+	public <T> T rpop(String key, Type type) {
+		LinkedList<byte[]> list = list(key);
+		synchronized (list) {
+			return parse(list.pollFirst(), type);
+		}
+	}
+
+	@Override
+	public long length(String key) {
+		LinkedList<byte[]> list = list(key);
+		synchronized (list) {
+			return list.size();
+		}
+	}
+
+	@Override
+	public <T> T peek(String key, Type type) {
+		LinkedList<byte[]> list = list(key);
+		synchronized (list) {
+			return parse(list.peekLast(), type);
+		}
+	}
+
+	private LinkedList<byte[]> list(String key) {
+		LinkedList<byte[]> list = lists.get(key);
+		if (list == null) {
+			lists.putIfAbsent(key, new LinkedList<byte[]>());
+			list = lists.get(key);
+		}
+		return list;
+	}
+
+	private <T> T parse(byte[] bytes, Type type) {
+		if (bytes == null) {
+			return null;
+		}
+		return JSON.parseObject(bytes, type);
+	}
+
+}
@@ -0,0 +1,875 @@
+package com.rayeye.redis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的内嵌 RESP 服务, 只实现事件总线和 {@link RedisByteCommand} 用到的命令:
+ * PING/ECHO/SELECT/QUIT/FLUSHALL/FLUSHDB/DBSIZE, DEL/EXISTS/SET/SETEX/GET/EXPIRE/TTL,
+ * LPUSH/RPUSH/LPOP/RPOP/LLEN/LINDEX/LRANGE/BLPOP/BRPOP, PUBLISH/SUBSCRIBE/UNSUBSCRIBE,
+ * XADD/XLEN/XRANGE. 每个连接一个线程, 支持 pipeline: 输入缓冲读空后才 flush 回复.
+ * <p>
+ * 监听 127.0.0.1 上的随机端口, 用 {@link #getPort()} 取得端口后交给 Jedis 连接.
+ */
+public class RespServer implements Closeable {
+
+	private static final Charset KEY_CHARSET = Charset.forName("ISO-8859-1");
+	private static final byte[] CRLF = { '\r', '\n' };
+
+	private final ServerSocket serverSocket;
+	private final Set<Client> clients = new CopyOnWriteArraySet<Client>();
+	private final AtomicInteger clientIds = new AtomicInteger();
+	private volatile boolean closed;
+
+	/**
+	 * 所有数据共用一把锁, 阻塞的 BLPOP/BRPOP 在这把锁上等待.
+	 */
+	private final Object lock = new Object();
+	private final Map<String, Object> data = new HashMap<String, Object>();
+	private final Map<String, Long> expires = new HashMap<String, Long>();
+	private final Map<String, Set<Client>> channels = new HashMap<String, Set<Client>>();
+
+	public RespServer() throws IOException {
+		this(0);
+	}
+
+	/**
+	 * @param port 监听端口, 0 表示随机端口
+	 */
+	public RespServer(int port) throws IOException {
+		this.serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}, "resp-server-" + serverSocket.getLocalPort());
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public String getHost() {
+		return "127.0.0.1";
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * 清空全部数据, 不影响已有连接和订阅.
+	 */
+	public void flushAll() {
+		synchronized (lock) {
+			data.clear();
+			expires.clear();
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// ignore
+		}
+		for (Client client : clients) {
+			client.close();
+		}
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	private void accept() {
+		while (!closed) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				return;
+			}
+			try {
+				final Client client = new Client(socket);
+				clients.add(client);
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						client.serve();
+					}
+				}, "resp-client-" + clientIds.incrementAndGet());
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				closeQuietly(socket);
+			}
+		}
+	}
+
+	private static void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	private static String key(byte[] bytes) {
+		return new String(bytes, KEY_CHARSET);
+	}
+
+	private static byte[] bytes(String str) {
+		return str.getBytes(KEY_CHARSET);
+	}
+
+	private static String upper(byte[] bytes) {
+		return key(bytes).toUpperCase(Locale.ENGLISH);
+	}
+
+	private static long parseLong(byte[] bytes) {
+		return Long.parseLong(key(bytes));
+	}
+
+	/**
+	 * 读取 key 当前的值, 顺带清理已过期的 key. 调用方需持有 lock.
+	 */
+	private Object lookup(String key) {
+		Long expireAt = expires.get(key);
+		if (expireAt != null && expireAt.longValue() <= System.currentTimeMillis()) {
+			expires.remove(key);
+			data.remove(key);
+			return null;
+		}
+		return data.get(key);
+	}
+
+	private void remove(String key) {
+		data.remove(key);
+		expires.remove(key);
+	}
+
+	@SuppressWarnings("unchecked")
+	private LinkedList<byte[]> list(String key, boolean create) throws WrongTypeException {
+		Object value = lookup(key);
+		if (value == null) {
+			if (!create) {
+				return null;
+			}
+			LinkedList<byte[]> list = new LinkedList<byte[]>();
+			data.put(key, list);
+			return list;
+		}
+		if (!(value instanceof LinkedList)) {
+			throw new WrongTypeException();
+		}
+		return (LinkedList<byte[]>) value;
+	}
+
+	private Stream stream(String key, boolean create) throws WrongTypeException {
+		Object value = lookup(key);
+		if (value == null) {
+			if (!create) {
+				return null;
+			}
+			Stream stream = new Stream();
+			data.put(key, stream);
+			return stream;
+		}
+		if (!(value instanceof Stream)) {
+			throw new WrongTypeException();
+		}
+		return (Stream) value;
+	}
+
+	private static class WrongTypeException extends Exception {
+		private static final long serialVersionUID = 1L;
+	}
+
+	private static class CommandException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		CommandException(String message) {
+			super(message);
+		}
+	}
+
+	private static class Stream {
+		final LinkedList<StreamEntry> entries = new LinkedList<StreamEntry>();
+		long lastMillis;
+		long lastSequence;
+	}
+
+	private static class StreamEntry {
+		final long millis;
+		final long sequence;
+		final List<byte[]> fields;
+
+		StreamEntry(long millis, long sequence, List<byte[]> fields) {
+			this.millis = millis;
+			this.sequence = sequence;
+			this.fields = fields;
+		}
+
+		String id() {
+			return millis + "-" + sequence;
+		}
+
+		int compareTo(long otherMillis, long otherSequence) {
+			if (millis != otherMillis) {
+				return millis < otherMillis ? -1 : 1;
+			}
+			return sequence < otherSequence ? -1 : (sequence == otherSequence ? 0 : 1);
+		}
+	}
+
+	/**
+	 * 解析 stream id, "-" 和 "+" 分别表示最小和最大值, 省略序号时取 defaultSequence.
+	 */
+	private static long[] parseStreamId(byte[] bytes, long defaultSequence) throws CommandException {
+		String id = key(bytes);
+		if ("-".equals(id)) {
+			return new long[] { 0, 0 };
+		}
+		if ("+".equals(id)) {
+			return new long[] { Long.MAX_VALUE, Long.MAX_VALUE };
+		}
+		try {
+			int dash = id.indexOf('-');
+			if (dash < 0) {
+				return new long[] { Long.parseLong(id), defaultSequence };
+			}
+			return new long[] { Long.parseLong(id.substring(0, dash)), Long.parseLong(id.substring(dash + 1)) };
+		} catch (NumberFormatException e) {
+			throw new CommandException("ERR Invalid stream ID specified as stream command argument");
+		}
+	}
+
+	private class Client {
+		private final Socket socket;
+		private final InputStream in;
+		private final OutputStream out;
+		private final Set<String> subscriptions = new LinkedHashSet<String>();
+
+		Client(Socket socket) throws IOException {
+			this.socket = socket;
+			this.socket.setTcpNoDelay(true);
+			this.in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+			this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+		}
+
+		void close() {
+			closeQuietly(socket);
+		}
+
+		void serve() {
+			try {
+				List<byte[]> args;
+				while ((args = readCommand()) != null) {
+					if (args.isEmpty()) {
+						continue;
+					}
+					if (!execute(args)) {
+						break;
+					}
+					// pipeline 中还有未读的命令时先不 flush, 合并回复
+					if (in.available() == 0) {
+						flush();
+					}
+				}
+				flush();
+			} catch (SocketException e) {
+				// 连接被关闭
+			} catch (IOException e) {
+				// 连接被关闭
+			} finally {
+				unsubscribeAll();
+				clients.remove(this);
+				close();
+			}
+		}
+
+		private List<byte[]> readCommand() throws IOException {
+			int b = in.read();
+			if (b < 0) {
+				return null;
+			}
+			if (b != '*') {
+				// inline 命令, 以空格分隔
+				String line = (char) b + readLine();
+				List<byte[]> args = new ArrayList<byte[]>();
+				for (String part : line.trim().split("\\s+")) {
+					if (part.length() > 0) {
+						args.add(bytes(part));
+					}
+				}
+				return args;
+			}
+			int count = Integer.parseInt(readLine());
+			List<byte[]> args = new ArrayList<byte[]>(Math.max(count, 0));
+			for (int i = 0; i < count; i++) {
+				if (in.read() != '$') {
+					throw new IOException("protocol error: expected bulk string");
+				}
+				int length = Integer.parseInt(readLine());
+				byte[] arg = new byte[length];
+				int read = 0;
+				while (read < length) {
+					int n = in.read(arg, read, length - read);
+					if (n < 0) {
+						throw new EOFException();
+					}
+					read += n;
+				}
+				readLine();
+				args.add(arg);
+			}
+			return args;
+		}
+
+		private String readLine() throws IOException {
+			StringBuilder line = new StringBuilder();
+			int b;
+			while ((b = in.read()) != '\r') {
+				if (b < 0) {
+					throw new EOFException();
+				}
+				line.append((char) b);
+			}
+			if (in.read() != '\n') {
+				throw new IOException("protocol error: expected LF");
+			}
+			return line.toString();
+		}
+
+		/**
+		 * @return false 表示需要关闭连接
+		 */
+		private boolean execute(List<byte[]> args) throws IOException {
+			String name = upper(args.get(0));
+			try {
+				if ("QUIT".equals(name)) {
+					simple("OK");
+					return false;
+				}
+				if (!subscriptions.isEmpty() && !"SUBSCRIBE".equals(name) && !"UNSUBSCRIBE".equals(name)
+						&& !"PING".equals(name)) {
+					throw new CommandException("ERR only (P)SUBSCRIBE / (P)UNSUBSCRIBE / PING / QUIT allowed in this context");
+				}
+				dispatch(name, args);
+			} catch (WrongTypeException e) {
+				error("WRONGTYPE Operation against a key holding the wrong kind of value");
+			} catch (CommandException e) {
+				error(e.getMessage());
+			} catch (NumberFormatException e) {
+				error("ERR value is not an integer or out of range");
+			}
+			return true;
+		}
+
+		private void dispatch(String name, List<byte[]> args) throws IOException, WrongTypeException, CommandException {
+			if ("PING".equals(name)) {
+				if (args.size() > 1) {
+					bulk(args.get(1));
+				} else {
+					simple("PONG");
+				}
+			} else if ("ECHO".equals(name)) {
+				arity(args, 2);
+				bulk(args.get(1));
+			} else if ("SELECT".equals(name)) {
+				arity(args, 2);
+				simple("OK");
+			} else if ("FLUSHALL".equals(name) || "FLUSHDB".equals(name)) {
+				flushAll();
+				simple("OK");
+			} else if ("DBSIZE".equals(name)) {
+				synchronized (lock) {
+					integer(data.size());
+				}
+			} else if ("DEL".equals(name) || "EXISTS".equals(name)) {
+				minArity(args, 2);
+				long count = 0;
+				synchronized (lock) {
+					for (int i = 1; i < args.size(); i++) {
+						String key = key(args.get(i));
+						if (lookup(key) != null) {
+							count++;
+							if ("DEL".equals(name)) {
+								remove(key);
+							}
+						}
+					}
+				}
+				integer(count);
+			} else if ("SET".equals(name)) {
+				set(args);
+			} else if ("SETEX".equals(name)) {
+				arity(args, 4);
+				synchronized (lock) {
+					String key = key(args.get(1));
+					data.put(key, args.get(3));
+					expires.put(key, System.currentTimeMillis() + parseLong(args.get(2)) * 1000);
+				}
+				simple("OK");
+			} else if ("GET".equals(name)) {
+				arity(args, 2);
+				Object value;
+				synchronized (lock) {
+					value = lookup(key(args.get(1)));
+				}
+				if (value != null && !(value instanceof byte[])) {
+					throw new WrongTypeException();
+				}
+				bulk((byte[]) value);
+			} else if ("EXPIRE".equals(name)) {
+				arity(args, 3);
+				long seconds = parseLong(args.get(2));
+				synchronized (lock) {
+					String key = key(args.get(1));
+					if (lookup(key) == null) {
+						integer(0);
+					} else {
+						expires.put(key, System.currentTimeMillis() + seconds * 1000);
+						integer(1);
+					}
+				}
+			} else if ("TTL".equals(name)) {
+				arity(args, 2);
+				synchronized (lock) {
+					String key = key(args.get(1));
+					Long expireAt = expires.get(key);
+					if (lookup(key) == null) {
+						integer(-2);
+					} else if (expireAt == null) {
+						integer(-1);
+					} else {
+						integer((expireAt.longValue() - System.currentTimeMillis() + 999) / 1000);
+					}
+				}
+			} else if ("LPUSH".equals(name) || "RPUSH".equals(name)) {
+				minArity(args, 3);
+				synchronized (lock) {
+					LinkedList<byte[]> list = list(key(args.get(1)), true);
+					for (int i = 2; i < args.size(); i++) {
+						if ("LPUSH".equals(name)) {
+							list.addFirst(args.get(i));
+						} else {
+							list.addLast(args.get(i));
+						}
+					}
+					lock.notifyAll();
+					integer(list.size());
+				}
+			} else if ("LPOP".equals(name) || "RPOP".equals(name)) {
+				arity(args, 2);
+				byte[] value = null;
+				synchronized (lock) {
+					String key = key(args.get(1));
+					LinkedList<byte[]> list = list(key, false);
+					if (list != null) {
+						value = "LPOP".equals(name) ? list.pollFirst() : list.pollLast();
+						if (list.isEmpty()) {
+							remove(key);
+						}
+					}
+				}
+				bulk(value);
+			} else if ("LLEN".equals(name)) {
+				arity(args, 2);
+				synchronized (lock) {
+					LinkedList<byte[]> list = list(key(args.get(1)), false);
+					integer(list == null ? 0 : list.size());
+				}
+			} else if ("LINDEX".equals(name)) {
+				arity(args, 3);
+				byte[] value = null;
+				synchronized (lock) {
+					LinkedList<byte[]> list = list(key(args.get(1)), false);
+					if (list != null) {
+						int index = (int) parseLong(args.get(2));
+						if (index < 0) {
+							index += list.size();
+						}
+						if (index >= 0 && index < list.size()) {
+							value = list.get(index);
+						}
+					}
+				}
+				bulk(value);
+			} else if ("LRANGE".equals(name)) {
+				arity(args, 4);
+				List<byte[]> values = new ArrayList<byte[]>();
+				synchronized (lock) {
+					LinkedList<byte[]> list = list(key(args.get(1)), false);
+					if (list != null) {
+						int size = list.size();
+						int start = (int) parseLong(args.get(2));
+						int stop = (int) parseLong(args.get(3));
+						start = Math.max(start < 0 ? start + size : start, 0);
+						stop = Math.min(stop < 0 ? stop + size : stop, size - 1);
+						if (start <= stop) {
+							values.addAll(list.subList(start, stop + 1));
+						}
+					}
+				}
+				array(values);
+			} else if ("BLPOP".equals(name) || "BRPOP".equals(name)) {
+				blockingPop(args, "BLPOP".equals(name));
+			} else if ("PUBLISH".equals(name)) {
+				arity(args, 3);
+				Set<Client> receivers;
+				synchronized (lock) {
+					Set<Client> subscribers = channels.get(key(args.get(1)));
+					receivers = subscribers == null ? new HashSet<Client>() : new HashSet<Client>(subscribers);
+				}
+				for (Client receiver : receivers) {
+					receiver.message(args.get(1), args.get(2));
+				}
+				integer(receivers.size());
+			} else if ("SUBSCRIBE".equals(name)) {
+				minArity(args, 2);
+				for (int i = 1; i < args.size(); i++) {
+					String channel = key(args.get(i));
+					synchronized (lock) {
+						Set<Client> subscribers = channels.get(channel);
+						if (subscribers == null) {
+							subscribers = new HashSet<Client>();
+							channels.put(channel, subscribers);
+						}
+						subscribers.add(this);
+					}
+					synchronized (out) {
+						subscriptions.add(channel);
+						subscription("subscribe", args.get(i));
+					}
+				}
+			} else if ("UNSUBSCRIBE".equals(name)) {
+				List<String> targets = new ArrayList<String>();
+				if (args.size() > 1) {
+					for (int i = 1; i < args.size(); i++) {
+						targets.add(key(args.get(i)));
+					}
+				} else {
+					synchronized (out) {
+						targets.addAll(subscriptions);
+					}
+				}
+				if (targets.isEmpty()) {
+					subscription("unsubscribe", null);
+				}
+				for (String channel : targets) {
+					unsubscribe(channel);
+					synchronized (out) {
+						subscriptions.remove(channel);
+						subscription("unsubscribe", bytes(channel));
+					}
+				}
+			} else if ("XADD".equals(name)) {
+				xadd(args);
+			} else if ("XLEN".equals(name)) {
+				arity(args, 2);
+				synchronized (lock) {
+					Stream stream = stream(key(args.get(1)), false);
+					integer(stream == null ? 0 : stream.entries.size());
+				}
+			} else if ("XRANGE".equals(name)) {
+				xrange(args);
+			} else {
+				throw new CommandException("ERR unknown command '" + key(args.get(0)) + "'");
+			}
+		}
+
+		private void set(List<byte[]> args) throws IOException, CommandException {
+			minArity(args, 3);
+			long expireAt = -1;
+			for (int i = 3; i < args.size(); i++) {
+				String option = upper(args.get(i));
+				if (("EX".equals(option) || "PX".equals(option)) && i + 1 < args.size()) {
+					long amount = parseLong(args.get(++i));
+					expireAt = System.currentTimeMillis() + ("EX".equals(option) ? amount * 1000 : amount);
+				} else {
+					throw new CommandException("ERR syntax error");
+				}
+			}
+			synchronized (lock) {
+				String key = key(args.get(1));
+				data.put(key, args.get(2));
+				if (expireAt > 0) {
+					expires.put(key, expireAt);
+				} else {
+					expires.remove(key);
+				}
+			}
+			simple("OK");
+		}
+
+		private void blockingPop(List<byte[]> args, boolean left) throws IOException, WrongTypeException, CommandException {
+			minArity(args, 3);
+			double timeout = Double.parseDouble(key(args.get(args.size() - 1)));
+			long deadline = timeout > 0 ? System.currentTimeMillis() + (long) (timeout * 1000) : Long.MAX_VALUE;
+			// 等待前先把 pipeline 中已有的回复发出去
+			flush();
+			synchronized (lock) {
+				while (!closed) {
+					for (int i = 1; i < args.size() - 1; i++) {
+						String key = key(args.get(i));
+						LinkedList<byte[]> list = list(key, false);
+						if (list != null && !list.isEmpty()) {
+							byte[] value = left ? list.pollFirst() : list.pollLast();
+							if (list.isEmpty()) {
+								remove(key);
+							}
+							array(Arrays.asList(args.get(i), value));
+							return;
+						}
+					}
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						break;
+					}
+					try {
+						lock.wait(remaining);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+			array(null);
+		}
+
+		private void xadd(List<byte[]> args) throws IOException, WrongTypeException, CommandException {
+			minArity(args, 5);
+			int index = 2;
+			long maxLength = -1;
+			if ("MAXLEN".equals(upper(args.get(index)))) {
+				index++;
+				String modifier = key(args.get(index));
+				if ("~".equals(modifier) || "=".equals(modifier)) {
+					index++;
+				}
+				maxLength = parseLong(args.get(index++));
+			}
+			if (index >= args.size() || (args.size() - index - 1) % 2 != 0 || args.size() - index - 1 == 0) {
+				throw new CommandException("ERR wrong number of arguments for 'xadd' command");
+			}
+			byte[] idArg = args.get(index++);
+			List<byte[]> fields = new ArrayList<byte[]>(args.subList(index, args.size()));
+
+			StreamEntry entry;
+			synchronized (lock) {
+				Stream stream = stream(key(args.get(1)), false);
+				long lastMillis = stream == null ? 0 : stream.lastMillis;
+				long lastSequence = stream == null ? 0 : stream.lastSequence;
+				long millis;
+				long sequence;
+				if ("*".equals(key(idArg))) {
+					millis = Math.max(System.currentTimeMillis(), lastMillis);
+					sequence = millis == lastMillis ? lastSequence + 1 : 0;
+				} else {
+					long[] id = parseStreamId(idArg, 0);
+					millis = id[0];
+					sequence = id[1];
+				}
+				if (millis < lastMillis || (millis == lastMillis && sequence <= lastSequence)) {
+					throw new CommandException("ERR The ID specified in XADD is equal or smaller than the target stream top item");
+				}
+				if (stream == null) {
+					stream = stream(key(args.get(1)), true);
+				}
+				entry = new StreamEntry(millis, sequence, fields);
+				stream.entries.addLast(entry);
+				stream.lastMillis = millis;
+				stream.lastSequence = sequence;
+				if (maxLength >= 0) {
+					while (stream.entries.size() > maxLength) {
+						stream.entries.removeFirst();
+					}
+				}
+			}
+			bulk(bytes(entry.id()));
+		}
+
+		private void xrange(List<byte[]> args) throws IOException, WrongTypeException, CommandException {
+			minArity(args, 4);
+			long[] start = parseStreamId(args.get(2), 0);
+			long[] end = parseStreamId(args.get(3), Long.MAX_VALUE);
+			long count = Long.MAX_VALUE;
+			if (args.size() == 6 && "COUNT".equals(upper(args.get(4)))) {
+				count = parseLong(args.get(5));
+			} else if (args.size() != 4) {
+				throw new CommandException("ERR syntax error");
+			}
+			List<StreamEntry> matched = new ArrayList<StreamEntry>();
+			synchronized (lock) {
+				Stream stream = stream(key(args.get(1)), false);
+				if (stream != null) {
+					for (Iterator<StreamEntry> it = stream.entries.iterator(); it.hasNext() && matched.size() < count;) {
+						StreamEntry entry = it.next();
+						if (entry.compareTo(start[0], start[1]) >= 0 && entry.compareTo(end[0], end[1]) <= 0) {
+							matched.add(entry);
+						}
+					}
+				}
+			}
+			synchronized (out) {
+				header('*', matched.size());
+				for (StreamEntry entry : matched) {
+					header('*', 2);
+					bulk(bytes(entry.id()));
+					array(entry.fields);
+				}
+			}
+		}
+
+		private void arity(List<byte[]> args, int expected) throws CommandException {
+			if (args.size() != expected) {
+				throw wrongArity(args);
+			}
+		}
+
+		private void minArity(List<byte[]> args, int expected) throws CommandException {
+			if (args.size() < expected) {
+				throw wrongArity(args);
+			}
+		}
+
+		private CommandException wrongArity(List<byte[]> args) {
+			return new CommandException("ERR wrong number of arguments for '"
+					+ key(args.get(0)).toLowerCase(Locale.ENGLISH) + "' command");
+		}
+
+		private void unsubscribe(String channel) {
+			synchronized (lock) {
+				Set<Client> subscribers = channels.get(channel);
+				if (subscribers != null) {
+					subscribers.remove(this);
+					if (subscribers.isEmpty()) {
+						channels.remove(channel);
+					}
+				}
+			}
+		}
+
+		private void unsubscribeAll() {
+			List<String> channelNames;
+			synchronized (out) {
+				channelNames = new ArrayList<String>(subscriptions);
+				subscriptions.clear();
+			}
+			for (String channel : channelNames) {
+				unsubscribe(channel);
+			}
+		}
+
+		/**
+		 * 由 PUBLISH 所在的连接线程调用, 立即写出.
+		 */
+		void message(byte[] channel, byte[] message) {
+			try {
+				synchronized (out) {
+					header('*', 3);
+					bulk(bytes("message"));
+					bulk(channel);
+					bulk(message);
+					out.flush();
+				}
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		private void subscription(String kind, byte[] channel) throws IOException {
+			synchronized (out) {
+				header('*', 3);
+				bulk(bytes(kind));
+				bulk(channel);
+				integer(subscriptions.size());
+			}
+		}
+
+		private void simple(String value) throws IOException {
+			synchronized (out) {
+				out.write('+');
+				out.write(bytes(value));
+				out.write(CRLF);
+			}
+		}
+
+		private void error(String message) throws IOException {
+			synchronized (out) {
+				out.write('-');
+				out.write(bytes(message));
+				out.write(CRLF);
+			}
+		}
+
+		private void integer(long value) throws IOException {
+			header(':', value);
+		}
+
+		private void bulk(byte[] value) throws IOException {
+			synchronized (out) {
+				if (value == null) {
+					header('$', -1);
+					return;
+				}
+				header('$', value.length);
+				out.write(value);
+				out.write(CRLF);
+			}
+		}
+
+		private void array(List<byte[]> values) throws IOException {
+			synchronized (out) {
+				if (values == null) {
+					header('*', -1);
+					return;
+				}
+				header('*', values.size());
+				for (byte[] value : values) {
+					bulk(value);
+				}
+			}
+		}
+
+		private void header(char type, long value) throws IOException {
+			synchronized (out) {
+				out.write(type);
+				out.write(bytes(Long.toString(value)));
+				out.write(CRLF);
+			}
+		}
+
+		private void flush() throws IOException {
+			synchronized (out) {
+				out.flush();
+			}
+		}
+	}
+
+}
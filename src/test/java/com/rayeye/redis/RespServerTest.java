@@ -0,0 +1,124 @@
+package com.rayeye.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import com.rayeye.event.impl.TestEvent;
+
+public class RespServerTest {
+
+	private RespServer server;
+	private Jedis jedis;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new RespServer();
+		jedis = new Jedis(server.getHost(), server.getPort());
+	}
+
+	@After
+	public void tearDown() {
+		jedis.disconnect();
+		server.close();
+	}
+
+	@Test
+	public void testCommandThroughJedis() {
+		RedisByteCommand command = new RedisByteCommand(jedis);
+		command.push("events", new TestEvent("a"));
+		command.push("events", new TestEvent("b"));
+
+		assertEquals(2, command.length("events"));
+		assertEquals("a", command.<TestEvent>peek("events", TestEvent.class).getValue());
+		assertEquals("a", command.<TestEvent>pop("events", TestEvent.class).getValue());
+		assertEquals("b", command.<TestEvent>pop("events", TestEvent.class).getValue());
+		assertNull(command.pop("events", TestEvent.class));
+
+		command.set("key", new TestEvent("c"), 60);
+		assertEquals("c", command.<TestEvent>get("key", TestEvent.class).getValue());
+		assertTrue(jedis.ttl("key") > 0);
+	}
+
+	@Test
+	public void testPipeline() {
+		Pipeline pipeline = jedis.pipelined();
+		for (int i = 0; i < 1000; i++) {
+			pipeline.lpush("list", String.valueOf(i));
+		}
+		Response<Long> length = pipeline.llen("list");
+		Response<String> last = pipeline.rpop("list");
+		pipeline.sync();
+
+		assertEquals(Long.valueOf(1000), length.get());
+		assertEquals("0", last.get());
+	}
+
+	@Test
+	public void testBlockingPop() throws InterruptedException {
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Jedis other = new Jedis(server.getHost(), server.getPort());
+				try {
+					Thread.sleep(100);
+					other.lpush("queue", "x");
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					other.disconnect();
+				}
+			}
+		});
+		producer.start();
+
+		List<String> result = jedis.brpop(5, "queue");
+		assertEquals("queue", result.get(0));
+		assertEquals("x", result.get(1));
+		producer.join();
+	}
+
+	@Test
+	public void testStream() throws IOException {
+		Socket socket = new Socket(server.getHost(), server.getPort());
+		try {
+			OutputStream out = socket.getOutputStream();
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+
+			// 两条命令一次写出
+			out.write(("*5\r\n$4\r\nXADD\r\n$1\r\ns\r\n$3\r\n1-1\r\n$1\r\nf\r\n$1\r\nv\r\n"
+					+ "*5\r\n$4\r\nXADD\r\n$1\r\ns\r\n$1\r\n*\r\n$1\r\nf\r\n$1\r\nw\r\n").getBytes("ISO-8859-1"));
+			out.flush();
+			assertEquals("$3", in.readLine());
+			assertEquals("1-1", in.readLine());
+			in.readLine();
+			in.readLine();
+
+			out.write("*5\r\n$4\r\nXADD\r\n$1\r\ns\r\n$3\r\n1-1\r\n$1\r\nf\r\n$1\r\nv\r\n".getBytes("ISO-8859-1"));
+			out.flush();
+			assertTrue(in.readLine().startsWith("-ERR"));
+
+			out.write("*2\r\n$4\r\nXLEN\r\n$1\r\ns\r\n".getBytes("ISO-8859-1"));
+			out.flush();
+			assertEquals(":2", in.readLine());
+		} finally {
+			socket.close();
+		}
+	}
+
+}
@@ -0,0 +1,143 @@
+package com.rayeye.repo.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.fri.timers.entity.Times;
+import org.junit.Test;
+
+import com.rayeye.dbutils.QueryRunner;
+import com.rayeye.dbutils.StubJdbc;
+import com.rayeye.dbutils.TransactionCallback;
+
+public class CachingRepositoryTest {
+
+	private final MapRepository delegate = new MapRepository();
+
+	private static Times times(long id, int year) {
+		return MapRepository.times(id, year);
+	}
+
+	private CachingRepository<Times> repo(long maximumSize) {
+		delegate.fill(3);
+		return new CachingRepository<Times>(delegate, Times.class, maximumSize, 1, TimeUnit.MINUTES);
+	}
+
+	@Test
+	public void testReadThrough() {
+		CachingRepository<Times> repo = repo(10).setSerialized(false);
+		Times first = repo.findById(1L);
+
+		assertSame(first, repo.findById(1));
+		assertEquals(1, delegate.queries);
+		assertEquals(1, repo.getStats().hitCount());
+	}
+
+	@Test
+	public void testMissingRowNotCached() {
+		CachingRepository<Times> repo = repo(10);
+
+		assertNull(repo.findById(9L));
+		assertNull(repo.findById(9L));
+		assertEquals(2, delegate.queries);
+		assertEquals(0, repo.size());
+	}
+
+	@Test
+	public void testInvalidatedByWrites() {
+		CachingRepository<Times> repo = repo(10);
+		repo.findById(1L);
+		repo.update(times(1, 1999));
+
+		assertEquals(1999, repo.findById(1L).getYear());
+		assertEquals(2, delegate.queries);
+
+		repo.findById(2L);
+		repo.removeById(2);
+		assertNull(repo.findById(2L));
+
+		repo.findById(3L);
+		repo.removeAll(Arrays.asList(times(3, 0)));
+		assertNull(repo.findById(3L));
+		// only the updated row read back is cached
+		assertEquals(1, repo.size());
+	}
+
+	@Test
+	public void testInvalidatedAfterCommit() throws SQLException {
+		final CachingRepository<Times> repo = repo(10);
+		delegate.setDb(new QueryRunner(new StubJdbc.Conn(null).dataSource()));
+		repo.findById(1L);
+
+		delegate.getDb().inTransaction(new TransactionCallback<Void>() {
+			@Override
+			public Void doInTransaction(Connection conn) {
+				repo.update(times(1, 1999));
+				assertEquals(0, repo.size());
+				// 提交前并发读取放回缓存的数据
+				repo.findById(1L);
+				assertEquals(1, repo.size());
+				return null;
+			}
+		});
+
+		assertEquals(0, repo.size());
+	}
+
+	@Test
+	public void testLruEviction() {
+		CachingRepository<Times> repo = repo(2);
+		repo.findById(1L);
+		repo.findById(2L);
+		repo.findById(1L);
+		repo.findById(3L);
+
+		assertEquals(2, repo.size());
+		repo.findById(1L);
+		assertEquals(3, delegate.queries);
+		repo.findById(2L);
+		assertEquals(4, delegate.queries);
+	}
+
+	@Test
+	public void testReturnsCopiesByDefault() {
+		CachingRepository<Times> repo = repo(10);
+		Times first = repo.findById(1L);
+		first.setYear(1);
+		Times second = repo.findById(1L);
+
+		assertNotSame(first, second);
+		assertEquals(2001, second.getYear());
+		assertEquals(1L, second.getId());
+		assertEquals(1, delegate.queries);
+	}
+
+	@Test
+	public void testNullIdsIgnored() {
+		CachingRepository<Times> repo = repo(10);
+		repo.findById(1L);
+		repo.update(new Times());
+
+		assertEquals(1, repo.removeAllById(Arrays.asList(2L, null)));
+		assertEquals(1, repo.size());
+	}
+
+	@Test
+	public void testExpireAfterWrite() throws InterruptedException {
+		CachingRepository<Times> repo = new CachingRepository<Times>(delegate, Times.class, 10, 20,
+				TimeUnit.MILLISECONDS);
+		delegate.rows.put(1L, times(1, 2001));
+		repo.findById(1L);
+		Thread.sleep(50);
+		repo.findById(1L);
+
+		assertEquals(2, delegate.queries);
+	}
+}
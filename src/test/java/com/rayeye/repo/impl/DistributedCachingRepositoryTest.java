@@ -0,0 +1,279 @@
+package com.rayeye.repo.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.fri.timers.entity.Times;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import com.rayeye.dbutils.QueryRunner;
+import com.rayeye.dbutils.StubJdbc;
+import com.rayeye.dbutils.TransactionCallback;
+import com.rayeye.event.EventHandler;
+import com.rayeye.event.redis.RedisBroadcastEventBus;
+import com.rayeye.redis.RedisPoolCommand;
+import com.rayeye.redis.RespServer;
+
+public class DistributedCachingRepositoryTest {
+
+	private static final String CHANNEL = "entity-changed";
+
+	private RespServer server;
+	private final List<JedisPool> pools = new ArrayList<JedisPool>();
+	private final List<RedisBroadcastEventBus> buses = new ArrayList<RedisBroadcastEventBus>();
+	private final MapRepository db = new MapRepository();
+
+	@Before
+	public void setUp() throws IOException {
+		server = new RespServer();
+		db.fill(3);
+	}
+
+	@After
+	public void tearDown() {
+		for (RedisBroadcastEventBus bus : buses) {
+			bus.close();
+		}
+		for (JedisPool pool : pools) {
+			pool.destroy();
+		}
+		server.close();
+	}
+
+	private RedisBroadcastEventBus bus() {
+		final RedisBroadcastEventBus bus = new RedisBroadcastEventBus(server.getHost(), server.getPort(), CHANNEL);
+		buses.add(bus);
+		return bus;
+	}
+
+	/**
+	 * 一个节点: 自己的连接池和广播 bus, 共用数据库和 redis.
+	 */
+	private DistributedCachingRepository<Times> node(RedisBroadcastEventBus bus) {
+		JedisPool pool = new JedisPool(server.getHost(), server.getPort());
+		pools.add(pool);
+		return new DistributedCachingRepository<Times>(db, Times.class, new RedisPoolCommand(pool), bus,
+				100, 1, TimeUnit.MINUTES, 60);
+	}
+
+	private DistributedCachingRepository<Times> node() {
+		return node(bus());
+	}
+
+	/**
+	 * 在后台订阅, 直到所有 bus 都订阅上频道才返回.
+	 */
+	private void monitor() throws InterruptedException {
+		for (final RedisBroadcastEventBus bus : buses) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					bus.monitor();
+				}
+			}, "broadcast-monitor");
+			thread.setDaemon(true);
+			thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+				@Override
+				public void uncaughtException(Thread t, Throwable e) {
+					// 连接已关闭
+				}
+			});
+			thread.start();
+		}
+		Jedis jedis = new Jedis(server.getHost(), server.getPort());
+		try {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (jedis.publish(CHANNEL, "probe") < buses.size()) {
+				assertTrue("buses not subscribed", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+		} finally {
+			jedis.close();
+		}
+	}
+
+	private static void awaitSize(CachingRepository<Times> repo, long size) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (repo.size() != size) {
+			assertTrue("cache size " + repo.size(), System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	private String redisValue(long id) {
+		Jedis jedis = new Jedis(server.getHost(), server.getPort());
+		try {
+			return jedis.get("entity:" + Times.class.getName() + ":" + id);
+		} finally {
+			jedis.close();
+		}
+	}
+
+	@Test
+	public void testSharedRedisTier() {
+		DistributedCachingRepository<Times> a = node();
+		DistributedCachingRepository<Times> b = node();
+
+		assertEquals(2001, a.findById(1L).getYear());
+		assertEquals(2001, b.findById(1L).getYear());
+		assertEquals(2001, b.findById(1L).getYear());
+		assertEquals(1, db.queries);
+
+		Jedis jedis = new Jedis(server.getHost(), server.getPort());
+		try {
+			long ttl = jedis.ttl("entity:" + Times.class.getName() + ":1");
+			assertTrue("ttl " + ttl, ttl > 0 && ttl <= 60);
+		} finally {
+			jedis.close();
+		}
+	}
+
+	@Test
+	public void testUpdateInvalidatesOtherNodes() throws InterruptedException {
+		DistributedCachingRepository<Times> a = node();
+		DistributedCachingRepository<Times> b = node();
+		monitor();
+		a.findById(1L);
+		b.findById(1L);
+
+		Times times = new Times();
+		times.setId(1L);
+		times.setYear(1999);
+		times.setMonth(1);
+		a.update(times);
+
+		assertNull(redisValue(1));
+		awaitSize(b, 0);
+		assertEquals(1999, b.findById(1L).getYear());
+		assertEquals(1999, a.findById(1L).getYear());
+		assertEquals(2, db.queries);
+	}
+
+	@Test
+	public void testRemoveAllByIdPublishesOneEvent() throws InterruptedException {
+		final List<EntityChangedEvent> received = new CopyOnWriteArrayList<EntityChangedEvent>();
+		RedisBroadcastEventBus bus = bus();
+		bus.on(new EventHandler<EntityChangedEvent>() {
+			@Override
+			public void on(EntityChangedEvent event) {
+				received.add(event);
+			}
+		});
+		DistributedCachingRepository<Times> a = node();
+		DistributedCachingRepository<Times> b = node(bus);
+		monitor();
+		for (long id = 1; id <= 3; id++) {
+			a.findById(id);
+			b.findById(id);
+		}
+
+		assertEquals(3, a.removeAllById(Arrays.asList(1L, 2L, 3L, null)));
+
+		awaitSize(b, 0);
+		assertEquals(0, a.size());
+		assertNull(redisValue(1));
+		assertNull(redisValue(3));
+		assertEquals(1, received.size());
+		assertEquals(Arrays.asList("1", "2", "3"), received.get(0).getKeys());
+	}
+
+	@Test
+	public void testRedisDeletedAfterCommit() throws Exception {
+		final List<EntityChangedEvent> received = new CopyOnWriteArrayList<EntityChangedEvent>();
+		RedisBroadcastEventBus bus = bus();
+		bus.on(new EventHandler<EntityChangedEvent>() {
+			@Override
+			public void on(EntityChangedEvent event) {
+				received.add(event);
+			}
+		});
+		final DistributedCachingRepository<Times> a = node();
+		monitor();
+		db.setDb(new QueryRunner(new StubJdbc.Conn(null).dataSource()));
+		a.findById(1L);
+
+		db.getDb().inTransaction(new TransactionCallback<Void>() {
+			@Override
+			public Void doInTransaction(Connection conn) throws SQLException {
+				a.removeAllById(Arrays.asList(1L));
+				assertEquals(0, a.size());
+				assertNotNull(redisValue(1));
+				return null;
+			}
+		});
+
+		assertNull(redisValue(1));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (received.isEmpty()) {
+			assertTrue("no event", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+		assertEquals(Arrays.asList("1"), received.get(0).getKeys());
+	}
+
+	@Test
+	public void testOtherEntityTypesIgnored() throws InterruptedException {
+		RedisBroadcastEventBus bus = bus();
+		DistributedCachingRepository<Times> a = node(bus);
+		monitor();
+		a.findById(1L);
+		a.findById(2L);
+		bus.post(new EntityChangedEvent(String.class.getName(), Arrays.asList("1"), "other"));
+		bus.post(new EntityChangedEvent(Times.class.getName(), Arrays.asList("2"), "other"));
+
+		// 通知按顺序分发, 第二个生效时第一个已被处理
+		awaitSize(a, 1);
+		assertEquals(2, db.queries);
+		a.findById(1L);
+		assertEquals(2, db.queries);
+	}
+
+	@Test
+	public void testRemoveByAttrsInvalidatesMatchingIds() throws InterruptedException {
+		DistributedCachingRepository<Times> a = node();
+		DistributedCachingRepository<Times> b = node();
+		monitor();
+		db.rows.get(2L).setYear(0);
+		a.findById(1L);
+		b.findById(2L);
+
+		Times probe = new Times();
+		a.removeByAttrs(probe, "year");
+
+		awaitSize(b, 0);
+		assertNull(b.findById(2L));
+		assertEquals(1, a.size());
+	}
+
+	@Test
+	public void testRedisDownFallsBackToDatabase() {
+		DistributedCachingRepository<Times> a = node();
+		server.close();
+
+		assertEquals(2001, a.findById(1L).getYear());
+		assertEquals(2001, a.findById(1L).getYear());
+		assertEquals(1, db.queries);
+
+		Times times = new Times();
+		times.setId(1L);
+		times.setYear(1999);
+		a.update(times);
+		assertEquals(1999, a.findById(1L).getYear());
+	}
+}
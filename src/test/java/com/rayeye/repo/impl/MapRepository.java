@@ -0,0 +1,98 @@
+package com.rayeye.repo.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fri.timers.entity.Times;
+
+/**
+ * 内存中的表, 记录 findById 的查询次数. 读出和写入的都是副本, 调用方修改实体不影响表中的数据.
+ */
+class MapRepository extends DbutilsRepository<Times> {
+	final Map<Long, Times> rows = new HashMap<Long, Times>();
+	volatile int queries;
+
+	static Times times(long id, int year) {
+		Times times = new Times();
+		times.setId(id);
+		times.setYear(year);
+		times.setMonth(1);
+		return times;
+	}
+
+	private static Times copy(Times times) {
+		return times(times.getId(), times.getYear());
+	}
+
+	/**
+	 * 放入 id 为 1 到 count, year 为 2000 + id 的记录.
+	 * @param count 记录数
+	 * @return this
+	 */
+	MapRepository fill(int count) {
+		for (long id = 1; id <= count; id++) {
+			rows.put(id, times(id, 2000 + (int) id));
+		}
+		return this;
+	}
+
+	@Override
+	public synchronized Times findById(Serializable pk) {
+		queries++;
+		Times times = rows.get(((Number) pk).longValue());
+		return times == null ? null : copy(times);
+	}
+
+	@Override
+	public synchronized List<Times> findIncludeAttrs(Map<String, Object> params, String... includeAttrs) {
+		List<Times> found = new ArrayList<Times>();
+		for (Times times : rows.values()) {
+			if (params.get("year").equals(times.getYear())) {
+				found.add(copy(times));
+			}
+		}
+		return found;
+	}
+
+	@Override
+	public synchronized void update(Times entity) {
+		rows.put(entity.getId(), copy(entity));
+	}
+
+	@Override
+	public synchronized void removeById(Serializable pk) {
+		rows.remove(((Number) pk).longValue());
+	}
+
+	@Override
+	public synchronized int removeAll(Collection<Times> entities) {
+		for (Times times : entities) {
+			rows.remove(times.getId());
+		}
+		return entities.size();
+	}
+
+	@Override
+	public synchronized int removeAllById(Collection<?> pks) {
+		int removed = 0;
+		for (Object pk : pks) {
+			if (pk != null && rows.remove(((Number) pk).longValue()) != null) {
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	public synchronized void removeByAttrs(Times entity, String... attrs) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("year", entity.getYear());
+		for (Times times : findIncludeAttrs(params, "id")) {
+			rows.remove(times.getId());
+		}
+	}
+}
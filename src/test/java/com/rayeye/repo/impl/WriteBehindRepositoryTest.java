@@ -0,0 +1,286 @@
+package com.rayeye.repo.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.fri.timers.entity.Times;
+import org.junit.After;
+import org.junit.Test;
+
+import com.rayeye.repo.RepositoryException;
+
+public class WriteBehindRepositoryTest {
+
+	/**
+	 * 记录每次批量写入的条数, 并模拟自增主键.
+	 */
+	private static class RecordingRepository extends DbutilsRepository<Times> {
+		final List<Integer> batches = Collections.synchronizedList(new ArrayList<Integer>());
+		volatile int inserted;
+		volatile int insertedBeforeUpdate = -1;
+		volatile CountDownLatch entered;
+		volatile CountDownLatch release;
+		volatile RuntimeException failure;
+		/** 逐条插入时只有这条失败, 为 null 时全部失败 */
+		volatile Times rejected;
+		volatile Error error;
+
+		@Override
+		public int insertAll(Collection<Times> entities) {
+			if (entered != null) {
+				entered.countDown();
+			}
+			try {
+				if (release != null) {
+					release.await();
+				}
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			if (error != null) {
+				Error e = error;
+				error = null;
+				throw e;
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			for (Times times : entities) {
+				times.setId(++inserted);
+			}
+			batches.add(entities.size());
+			return entities.size();
+		}
+
+		@Override
+		public Serializable insert(Times entity) {
+			if (failure != null && (rejected == null || rejected == entity)) {
+				throw failure;
+			}
+			entity.setId(++inserted);
+			batches.add(1);
+			return entity.getId();
+		}
+
+		@Override
+		public void update(Times entity) {
+			insertedBeforeUpdate = inserted;
+		}
+	}
+
+	private final RecordingRepository delegate = new RecordingRepository();
+	private WriteBehindRepository<Times> repo;
+
+	private WriteBehindRepository<Times> start(int capacity, int batchSize, long maxDelayMillis) {
+		repo = new WriteBehindRepository<Times>(delegate, capacity).setBatchSize(batchSize)
+				.setMaxDelay(maxDelayMillis, TimeUnit.MILLISECONDS);
+		repo.start();
+		return repo;
+	}
+
+	@After
+	public void tearDown() {
+		if (repo != null) {
+			repo.stop();
+		}
+	}
+
+	@Test
+	public void testBatchBySize() throws Exception {
+		start(100, 10, 10000);
+		for (int i = 0; i < 25; i++) {
+			repo.insert(new Times());
+		}
+		repo.flush().get(5, TimeUnit.SECONDS);
+
+		assertEquals("[10, 10, 5]", delegate.batches.toString());
+		assertEquals(0, repo.getPending());
+	}
+
+	@Test
+	public void testFlushByTime() throws Exception {
+		start(100, 10, 20);
+		Times times = repo.insertAsync(new Times()).get(5, TimeUnit.SECONDS);
+
+		assertEquals(1L, times.getId());
+		assertEquals("[1]", delegate.batches.toString());
+	}
+
+	@Test
+	public void testBackpressure() throws Exception {
+		delegate.entered = new CountDownLatch(1);
+		delegate.release = new CountDownLatch(1);
+		start(2, 1, 10000).setOfferTimeout(20, TimeUnit.MILLISECONDS);
+
+		repo.insert(new Times());
+		assertTrue(delegate.entered.await(5, TimeUnit.SECONDS));
+		repo.insert(new Times());
+		repo.insert(new Times());
+		try {
+			repo.insert(new Times());
+			fail();
+		} catch (RepositoryException e) {
+			assertEquals("write-behind queue is full", e.getMessage());
+		}
+
+		delegate.release.countDown();
+		repo.flush().get(5, TimeUnit.SECONDS);
+		assertEquals(3, delegate.inserted);
+	}
+
+	@Test
+	public void testFailureReportedByFuture() throws Exception {
+		delegate.failure = new RepositoryException("db down");
+		start(100, 10, 10000);
+		Future<Times> inserted = repo.insertAsync(new Times());
+		Future<Void> flushed = repo.flush();
+
+		try {
+			inserted.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals("db down", e.getCause().getMessage());
+		}
+		try {
+			flushed.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals("db down", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void testFailedBatchInsertedOneByOne() throws Exception {
+		Times bad = new Times();
+		delegate.failure = new RepositoryException("duplicate");
+		delegate.rejected = bad;
+		start(100, 10, 10000);
+		Future<Times> first = repo.insertAsync(new Times());
+		Future<Times> rejected = repo.insertAsync(bad);
+		Future<Times> last = repo.insertAsync(new Times());
+		Future<Void> flushed = repo.flush();
+
+		assertEquals(1L, first.get(5, TimeUnit.SECONDS).getId());
+		assertEquals(2L, last.get(5, TimeUnit.SECONDS).getId());
+		try {
+			rejected.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals("duplicate", e.getCause().getMessage());
+		}
+		try {
+			flushed.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals("duplicate", e.getCause().getMessage());
+		}
+		assertEquals("[1, 1]", delegate.batches.toString());
+		assertEquals(0, repo.getPending());
+	}
+
+	@Test
+	public void testWriterSurvivesError() throws Exception {
+		delegate.error = new AssertionError("boom");
+		start(100, 10, 10000);
+		Future<Times> failed = repo.insertAsync(new Times());
+		repo.flush();
+
+		try {
+			failed.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals("boom", e.getCause().getMessage());
+		}
+		Future<Times> inserted = repo.insertAsync(new Times());
+		repo.flush().get(5, TimeUnit.SECONDS);
+		assertEquals(1L, inserted.get().getId());
+		assertEquals(0, repo.getPending());
+	}
+
+	@Test
+	public void testWritesWaitForPendingInserts() {
+		start(100, 100, 10000);
+		for (int i = 0; i < 5; i++) {
+			repo.insert(new Times());
+		}
+		repo.update(new Times());
+
+		assertEquals(5, delegate.insertedBeforeUpdate);
+	}
+
+	@Test
+	public void testStopWritesRemaining() {
+		start(100, 100, 10000);
+		for (int i = 0; i < 5; i++) {
+			repo.insert(new Times());
+		}
+		repo.stop();
+
+		assertEquals(5, delegate.inserted);
+		try {
+			repo.insert(new Times());
+			fail();
+		} catch (RepositoryException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testStopWakesWriter() {
+		start(100, 100, 10000);
+		repo.insert(new Times());
+		long begin = System.nanoTime();
+		repo.stop();
+
+		assertEquals(1, delegate.inserted);
+		assertTrue(System.nanoTime() - begin < TimeUnit.SECONDS.toNanos(5));
+	}
+
+	@Test
+	public void testInsertsRacingStopComplete() throws Exception {
+		start(10, 3, 10000);
+		final List<Future<Times>> futures = new CopyOnWriteArrayList<Future<Times>>();
+		final CountDownLatch started = new CountDownLatch(4);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					started.countDown();
+					try {
+						while (true) {
+							futures.add(repo.insertAsync(new Times()));
+						}
+					} catch (RepositoryException e) {
+						// stopped
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		started.await();
+		repo.stop();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		for (Future<Times> future : futures) {
+			assertTrue(future.isDone());
+		}
+		assertEquals(futures.size(), delegate.inserted);
+		assertEquals(0, repo.getPending());
+	}
+}